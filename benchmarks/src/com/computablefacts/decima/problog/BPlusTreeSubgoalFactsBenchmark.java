@@ -0,0 +1,79 @@
+package com.computablefacts.decima.problog;
+
+import static com.computablefacts.decima.problog.AbstractTerm.newConst;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Membership test of a fact in a disk-backed subgoal table, for a fact in the table and for a fact the filter in front
+ * of the table should reject. The largest table needs a few GB in java.io.tmpdir and takes minutes to fill.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class BPlusTreeSubgoalFactsBenchmark {
+
+  private static final int NB_PROBES = 1024;
+
+  @Param({"10000", "1000000", "10000000"})
+  public int nbFacts;
+
+  private BPlusTreeSubgoalFacts facts_;
+  private Clause[] present_;
+  private Clause[] absent_;
+  private int probe_ = 0;
+
+  @Setup
+  public void setUp() {
+
+    facts_ = new BPlusTreeSubgoalFacts(System.getProperty("java.io.tmpdir"), "solver_subgoals_benchmark", nbFacts);
+
+    for (int i = 0; i < nbFacts; i++) {
+      facts_.add(fact(i));
+    }
+
+    Random random = new Random(42);
+    present_ = new Clause[NB_PROBES];
+    absent_ = new Clause[NB_PROBES];
+
+    for (int i = 0; i < NB_PROBES; i++) {
+      present_[i] = fact(random.nextInt(nbFacts));
+      absent_[i] = fact(nbFacts + random.nextInt(nbFacts));
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    facts_.close();
+  }
+
+  @Benchmark
+  public boolean containsPresent() {
+    return facts_.contains(present_[probe_++ & (NB_PROBES - 1)]);
+  }
+
+  @Benchmark
+  public boolean containsAbsent() {
+    return facts_.contains(absent_[probe_++ & (NB_PROBES - 1)]);
+  }
+
+  private static Clause fact(int i) {
+    return new Clause(new Literal("path", newConst("n" + (i % 1000)), newConst("n" + i)));
+  }
+}
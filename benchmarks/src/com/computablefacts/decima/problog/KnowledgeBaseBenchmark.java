@@ -0,0 +1,67 @@
+package com.computablefacts.decima.problog;
+
+import static com.computablefacts.decima.problog.AbstractTerm.newConst;
+import static com.computablefacts.decima.problog.AbstractTerm.newVar;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Lookup of the facts matching a literal in an {@link InMemoryKnowledgeBase}, with and without a bound argument.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class KnowledgeBaseBenchmark {
+
+  @Param({"1000", "100000"})
+  public int nbFacts;
+
+  private InMemoryKnowledgeBase kb_;
+  private Literal bound_;
+  private Literal unbound_;
+
+  @Setup
+  public void setUp() {
+
+    kb_ = new InMemoryKnowledgeBase();
+
+    for (int i = 0; i < nbFacts; i++) {
+      kb_.azzert(new Clause(new Literal("edge", newConst("n" + (i % 100)), newConst("n" + i))));
+    }
+
+    bound_ = new Literal("edge", newConst("n42"), newVar());
+    unbound_ = new Literal("edge", newVar(), newVar());
+  }
+
+  @Benchmark
+  public void factsWithBoundArgument(Blackhole blackhole) {
+    consume(kb_.facts(bound_), blackhole);
+  }
+
+  @Benchmark
+  public void factsWithoutBoundArgument(Blackhole blackhole) {
+    consume(kb_.facts(unbound_), blackhole);
+  }
+
+  private static void consume(Iterator<Clause> facts, Blackhole blackhole) {
+    while (facts.hasNext()) {
+      blackhole.consume(facts.next());
+    }
+  }
+}
@@ -0,0 +1,63 @@
+package com.computablefacts.decima.problog;
+
+import static com.computablefacts.decima.problog.Parser.parseClause;
+import static com.computablefacts.decima.problog.Parser.parseQuery;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Unification of a literal with a fact and renaming of the variables of a rule.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class LiteralBenchmark {
+
+  @Param({"2", "8"})
+  public int arity;
+
+  private Literal literal_;
+  private Literal fact_;
+  private Clause rule_;
+
+  @Setup
+  public void setUp() {
+
+    StringBuilder vars = new StringBuilder();
+    StringBuilder consts = new StringBuilder();
+
+    for (int i = 0; i < arity; i++) {
+      vars.append(i == 0 ? "" : ", ").append('X').append(i);
+      consts.append(i == 0 ? "" : ", ").append('c').append(i);
+    }
+
+    literal_ = parseQuery("p(" + vars + ")?");
+    fact_ = parseClause("p(" + consts + ").").head();
+    rule_ = parseClause("p(" + vars + ") :- q(X0), r(" + vars + ").");
+  }
+
+  @Benchmark
+  public Map<Var, AbstractTerm> unify() {
+    return literal_.unify(fact_);
+  }
+
+  @Benchmark
+  public Clause rename() {
+    return rule_.rename();
+  }
+}
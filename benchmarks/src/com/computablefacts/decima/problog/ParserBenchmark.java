@@ -0,0 +1,35 @@
+package com.computablefacts.decima.problog;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing of a fact, a rule and a probabilistic rule.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ParserBenchmark {
+
+  @Param({"0.3::edge(\"a\", \"b\").", "path(X, Y) :- edge(X, Z), path(Z, Y).",
+      "0.4::smokes(X) :- person(X), stress(X), fn_is_true(true)."})
+  public String clause;
+
+  @Benchmark
+  public Clause parseClause() {
+    return Parser.parseClause(clause);
+  }
+}
@@ -0,0 +1,64 @@
+package com.computablefacts.decima.problog;
+
+import static com.computablefacts.decima.problog.AbstractTerm.newConst;
+import static com.computablefacts.decima.problog.Parser.parseClause;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Probability of the answers of a query whose proofs share many literals : in a chain of friends, a person smokes if
+ * one of the next persons in the chain smokes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ProbabilityEstimatorBenchmark {
+
+  @Param({"5", "10", "20"})
+  public int nbPeople;
+
+  private Set<Clause> proofs_;
+
+  @Setup
+  public void setUp() {
+
+    InMemoryKnowledgeBase kb = new InMemoryKnowledgeBase();
+
+    for (int i = 0; i < nbPeople; i++) {
+      kb.azzert(parseClause("person(p" + i + ")."));
+      kb.azzert(parseClause("0.3::stress(p" + i + ")."));
+    }
+    for (int i = 1; i < nbPeople; i++) {
+      kb.azzert(parseClause("0.2::friend(p" + (i - 1) + ", p" + i + ")."));
+    }
+
+    kb.azzert(parseClause("0.4::smokes(X) :- person(X), stress(X)."));
+    kb.azzert(parseClause("smokes(X) :- friend(X, Y), smokes(Y)."));
+
+    try (Solver solver = new Solver(kb, true)) {
+      proofs_ = solver.proofs(new Literal("smokes", newConst("p0")));
+    }
+  }
+
+  @Benchmark
+  public Map<Clause, BigDecimal> probabilities() {
+    return new ProbabilityEstimator(proofs_).probabilities();
+  }
+}
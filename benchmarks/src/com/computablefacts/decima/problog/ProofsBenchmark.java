@@ -0,0 +1,82 @@
+package com.computablefacts.decima.problog;
+
+import static com.computablefacts.decima.problog.AbstractTerm.newConst;
+import static com.computablefacts.decima.problog.Parser.parseClause;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Unfolding of the proofs of the graph tests scaled up : {@code scale} disjoint copies of the graph of
+ * {@code GraphWithoutCycle1Test} queried in a single batch and a chain of {@code 3 * scale} edges.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g", "-Xss64m"})
+public class ProofsBenchmark {
+
+  private static final String[] EDGES = {"0.4::edge(a, b)", "0.55::edge(a, c)", "0.8::edge(b, e)", "0.2::edge(b, d)",
+      "0.4::edge(c, d)", "0.3::edge(e, f)", "0.5::edge(d, f)", "0.6::edge(d, g)", "0.7::edge(f, h)",
+      "0.7::edge(g, h)"};
+
+  @Param({"1", "10", "100"})
+  public int scale;
+
+  private InMemoryKnowledgeBase graph_;
+  private List<Literal> queries_;
+  private Workload chain_;
+  private InMemoryKnowledgeBase chainKb_;
+
+  @Setup
+  public void setUp() {
+
+    graph_ = new InMemoryKnowledgeBase();
+    queries_ = new ArrayList<>();
+
+    for (int i = 0; i < scale; i++) {
+      for (String edge : EDGES) {
+        graph_.azzert(parseClause(edge.replaceAll("\\b([a-h])\\b", "$1" + i) + "."));
+      }
+      queries_.add(new Literal("path", newConst("a" + i), newConst("h" + i)));
+    }
+
+    graph_.azzert(parseClause("path(X, Y) :- edge(X, Y)."));
+    graph_.azzert(parseClause("path(X, Y) :- path(X, Z), edge(Z, Y)."));
+
+    chain_ = Workload.chain(3L * scale, 42);
+    chainKb_ = new InMemoryKnowledgeBase();
+
+    BulkLoadResult result = chain_.loadInto(chainKb_);
+  }
+
+  @Benchmark
+  public Map<Literal, Set<Clause>> graph() {
+    try (Solver solver = new Solver(graph_, true)) {
+      return solver.proofsAll(queries_);
+    }
+  }
+
+  @Benchmark
+  public Set<Clause> chain() {
+    try (Solver solver = new Solver(chainKb_, true)) {
+      return solver.proofs(chain_.query());
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package com.computablefacts.decima.problog;
+
+import static com.computablefacts.decima.problog.AbstractTerm.newConst;
+import static com.computablefacts.decima.problog.AbstractTerm.newVar;
+import static com.computablefacts.decima.problog.Parser.parseClause;
+
+import com.google.common.collect.Iterators;
+import com.google.errorprone.annotations.Var;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Answering one query per person of a chain of friends, plus an open query, one query at a time versus in a single
+ * tabling session. The queries share most of their subgoals.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class SolveAllBenchmark {
+
+  @Param({"10", "50"})
+  public int nbPeople;
+
+  private InMemoryKnowledgeBase kb_;
+  private List<Literal> queries_;
+
+  @Setup
+  public void setUp() {
+
+    kb_ = new InMemoryKnowledgeBase();
+    queries_ = new ArrayList<>();
+
+    for (int i = 0; i < nbPeople; i++) {
+      kb_.azzert(parseClause("person(p" + i + ")."));
+      kb_.azzert(parseClause("0.3::stress(p" + i + ")."));
+      queries_.add(new Literal("smokes", newConst("p" + i)));
+    }
+    for (int i = 1; i < nbPeople; i++) {
+      kb_.azzert(parseClause("0.2::friend(p" + (i - 1) + ", p" + i + ")."));
+    }
+
+    kb_.azzert(parseClause("0.4::smokes(X) :- person(X), stress(X)."));
+    kb_.azzert(parseClause("smokes(X) :- friend(X, Y), smokes(Y)."));
+
+    queries_.add(new Literal("smokes", newVar()));
+  }
+
+  @Benchmark
+  public int loop() {
+    @Var int nbAnswers = 0;
+    for (Literal query : queries_) {
+      try (Solver solver = new Solver(kb_, false)) {
+        nbAnswers += Iterators.size(solver.solve(query));
+      }
+    }
+    return nbAnswers;
+  }
+
+  @Benchmark
+  public int batch() {
+    try (Solver solver = new Solver(kb_, false)) {
+      return solver.solveAll(queries_).values().stream().mapToInt(Set::size).sum();
+    }
+  }
+
+  @Benchmark
+  public Map<Literal, Set<Clause>> proofsBatch() {
+    try (Solver solver = new Solver(kb_, true)) {
+      return solver.proofsAll(queries_);
+    }
+  }
+}
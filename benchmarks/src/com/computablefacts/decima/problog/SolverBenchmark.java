@@ -0,0 +1,78 @@
+package com.computablefacts.decima.problog;
+
+import static com.computablefacts.decima.problog.AbstractTerm.newConst;
+import static com.computablefacts.decima.problog.AbstractTerm.newVar;
+import static com.computablefacts.decima.problog.Parser.parseClause;
+
+import com.google.common.collect.Iterators;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Transitive closure of a random tree, with and without proofs. The tree is generated from a fixed seed, hence the
+ * workload is the same from one run to the next. {@code solveWithProofs} records the proofs without unfolding them :
+ * it should stay within a small factor of {@code solve}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class SolverBenchmark {
+
+  @Param({"50", "200", "1000"})
+  public int nbNodes;
+
+  private InMemoryKnowledgeBase kb_;
+  private Literal query_;
+
+  @Setup
+  public void setUp() {
+
+    Random random = new Random(42);
+    kb_ = new InMemoryKnowledgeBase();
+
+    for (int i = 1; i < nbNodes; i++) {
+      kb_.azzert(parseClause("0.9::edge(n" + random.nextInt(i) + ", n" + i + ")."));
+    }
+
+    kb_.azzert(parseClause("path(X, Y) :- edge(X, Y)."));
+    kb_.azzert(parseClause("path(X, Y) :- edge(X, Z), path(Z, Y)."));
+
+    query_ = new Literal("path", newConst("n0"), newVar());
+  }
+
+  @Benchmark
+  public int solve() {
+    try (Solver solver = new Solver(kb_, false)) {
+      return Iterators.size(solver.solve(query_));
+    }
+  }
+
+  @Benchmark
+  public int solveWithProofs() {
+    try (Solver solver = new Solver(kb_, true)) {
+      return Iterators.size(solver.solve(query_));
+    }
+  }
+
+  @Benchmark
+  public Set<Clause> proofs() {
+    try (Solver solver = new Solver(kb_, true)) {
+      return solver.proofs(query_);
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package com.computablefacts.decima.problog;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing of a file of facts, line by line with {@link Parser} versus in a single pass with {@link StreamingParser}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class StreamingParserBenchmark {
+
+  @Param({"10000", "200000"})
+  public int nbLines;
+
+  private File file_;
+
+  @Setup
+  public void setUp() throws IOException {
+
+    List<String> lines = new ArrayList<>(nbLines);
+
+    for (int i = 0; i < nbLines; i++) {
+      lines.add("0.5::json_path(\"ns\", \"uuid_" + (i / 10) + "\", \"key_" + (i % 10) + "\", " + i + ").");
+    }
+
+    file_ = Files.createTempFile("clauses-", ".txt").toFile();
+    Files.write(file_.toPath(), lines, StandardCharsets.UTF_8);
+  }
+
+  @TearDown
+  public void tearDown() {
+    if (!file_.delete()) {
+      file_.deleteOnExit();
+    }
+  }
+
+  @Benchmark
+  public long parser() throws IOException {
+    try (Stream<String> lines = Files.lines(file_.toPath(), StandardCharsets.UTF_8)) {
+      return lines.map(Parser::parseClause).count();
+    }
+  }
+
+  @Benchmark
+  public long streamingParser() {
+    try (Stream<Clause> clauses = StreamingParser.parse(file_)) {
+      return clauses.count();
+    }
+  }
+}
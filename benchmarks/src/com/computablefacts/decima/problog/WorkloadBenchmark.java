@@ -0,0 +1,75 @@
+package com.computablefacts.decima.problog;
+
+import com.google.common.collect.Iterators;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Bulk load of the synthetic {@link Workload} programs, then resolution of their query. Use {@code -p nbFacts=...} to
+ * scale the programs up.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g", "-Xss64m"})
+public class WorkloadBenchmark {
+
+  @Param({"random_graph", "power_law_graph", "chain", "social_network", "join"})
+  public String workload;
+
+  @Param({"1000"})
+  public int nbFacts;
+
+  private Workload workload_;
+  private InMemoryKnowledgeBase kb_;
+
+  @Setup
+  public void setUp() {
+
+    workload_ = workload(workload, nbFacts);
+    kb_ = new InMemoryKnowledgeBase();
+
+    BulkLoadResult result = workload_.loadInto(kb_);
+  }
+
+  @Benchmark
+  public BulkLoadResult load() {
+    return workload_.loadInto(new InMemoryKnowledgeBase());
+  }
+
+  @Benchmark
+  public int solve() {
+    try (Solver solver = new Solver(kb_, false)) {
+      return Iterators.size(solver.solve(workload_.query()));
+    }
+  }
+
+  private static Workload workload(String name, int nbFacts) {
+    switch (name) {
+      case "random_graph":
+        return Workload.randomGraph(nbFacts / 4, nbFacts, 42);
+      case "power_law_graph":
+        return Workload.powerLawGraph(nbFacts / 4, nbFacts, 2.5, 42);
+      case "chain":
+        return Workload.chain(nbFacts, 42);
+      case "social_network":
+        return Workload.socialNetwork(nbFacts / 4, 2, 42);
+      case "join":
+        return Workload.join(4, nbFacts / 4, 42);
+      default:
+        throw new IllegalArgumentException("unknown workload : " + name);
+    }
+  }
+}
@@ -0,0 +1,67 @@
+package com.computablefacts.decima.robdd;
+
+import com.google.errorprone.annotations.Var;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.annotations.Level;
+
+/**
+ * Build and reorder the BDD of {@code (x0 & xn) | (x1 & xn+1) | ... | (xn-1 & x2n-1)}. With the variables created in
+ * this order, the size of the BDD grows exponentially with n. Sifting brings it back to a linear size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class BddBenchmark {
+
+  @Param({"6", "10"})
+  public int nbPairs;
+
+  private BddManager manager_;
+  private BddNode root_;
+
+  @Setup(Level.Invocation)
+  public void setUp() {
+    manager_ = new BddManager(0);
+    root_ = build(manager_, nbPairs);
+  }
+
+  @Benchmark
+  public BddNode ite() {
+    return build(new BddManager(0), nbPairs);
+  }
+
+  @Benchmark
+  public BddNode sifting() {
+    return manager_.sifting(root_);
+  }
+
+  private static BddNode build(BddManager manager, int nbPairs) {
+
+    BddNode[] variables = new BddNode[2 * nbPairs];
+
+    for (int i = 0; i < variables.length; i++) {
+      variables[i] = manager.create(manager.createVariable(), manager.One, manager.Zero);
+    }
+
+    @Var BddNode root = manager.Zero;
+
+    for (int i = 0; i < nbPairs; i++) {
+      root = manager.or(root, manager.and(variables[i], variables[i + nbPairs]));
+    }
+    return root;
+  }
+}
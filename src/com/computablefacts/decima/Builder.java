@@ -2,33 +2,51 @@ package com.computablefacts.decima;
 
 import static com.computablefacts.decima.problog.AbstractTerm.newConst;
 
-import com.computablefacts.asterix.IO;
 import com.computablefacts.asterix.RandomString;
 import com.computablefacts.asterix.View;
 import com.computablefacts.asterix.codecs.JsonCodec;
 import com.computablefacts.asterix.console.ConsoleApp;
+import com.computablefacts.decima.problog.AbstractKnowledgeBase;
 import com.computablefacts.decima.problog.AbstractTerm;
+import com.computablefacts.decima.problog.BulkLoadResult;
 import com.computablefacts.decima.problog.Clause;
+import com.computablefacts.decima.problog.ColumnarKnowledgeBase;
 import com.computablefacts.decima.problog.InMemoryKnowledgeBase;
 import com.computablefacts.decima.problog.Literal;
+import com.computablefacts.decima.problog.MappedKnowledgeBase;
+import com.computablefacts.logfmt.LogFormatter;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Splitter;
 import com.google.common.base.Stopwatch;
 import com.google.common.base.Strings;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.errorprone.annotations.CheckReturnValue;
+import com.google.errorprone.annotations.Var;
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 @CheckReturnValue
 final public class Builder extends ConsoleApp {
 
+  private static final Logger logger_ = LoggerFactory.getLogger(Builder.class);
   private static final char SEPARATOR = '¤';
+  private static final int BATCH_SIZE = 10000;
 
   public static Clause json(String namespace, String uuid, String json) {
 
@@ -71,6 +89,58 @@ final public class Builder extends ConsoleApp {
     return clauses;
   }
 
+  /**
+   * Stream the facts built from an ND-JSON input to an output. Lines are read in batches, each batch is converted to
+   * facts in parallel and the facts are written in the input order. Memory use is bounded by the batch size.
+   *
+   * @param input     the ND-JSON input.
+   * @param output    where to write the facts.
+   * @param batchSize the number of lines processed at once.
+   * @return the number of JSON objects read.
+   */
+  public static long build(BufferedReader input, Writer output, int batchSize) throws IOException {
+
+    Preconditions.checkNotNull(input, "input should not be null");
+    Preconditions.checkNotNull(output, "output should not be null");
+    Preconditions.checkArgument(batchSize > 0, "batchSize should be > 0");
+
+    RandomString rnd = new RandomString(8);
+    List<Map.Entry<String, String>> batch = new ArrayList<>(batchSize);
+    @Var long nbObjects = 0;
+    @Var String line;
+
+    while ((line = input.readLine()) != null) {
+      if (!Strings.isNullOrEmpty(line)) {
+
+        batch.add(new AbstractMap.SimpleEntry<>(rnd.nextString(), line));
+
+        if (batch.size() >= batchSize) {
+          nbObjects += write(batch, output);
+          batch.clear();
+        }
+      }
+    }
+    nbObjects += write(batch, output);
+    output.flush();
+    return nbObjects;
+  }
+
+  private static int write(List<Map.Entry<String, String>> batch, Writer output) throws IOException {
+
+    List<String> facts = batch.parallelStream().map(pair -> {
+
+      StringBuilder builder = new StringBuilder();
+      builder.append(json("", pair.getKey(), pair.getValue())).append(".\n");
+      jsonPaths("", pair.getKey(), pair.getValue()).forEach(clause -> builder.append(clause).append(".\n"));
+      return builder.toString();
+    }).collect(Collectors.toList());
+
+    for (String fact : facts) {
+      output.write(fact);
+    }
+    return batch.size();
+  }
+
   public static void main(String[] args) {
 
     Preconditions.checkNotNull(args, "args should not be null");
@@ -78,27 +148,62 @@ final public class Builder extends ConsoleApp {
     File input = getFileCommand(args, "input", null);
     String output = getStringCommand(args, "output", null);
     boolean showLogs = getBooleanCommand(args, "show_logs", false);
+    boolean stream = getBooleanCommand(args, "stream", false);
+    String compiledKb = getStringCommand(args, "compiled_kb", null);
 
     Stopwatch stopwatch = Stopwatch.createStarted();
-    InMemoryKnowledgeBase kb = new InMemoryKnowledgeBase();
 
-    // Fill KB from ND-JSON file (see http://ndjson.org for details)
-    RandomString rnd = new RandomString(8);
-    long nbFacts = View.of(input).index().filter(pair -> !Strings.isNullOrEmpty(pair.getValue()))
-        .map(pair -> new AbstractMap.SimpleEntry<>(rnd.nextString(), pair.getValue()))
-        .peek(pair -> kb.azzert(json("", pair.getKey(), pair.getValue())))
-        .peek(pair -> kb.azzert(jsonPaths("", pair.getKey(), pair.getValue()))).reduce(0, (carry, x) -> carry + 1);
+    if (stream) {
+
+      // Write the facts as they are built (see http://ndjson.org for details)
+      try (BufferedReader reader = Files.newBufferedReader(input.toPath(), StandardCharsets.UTF_8);
+          Writer writer = Writers.newWriter(output)) {
+
+        long nbObjects = build(reader, writer, BATCH_SIZE);
 
-    if (output == null) {
-      System.out.println(kb);
+        stopwatch.stop();
+
+        if (showLogs) {
+          System.out.println("number of json objects : " + nbObjects);
+          System.out.println("elapsed time : " + stopwatch.elapsed(TimeUnit.MILLISECONDS) + " ms");
+        }
+      } catch (IOException e) {
+        logger_.error(LogFormatter.create(true).message(e).formatError());
+      }
+      return;
+    }
+
+    AbstractKnowledgeBase kb = compiledKb == null ? new InMemoryKnowledgeBase() : new ColumnarKnowledgeBase();
+
+    // Fill KB from ND-JSON file (see http://ndjson.org for details). The ids are drawn by the thread reading the lines
+    // because RandomString is not thread-safe.
+    RandomString rnd = new RandomString(8);
+    Iterator<Clause> clauses = Iterators.concat(
+        Iterators.transform(View.of(input).filter(line -> !Strings.isNullOrEmpty(line)), line -> {
+          String uuid = rnd.nextString();
+          return Iterators.concat(Iterators.singletonIterator(json("", uuid, line)),
+              jsonPaths("", uuid, line).iterator());
+        }));
+    BulkLoadResult result = kb.azzert(clauses);
+
+    if (compiledKb != null) {
+      if (!MappedKnowledgeBase.compile(kb, new File(compiledKb))) {
+        logger_.error(LogFormatter.create(true)
+            .message(String.format("the compiled kb could not be written : %s", compiledKb)).formatError());
+      }
     } else {
-      boolean isOk = IO.writeText(new File(output), kb.toString(), false);
+      try (Writer writer = Writers.newWriter(output)) {
+        kb.writeTo(writer);
+      } catch (IOException e) {
+        logger_.error(LogFormatter.create(true).message(e).formatError());
+      }
     }
 
     stopwatch.stop();
 
     if (showLogs) {
       System.out.println("number of facts : " + kb.nbFacts());
+      System.out.println("number of facts per second : " + result.clausesPerSecond());
       System.out.println("elapsed time : " + stopwatch.elapsed(TimeUnit.MILLISECONDS) + " ms");
     }
   }
@@ -1,38 +1,61 @@
 package com.computablefacts.decima;
 
-import com.computablefacts.asterix.IO;
 import com.computablefacts.asterix.View;
 import com.computablefacts.asterix.codecs.JsonCodec;
 import com.computablefacts.asterix.console.ConsoleApp;
 import com.computablefacts.decima.problog.AbstractKnowledgeBase;
 import com.computablefacts.decima.problog.AbstractTerm;
+import com.computablefacts.decima.problog.BulkLoadResult;
 import com.computablefacts.decima.problog.Clause;
 import com.computablefacts.decima.problog.InMemoryKnowledgeBase;
 import com.computablefacts.decima.problog.Literal;
+import com.computablefacts.decima.problog.MappedKnowledgeBase;
 import com.computablefacts.decima.problog.Parser;
 import com.computablefacts.decima.problog.ProbabilityEstimator;
+import com.computablefacts.decima.problog.QueryProfile;
+import com.computablefacts.decima.problog.StreamingParser;
 import com.computablefacts.junon.Fact;
 import com.computablefacts.junon.Metadata;
 import com.computablefacts.junon.Provenance;
+import com.computablefacts.logfmt.LogFormatter;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Stopwatch;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
+import com.google.common.hash.Hashing;
 import com.google.errorprone.annotations.CheckReturnValue;
+import com.google.errorprone.annotations.Var;
 import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 @CheckReturnValue
 final public class Solver extends ConsoleApp {
 
+  private static final Logger logger_ = LoggerFactory.getLogger(Solver.class);
+
   public static void main(String[] args) {
 
     Preconditions.checkNotNull(args, "args should not be null");
@@ -48,34 +71,31 @@ final public class Solver extends ConsoleApp {
     String dataset = getStringCommand(args, "dataset", null);
     boolean showLogs = getBooleanCommand(args, "show_logs", false);
     boolean computeProbabilities = getBooleanCommand(args, "compute_probabilities", true);
+    String compiledKb = getStringCommand(args, "compiled_kb", null);
+    int threads = getIntCommand(args, "threads", 1);
+    String profile = getStringCommand(args, "profile", null);
 
-    Stopwatch stopwatch = Stopwatch.createStarted();
-    Map<Literal, BigDecimal> answers = apply(rules, facts, queries, computeProbabilities);
-
-    if ("problob".equals(type)) {
+    Preconditions.checkArgument(threads > 0, "threads should be > 0");
+    Preconditions.checkArgument(profile == null || "text".equals(profile) || "json".equals(profile),
+        "profile should be either text or json : %s", profile);
 
-      String str = answers.entrySet().stream()
-          .map(e -> e.getValue().toPlainString() + "::" + e.getKey().toString() + ".")
-          .collect(Collectors.joining("\n"));
+    BiFunction<Literal, BigDecimal, String> format;
 
-      if (output == null) {
-        System.out.println(str);
-      } else {
-        boolean isOk = IO.writeText(new File(output), str, false);
-      }
+    if ("problob".equals(type)) {
+      format = (head, probability) -> probability.toPlainString() + "::" + head.toString() + ".";
     } else {
 
       // TODO : legacy code. Remove ASAP.
       String sourceType = "STORAGE/ROOT/DATASET/DOC_ID";
       String sourceStore = "ACCUMULO/" + root + "/" + dataset + "/000|0000-00-00T00:00:00.000Z";
 
-      List<Fact> jsons = answers.entrySet().stream().map(e -> {
+      format = (head, probability) -> {
 
-        String factType = e.getKey().predicate().name();
-        double confidenceScore = e.getValue().doubleValue();
+        String factType = head.predicate().name();
+        double confidenceScore = probability.doubleValue();
         Fact fact = new Fact(factType, confidenceScore, null, new Date(), null, true);
 
-        for (AbstractTerm term : e.getKey().terms()) {
+        for (AbstractTerm term : head.terms()) {
 
           Preconditions.checkState(term.isConst(), "Term should be Const : %s", term);
 
@@ -87,16 +107,31 @@ final public class Solver extends ConsoleApp {
             new Metadata("Comment", "extraction_date", Instant.now().toString())));
         fact.provenance(new Provenance(sourceType, sourceStore, null, null, null));
 
-        return fact;
-      }).collect(Collectors.toList());
-
-      String str = jsons.stream().map(JsonCodec::asString).collect(Collectors.joining("\n"));
+        return JsonCodec.asString(fact);
+      };
+    }
 
-      if (output == null) {
-        System.out.println(str);
-      } else {
-        boolean isOk = IO.writeText(new File(output), str, false);
+    // Profiles are written to the standard error in order to keep the answers parsable
+    BiConsumer<Literal, QueryProfile> profiles = profile == null ? null : (question, queryProfile) -> {
+      String str = "json".equals(profile) ? queryProfile.toJson() + "\n" : "query : " + question + "\n" + queryProfile;
+      synchronized (System.err) {
+        System.err.print(str);
       }
+    };
+
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    Map<Literal, BigDecimal> answers = new ConcurrentHashMap<>();
+
+    // Answers are written as soon as they are found
+    try (Writer writer = Writers.newWriter(output)) {
+      apply(rules, facts, queries, compiledKb == null ? null : new File(compiledKb), computeProbabilities, threads,
+          showLogs, profiles, (head, probability) -> {
+            if (answers.putIfAbsent(head, probability) == null) {
+              write(writer, format.apply(head, probability));
+            }
+          });
+    } catch (IOException e) {
+      logger_.error(LogFormatter.create(true).message(e).formatError());
     }
 
     stopwatch.stop();
@@ -107,65 +142,136 @@ final public class Solver extends ConsoleApp {
     }
   }
 
-  private static Map<Literal, BigDecimal> apply(File rules, File facts, File queries, boolean computeProbabilities) {
+  private static long signature(File rules, File facts) {
+    return Hashing.murmur3_128().newHasher().putString(rules.getAbsolutePath(), StandardCharsets.UTF_8)
+        .putLong(rules.length()).putLong(rules.lastModified())
+        .putString(facts.getAbsolutePath(), StandardCharsets.UTF_8).putLong(facts.length())
+        .putLong(facts.lastModified()).hash().asLong();
+  }
 
-    Preconditions.checkNotNull(rules, "rules should not be null");
-    Preconditions.checkNotNull(facts, "facts should not be null");
-    Preconditions.checkNotNull(queries, "queries should not be null");
+  private static void write(Writer writer, String answer) {
+    synchronized (writer) {
+      try {
+        writer.write(answer);
+        writer.write('\n');
+      } catch (IOException e) {
+        logger_.error(LogFormatter.create(true).message(e).formatError());
+      }
+    }
+  }
 
-    Preconditions.checkArgument(rules.exists(), "Missing rules : %s", rules);
-    Preconditions.checkArgument(facts.exists(), "Missing facts : %s", facts);
-    Preconditions.checkArgument(queries.exists(), "Missing queries : %s", queries);
+  private static void apply(File rules, File facts, File queries, File compiledKb, boolean computeProbabilities,
+      int threads, boolean showLogs, BiConsumer<Literal, QueryProfile> profiles,
+      BiConsumer<Literal, BigDecimal> answers) {
 
-    Set<Clause> clauses = View.of(rules).map(Parser::parseClause).concat(View.of(facts).map(Parser::parseClause))
-        .toSet();
+    Preconditions.checkNotNull(queries, "queries should not be null");
+    Preconditions.checkArgument(queries.exists(), "Missing queries : %s", queries);
 
     Set<Literal> questions = View.of(queries).map(Parser::parseQuery).toSet();
+    AbstractKnowledgeBase kb;
 
-    return computeProbabilities ? applyWithProbabilities(questions, clauses)
-        : applyWithoutProbabilities(questions, clauses);
-  }
+    // A compiled kb is reused as long as the rules and facts it has been built from did not change
+    Long signature =
+        rules != null && facts != null && rules.exists() && facts.exists() ? signature(rules, facts) : null;
 
-  private static Map<Literal, BigDecimal> applyWithProbabilities(Set<Literal> questions, Set<Clause> clauses) {
+    if (compiledKb != null && compiledKb.exists() && (signature == null || signature.equals(
+        MappedKnowledgeBase.signature(compiledKb)))) {
+      kb = MappedKnowledgeBase.load(compiledKb);
 
-    Preconditions.checkNotNull(questions, "questions should not be null");
-    Preconditions.checkNotNull(clauses, "clauses should not be null");
+      Preconditions.checkState(kb != null, "Invalid compiled kb : %s", compiledKb);
+    } else {
 
-    Map<Literal, BigDecimal> answers = new HashMap<>();
-    AbstractKnowledgeBase kb = new InMemoryKnowledgeBase();
-    clauses.forEach(kb::azzert);
+      Preconditions.checkNotNull(rules, "rules should not be null");
+      Preconditions.checkNotNull(facts, "facts should not be null");
 
-    com.computablefacts.decima.problog.Solver solver = new com.computablefacts.decima.problog.Solver(kb, true);
+      Preconditions.checkArgument(rules.exists(), "Missing rules : %s", rules);
+      Preconditions.checkArgument(facts.exists(), "Missing facts : %s", facts);
 
-    for (Literal question : questions) {
+      kb = new InMemoryKnowledgeBase();
 
-      ProbabilityEstimator estimator = new ProbabilityEstimator(solver.proofs(question));
-      Map<Clause, BigDecimal> probabilities = estimator.probabilities();
+      Stream<Clause> ruleClauses = StreamingParser.parse(rules);
+      Stream<Clause> factClauses = StreamingParser.parse(facts);
 
-      probabilities.forEach((head, probability) -> answers.put(head.head(), probability));
+      Preconditions.checkState(ruleClauses != null, "Invalid rules : %s", rules);
+      Preconditions.checkState(factClauses != null, "Invalid facts : %s", facts);
+
+      BulkLoadResult result = kb.azzert(Stream.concat(ruleClauses, factClauses));
+
+      if (showLogs) {
+        System.out.println("number of clauses : " + result.nbClauses());
+        System.out.println("number of clauses per second : " + result.clausesPerSecond());
+      }
+
+      if (compiledKb != null && !MappedKnowledgeBase.compile(kb, compiledKb, signature)) {
+        logger_.error(LogFormatter.create(true)
+            .message(String.format("the compiled kb could not be written : %s", compiledKb)).formatError());
+      }
+    }
+
+    Queue<Literal> todo = new ConcurrentLinkedQueue<>(questions);
+
+    if (threads == 1) {
+      apply(todo, kb, computeProbabilities, profiles, answers);
+      return;
+    }
+
+    // Each worker owns a solver i.e. its own tables and answers questions until none is left
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+    try {
+
+      List<Future<?>> workers = new ArrayList<>(threads);
+
+      for (int i = 0; i < threads; i++) {
+        workers.add(executor.submit(() -> apply(todo, kb, computeProbabilities, profiles, answers)));
+      }
+      for (Future<?> worker : workers) {
+        worker.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      logger_.error(LogFormatter.create(true).message(e).formatError());
+    } catch (ExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new IllegalStateException(e.getCause());
+    } finally {
+      executor.shutdownNow();
     }
-    return answers;
   }
 
-  private static Map<Literal, BigDecimal> applyWithoutProbabilities(Set<Literal> questions, Set<Clause> clauses) {
+  private static void apply(Queue<Literal> questions, AbstractKnowledgeBase kb, boolean computeProbabilities,
+      BiConsumer<Literal, QueryProfile> profiles, BiConsumer<Literal, BigDecimal> answers) {
 
     Preconditions.checkNotNull(questions, "questions should not be null");
-    Preconditions.checkNotNull(clauses, "clauses should not be null");
+    Preconditions.checkNotNull(kb, "kb should not be null");
+    Preconditions.checkNotNull(answers, "answers should not be null");
 
-    Map<Literal, BigDecimal> answers = new HashMap<>();
-    AbstractKnowledgeBase kb = new InMemoryKnowledgeBase();
-    clauses.forEach(kb::azzert);
+    try (com.computablefacts.decima.problog.Solver solver = new com.computablefacts.decima.problog.Solver(kb,
+        computeProbabilities)) {
 
-    com.computablefacts.decima.problog.Solver solver = new com.computablefacts.decima.problog.Solver(kb, false);
+      solver.enableProfiling(profiles != null);
 
-    for (Literal question : questions) {
+      @Var Literal question;
 
-      Iterator<Clause> iterator = solver.solve(question);
+      while ((question = questions.poll()) != null) {
+        if (computeProbabilities) {
 
-      while (iterator.hasNext()) {
-        answers.put(iterator.next().head(), BigDecimal.ONE);
+          ProbabilityEstimator estimator = new ProbabilityEstimator(solver.proofs(question));
+          Map<Clause, BigDecimal> probabilities = estimator.probabilities();
+
+          probabilities.forEach((head, probability) -> answers.accept(head.head(), probability));
+        } else {
+
+          Iterator<Clause> iterator = solver.solve(question);
+
+          while (iterator.hasNext()) {
+            answers.accept(iterator.next().head(), BigDecimal.ONE);
+          }
+        }
+        if (profiles != null) {
+          profiles.accept(question, solver.profile());
+        }
       }
     }
-    return answers;
   }
 }
@@ -0,0 +1,56 @@
+package com.computablefacts.decima;
+
+import com.google.errorprone.annotations.CheckReturnValue;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Open the outputs of the command-line tools.
+ */
+@CheckReturnValue
+final class Writers {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private Writers() {
+  }
+
+  /**
+   * Open a buffered UTF-8 writer on a file or on the standard output. The file is gzip-compressed if its name ends with
+   * {@code .gz}. Closing a writer on the standard output only flushes it.
+   *
+   * @param output the output file name or null to write to the standard output.
+   * @return a writer.
+   */
+  static Writer newWriter(String output) throws IOException {
+
+    OutputStream stream;
+
+    if (output == null) {
+      stream = new FilterOutputStream(System.out) {
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+          out.write(bytes, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+          flush();
+        }
+      };
+    } else if (output.endsWith(".gz")) {
+      stream = new GZIPOutputStream(new FileOutputStream(output), BUFFER_SIZE);
+    } else {
+      stream = new FileOutputStream(output);
+    }
+    return new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), BUFFER_SIZE);
+  }
+}
@@ -22,27 +22,41 @@ import com.computablefacts.nona.types.Csv;
 import com.google.common.annotations.Beta;
 import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Stopwatch;
 import com.google.common.base.Strings;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Streams;
 import com.google.errorprone.annotations.CheckReturnValue;
 import com.google.errorprone.annotations.Var;
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.math.BigDecimal;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 import javax.validation.constraints.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -54,10 +68,18 @@ import org.slf4j.LoggerFactory;
 public abstract class AbstractKnowledgeBase {
 
   private static final Logger logger_ = LoggerFactory.getLogger(AbstractKnowledgeBase.class);
+  private static final int CHUNK_SIZE = 64 * 1024;
+  private static final int BATCH_SIZE = 10 * 1024;
 
   private final RandomString randomString_ = new RandomString(7);
   private final Map<String, Function> definitions_ = new ConcurrentHashMap<>();
 
+  // Statistics
+  private final Map<String, PredicateStatistics> statistics_ = new ConcurrentHashMap<>();
+  private final AtomicLong nbFacts_ = new AtomicLong(0);
+  private final AtomicLong nbRules_ = new AtomicLong(0);
+  private volatile boolean sketchDistinctValues_ = false;
+
   public AbstractKnowledgeBase() {
     setDefinitions();
   }
@@ -65,19 +87,57 @@ public abstract class AbstractKnowledgeBase {
   @Override
   public String toString() {
 
-    StringBuilder builder = new StringBuilder();
-    Iterator<Clause> facts = facts();
-    Iterator<Clause> rules = rules();
+    StringWriter writer = new StringWriter();
+
+    try {
+      writeTo(writer);
+    } catch (IOException e) {
+      logger_.error(LogFormatter.create(true).message(e).formatError()); // Should never happen
+    }
+    return writer.toString();
+  }
+
+  /**
+   * Write all facts then all rules, one clause per line. The clauses are streamed in chunks so the whole knowledge base
+   * is never materialized in memory. The writer is flushed but not closed.
+   *
+   * @param writer where to write the clauses.
+   */
+  public void writeTo(Writer writer) throws IOException {
+
+    Preconditions.checkNotNull(writer, "writer should not be null");
+
+    Writer output = writer instanceof BufferedWriter || writer instanceof StringWriter ? writer
+        : new BufferedWriter(writer, CHUNK_SIZE);
+    Iterator<Clause> clauses = Iterators.concat(facts(), rules());
 
-    while (facts.hasNext()) {
-      builder.append(facts.next().toString());
-      builder.append(".\n");
+    while (clauses.hasNext()) {
+      output.write(clauses.next().toString());
+      output.write(".\n");
     }
-    while (rules.hasNext()) {
-      builder.append(rules.next().toString());
-      builder.append(".\n");
+    output.flush();
+  }
+
+  /**
+   * Write all facts then all rules, one clause per line, as UTF-8. See {@link #writeTo(Writer)} for details. The stream
+   * is flushed but not closed.
+   *
+   * @param stream where to write the clauses.
+   * @param gzip   true iif the output must be gzip-compressed.
+   */
+  public void writeTo(OutputStream stream, boolean gzip) throws IOException {
+
+    Preconditions.checkNotNull(stream, "stream should not be null");
+
+    if (!gzip) {
+      writeTo(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+      return;
     }
-    return builder.toString();
+
+    GZIPOutputStream gzipStream = new GZIPOutputStream(stream, CHUNK_SIZE);
+    writeTo(new OutputStreamWriter(gzipStream, StandardCharsets.UTF_8));
+    gzipStream.finish();
+    stream.flush();
   }
 
   /**
@@ -91,52 +151,59 @@ public abstract class AbstractKnowledgeBase {
    * @param clause fact or rule.
    */
   public void azzert(Clause clause) {
+    normalize(clause).forEach(this::store);
+  }
 
-    Preconditions.checkNotNull(clause, "clause should not be null");
-    Preconditions.checkArgument(clause.isSafe(), "clause should be safe : %s", clause);
+  /**
+   * Adds new facts or rules to the database in bulk. The clauses are read sequentially in fixed-size batches, so the
+   * load never holds more than one batch in memory. The clauses of a batch are checked and rewritten in parallel. If
+   * all of them are valid, they are grouped by predicate. The groups are stored in parallel if the storage layer is
+   * thread-safe (see {@link #isThreadSafe()}) and one after the other otherwise. The clauses of a given predicate are
+   * stored in the order they have been read. An invalid clause stops the load but the batches read before it remain
+   * stored.
+   *
+   * @param clauses clauses.
+   * @return the number of clauses read and stored and the throughput of the load.
+   */
+  public BulkLoadResult azzert(Stream<Clause> clauses) {
 
-    if (clause.head().predicate().isPrimitive()) {
-      return; // Ignore assertions for primitives
-    }
+    Preconditions.checkNotNull(clauses, "clauses should not be null");
 
-    Clause newClause;
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    long nbFacts = nbFacts_.get();
+    long nbRules = nbRules_.get();
+    @Var long nbClauses = 0;
+    List<Clause> batch = new ArrayList<>(BATCH_SIZE);
+    Iterator<Clause> iterator = clauses.iterator();
 
-    if (clause.isFact()) {
-      newClause = clause;
-    } else {
+    while (iterator.hasNext()) {
 
-      // Remove probability from the rule head (otherwise it is a no-op)
-      Pair<Clause, Clause> clauses = rewriteRuleHead(clause);
+      batch.add(iterator.next());
+      nbClauses++;
 
-      if (clauses.u != null) {
-        azzert(clauses.u); // Assert created fact (if any)
+      if (batch.size() == BATCH_SIZE) {
+        storeBatch(batch);
+        batch.clear();
       }
-
-      newClause = clauses.t; // Assert rewritten rule
     }
 
-    Literal head = newClause.head();
-    BigDecimal probability = head.probability();
+    storeBatch(batch);
 
-    Preconditions.checkState(!BigDecimal.ZERO.equals(probability), "head probability must be != 0.0 : %s", newClause);
-
-    if (clause.isFact()) {
-      azzertFact(newClause);
-    } else {
-
-      Preconditions.checkState(BigDecimal.ONE.equals(probability),
-          "rule head should not have a probability attached : %s", newClause);
-
-      for (int i = 0; i < newClause.body().size(); i++) {
+    return new BulkLoadResult(nbClauses, nbFacts_.get() - nbFacts, nbRules_.get() - nbRules,
+        stopwatch.elapsed(TimeUnit.MILLISECONDS));
+  }
 
-        Literal literal = newClause.body().get(i);
+  /**
+   * Adds new facts or rules to the database in bulk. See {@link #azzert(Stream)} for details.
+   *
+   * @param clauses clauses.
+   * @return the number of clauses read and stored and the throughput of the load.
+   */
+  public BulkLoadResult azzert(Iterator<Clause> clauses) {
 
-        Preconditions.checkState(BigDecimal.ONE.equals(literal.probability()),
-            "body literals should not have probabilities attached : %s", newClause);
-      }
+    Preconditions.checkNotNull(clauses, "clauses should not be null");
 
-      azzertRule(newClause);
-    }
+    return azzert(Streams.stream(clauses));
   }
 
   /**
@@ -155,6 +222,43 @@ public abstract class AbstractKnowledgeBase {
 
   protected abstract void azzertRule(@NotNull Clause rule);
 
+  /**
+   * Store a new fact and tell whether it was already stored. The default implementation calls
+   * {@link #azzertFact(Clause)} and cannot tell duplicates apart : every fact is counted as new. Implementations that
+   * can detect duplicates while storing should override it.
+   *
+   * @param fact fact.
+   * @return true iff the fact was not already stored.
+   */
+  protected boolean storeFact(@NotNull Clause fact) {
+    azzertFact(fact);
+    return true;
+  }
+
+  /**
+   * Store a new rule and tell whether it was already stored. The default implementation calls
+   * {@link #azzertRule(Clause)} and cannot tell duplicates apart : every rule is counted as new. Implementations that
+   * can detect duplicates while storing should override it.
+   *
+   * @param rule rule.
+   * @return true iff the rule was not already stored.
+   */
+  protected boolean storeRule(@NotNull Clause rule) {
+    azzertRule(rule);
+    return true;
+  }
+
+  /**
+   * Tell whether {@link #storeFact(Clause)} and {@link #storeRule(Clause)} can be called from several threads at once.
+   * If so, the bulk loads store the clauses of distinct predicates in parallel. The default implementation returns
+   * false.
+   *
+   * @return true iif the storage hooks are thread-safe.
+   */
+  protected boolean isThreadSafe() {
+    return false;
+  }
+
   protected abstract Iterator<Clause> facts(@NotNull Literal literal);
 
   protected abstract Iterator<Clause> rules(@NotNull Literal literal);
@@ -164,19 +268,153 @@ public abstract class AbstractKnowledgeBase {
   public abstract Iterator<Clause> rules();
 
   public long nbFacts(@NotNull Literal literal) {
+    if (literal.terms().stream().noneMatch(AbstractTerm::isConst)) {
+      PredicateStatistics statistics = statistics_.get(literal.predicate().id());
+      return statistics == null ? 0 : statistics.nbFacts();
+    }
     return Iterators.size(facts(literal));
   }
 
   public long nbRules(@NotNull Literal literal) {
+    if (literal.terms().stream().noneMatch(AbstractTerm::isConst)) {
+      PredicateStatistics statistics = statistics_.get(literal.predicate().id());
+      return statistics == null ? 0 : statistics.nbRules();
+    }
     return Iterators.size(rules(literal));
   }
 
   public long nbFacts() {
-    return Iterators.size(facts());
+    return nbFacts_.get();
   }
 
   public long nbRules() {
-    return Iterators.size(rules());
+    return nbRules_.get();
+  }
+
+  /**
+   * Return the statistics maintained for each predicate. The counters are updated in O(1) each time a new fact or rule
+   * is asserted.
+   *
+   * @return map between predicates ids and statistics.
+   */
+  public Map<String, PredicateStatistics> statistics() {
+    return Collections.unmodifiableMap(statistics_);
+  }
+
+  /**
+   * Enable or disable the per-argument distinct-values sketches of {@link PredicateStatistics}. Sketching hashes every
+   * argument of every new fact, so it is disabled by default. Facts asserted while it is disabled are not sketched.
+   *
+   * @param enabled true iif the distinct values must be sketched.
+   */
+  public void sketchDistinctValues(boolean enabled) {
+    sketchDistinctValues_ = enabled;
+  }
+
+  /**
+   * Account for facts stored without going through {@link #azzert(Clause)} e.g. facts loaded in bulk from disk. The
+   * distinct-values sketches of these facts are not updated.
+   *
+   * @param predicate the facts predicate.
+   * @param nbFacts   the number of facts.
+   */
+  protected void addFacts(@NotNull Predicate predicate, long nbFacts) {
+
+    Preconditions.checkArgument(nbFacts >= 0, "nbFacts should be >= 0");
+
+    nbFacts_.addAndGet(nbFacts);
+    statistics(predicate).addFacts(nbFacts);
+  }
+
+  /**
+   * Check a clause and rewrite its head if needed.
+   *
+   * @param clause fact or rule.
+   * @return the clauses to store.
+   */
+  private List<Clause> normalize(Clause clause) {
+
+    Preconditions.checkNotNull(clause, "clause should not be null");
+    Preconditions.checkArgument(clause.isSafe(), "clause should be safe : %s", clause);
+
+    if (clause.head().predicate().isPrimitive()) {
+      return Collections.emptyList(); // Ignore assertions for primitives
+    }
+    if (clause.isFact()) {
+
+      Preconditions.checkState(!BigDecimal.ZERO.equals(clause.head().probability()),
+          "head probability must be != 0.0 : %s", clause);
+
+      return Collections.singletonList(clause);
+    }
+
+    List<Clause> newClauses = new ArrayList<>(2);
+
+    // Remove probability from the rule head (otherwise it is a no-op)
+    Pair<Clause, Clause> clauses = rewriteRuleHead(clause);
+
+    if (clauses.u != null) {
+      newClauses.addAll(normalize(clauses.u)); // Assert created fact (if any)
+    }
+
+    Clause newClause = clauses.t; // Assert rewritten rule
+    BigDecimal probability = newClause.head().probability();
+
+    Preconditions.checkState(!BigDecimal.ZERO.equals(probability), "head probability must be != 0.0 : %s", newClause);
+    Preconditions.checkState(BigDecimal.ONE.equals(probability),
+        "rule head should not have a probability attached : %s", newClause);
+
+    for (int i = 0; i < newClause.body().size(); i++) {
+
+      Literal literal = newClause.body().get(i);
+
+      Preconditions.checkState(BigDecimal.ONE.equals(literal.probability()),
+          "body literals should not have probabilities attached : %s", newClause);
+    }
+
+    newClauses.add(newClause);
+    return newClauses;
+  }
+
+  private void store(Clause clause) {
+    store(clause, statistics(clause.head().predicate()));
+  }
+
+  private void storeBatch(List<Clause> batch) {
+
+    // Check and rewrite the clauses first : an invalid clause must prevent the whole batch from being stored
+    List<List<Clause>> newClauses = batch.parallelStream().map(this::normalize).collect(Collectors.toList());
+    Map<Predicate, List<Clause>> groups = new LinkedHashMap<>();
+
+    for (List<Clause> list : newClauses) {
+      for (Clause clause : list) {
+        groups.computeIfAbsent(clause.head().predicate(), predicate -> new ArrayList<>()).add(clause);
+      }
+    }
+
+    Stream<Map.Entry<Predicate, List<Clause>>> stream =
+        isThreadSafe() ? groups.entrySet().parallelStream() : groups.entrySet().stream();
+
+    stream.forEach(group -> {
+      PredicateStatistics statistics = statistics(group.getKey());
+      group.getValue().forEach(clause -> store(clause, statistics));
+    });
+  }
+
+  private void store(Clause clause, PredicateStatistics statistics) {
+    if (clause.isFact()) {
+      if (storeFact(clause)) {
+        nbFacts_.incrementAndGet();
+        statistics.addFact(clause.head(), sketchDistinctValues_);
+      }
+    } else if (storeRule(clause)) {
+      nbRules_.incrementAndGet();
+      statistics.addRule();
+    }
+  }
+
+  private PredicateStatistics statistics(Predicate predicate) {
+    return statistics_.computeIfAbsent(predicate.id(), id -> new PredicateStatistics(predicate));
   }
 
   @Beta
@@ -581,7 +819,11 @@ public abstract class AbstractKnowledgeBase {
     BigDecimal probability = head.probability();
 
     // Create fact
-    String newPredicate = "proba_" + randomString_.nextString().toLowerCase();
+    String newPredicate;
+
+    synchronized (randomString_) { // Rules may be rewritten concurrently by azzert(Stream)
+      newPredicate = "proba_" + randomString_.nextString().toLowerCase();
+    }
     Literal newLiteral = new Literal(probability, newPredicate, newConst(true));
     Clause newFact = new Clause(newLiteral);
 
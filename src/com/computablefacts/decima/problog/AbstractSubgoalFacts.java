@@ -4,7 +4,7 @@ import com.google.errorprone.annotations.CheckReturnValue;
 import java.util.Iterator;
 
 @CheckReturnValue
-public abstract class AbstractSubgoalFacts {
+public abstract class AbstractSubgoalFacts implements AutoCloseable {
 
   public abstract boolean contains(Clause clause);
 
@@ -13,4 +13,11 @@ public abstract class AbstractSubgoalFacts {
   public abstract int size();
 
   public abstract void add(Clause clause);
+
+  /**
+   * Release the resources (files, handles, etc.) held by the facts. The facts must not be used afterward.
+   */
+  @Override
+  public void close() {
+  }
 }
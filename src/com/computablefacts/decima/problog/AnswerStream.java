@@ -0,0 +1,167 @@
+package com.computablefacts.decima.problog;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
+import com.google.errorprone.annotations.CheckReturnValue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The answers of a query, returned as soon as they are derived by a {@link Solver} running in a background thread. The
+ * thread is suspended while the buffer of answers is full and resumes when the caller consumes them. Closing the stream
+ * cancels the search.
+ * <p>
+ * The stream must be closed unless it is exhausted : the background thread keeps the solver and its tables alive. As a
+ * safety net, a suspended search is cancelled once the stream is no longer reachable.
+ */
+@CheckReturnValue
+final public class AnswerStream extends AbstractIterator<Clause> implements AutoCloseable {
+
+  private static final int BUFFER_SIZE = 1024;
+  private static final long POLL_INTERVAL_MILLIS = 10;
+
+  private final Buffer buffer_;
+  private final Thread thread_;
+  private final long start_;
+
+  AnswerStream(Solver solver, Literal query, SolverLimits limits) {
+
+    Preconditions.checkNotNull(solver, "solver should not be null");
+    Preconditions.checkNotNull(query, "query should not be null");
+    Preconditions.checkNotNull(limits, "limits should not be null");
+
+    buffer_ = new Buffer(new CancellationToken(limits.token()));
+    start_ = System.nanoTime();
+
+    SolverLimits newLimits = new SolverLimits(limits.timeoutMillis(), limits.maxSubgoals(),
+        limits.maxAnswersPerSubgoal(), limits.maxHeapBytes(), buffer_.token_);
+
+    thread_ = newThread(solver, query, newLimits, buffer_, new WeakReference<>(this));
+    thread_.start();
+  }
+
+  /**
+   * The background thread must not reference the stream, otherwise the stream would never become unreachable.
+   */
+  private static Thread newThread(Solver solver, Literal query, SolverLimits limits, Buffer buffer,
+      WeakReference<AnswerStream> stream) {
+
+    Thread thread = new Thread(() -> {
+      try {
+        solver.solve(query, limits, answer -> buffer.put(answer, stream));
+        buffer.stopReason_ = solver.stopReason();
+      } catch (Throwable e) {
+        buffer.error_ = e; // Rethrown to the caller, otherwise the answers would look complete
+      } finally {
+        buffer.isFinished_ = true;
+      }
+    }, "decima-solver");
+
+    thread.setDaemon(true);
+    return thread;
+  }
+
+  /**
+   * Cancel the search. The answers already derived are dropped.
+   */
+  @Override
+  public void close() {
+    buffer_.token_.cancel();
+  }
+
+  /**
+   * Return the number of milliseconds elapsed between the submission of the query and the first answer.
+   *
+   * @return the time to first answer or -1 if no answer has been derived yet.
+   */
+  public double timeToFirstAnswerMillis() {
+    long firstAnswer = buffer_.firstAnswer_;
+    return firstAnswer < 0 ? -1 : (firstAnswer - start_) / 1000000.0;
+  }
+
+  /**
+   * Return the reason why the search stopped.
+   *
+   * @return the reason why the search stopped or null if the search is still running.
+   */
+  public StopReason stopReason() {
+    return buffer_.stopReason_;
+  }
+
+  /**
+   * Return the thread running the search.
+   *
+   * @return the background thread.
+   */
+  Thread thread() {
+    return thread_;
+  }
+
+  @Override
+  protected Clause computeNext() {
+    try {
+      while (!buffer_.token_.isCancelled()) {
+
+        Clause answer = buffer_.answers_.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+
+        if (answer != null) {
+          return answer;
+        }
+
+        // All the answers are in the buffer once the search is finished
+        if (buffer_.isFinished_ && buffer_.answers_.isEmpty()) {
+          if (buffer_.error_ != null) {
+            Throwables.throwIfUnchecked(buffer_.error_);
+            throw new IllegalStateException(buffer_.error_);
+          }
+          break;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      close();
+    }
+    return endOfData();
+  }
+
+  /**
+   * The state shared by the stream and the background thread.
+   */
+  private static final class Buffer {
+
+    private final BlockingQueue<Clause> answers_ = new ArrayBlockingQueue<>(BUFFER_SIZE);
+    private final CancellationToken token_;
+    private volatile long firstAnswer_ = -1;
+    private volatile boolean isFinished_ = false;
+    private volatile StopReason stopReason_ = null;
+    private volatile Throwable error_ = null;
+
+    Buffer(CancellationToken token) {
+      token_ = token;
+    }
+
+    void put(Clause answer, WeakReference<AnswerStream> stream) {
+
+      if (firstAnswer_ < 0) {
+        firstAnswer_ = System.nanoTime();
+      }
+
+      try {
+        while (!answers_.offer(answer, POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+          if (stream.get() == null) {
+            token_.cancel(); // Nobody will ever consume the answers
+          }
+          if (token_.isCancelled()) {
+            return; // The solver will notice the cancellation and stop
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        token_.cancel();
+      }
+    }
+  }
+}
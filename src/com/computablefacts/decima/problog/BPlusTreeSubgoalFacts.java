@@ -5,8 +5,10 @@ import com.computablefacts.logfmt.LogFormatter;
 import com.github.davidmoten.bplustree.BPlusTree;
 import com.github.davidmoten.bplustree.Serializer;
 import com.google.common.base.Preconditions;
+import com.google.common.hash.Hashing;
 import com.google.errorprone.annotations.CheckReturnValue;
 import java.io.File;
+import java.nio.charset.StandardCharsets;
 import java.util.Iterator;
 import java.util.function.Consumer;
 import org.slf4j.Logger;
@@ -16,53 +18,90 @@ import org.slf4j.LoggerFactory;
 final public class BPlusTreeSubgoalFacts extends AbstractSubgoalFacts {
 
   private static final Logger logger_ = LoggerFactory.getLogger(BPlusTreeSubgoalFacts.class);
-  private static final char SEPARATOR = '¤';
+  private static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+  private static final int INITIAL_CAPACITY = 1024; // BF : ~1.2KB, grows with the table
 
-  // B+-Tree
-  private final BPlusTree<Integer, String> tree_;
+  // B+-Tree keyed by a 64-bit fingerprint of the fact id
+  private final BPlusTree<Long, Clause> tree_;
+
+  // Filter in front of the B+-Tree : most lookups of unknown facts never reach the disk
+  private final ScalableBloomFilter<Long> bf_;
 
   // Metrics
   private final Consumer<Literal> peek_;
   private int nbFacts_ = 0;
 
+  private final File dir_;
+  private boolean isClosed_ = false;
+
   public BPlusTreeSubgoalFacts(String directory, String tableName, int subgoalId) {
     this(directory, tableName, subgoalId, null);
   }
 
   public BPlusTreeSubgoalFacts(String directory, String tableName, int subgoalId, Consumer<Literal> peek) {
+    this(directory, tableName, subgoalId, peek, FALSE_POSITIVE_PROBABILITY, INITIAL_CAPACITY);
+  }
 
-    File dir = new File(String.format("%s%s%s_%d", directory, File.separator, tableName, subgoalId));
-
-    if (!dir.exists()) {
-      dir.mkdirs();
+  /**
+   * Constructor.
+   *
+   * @param directory                where to create the table.
+   * @param tableName                the table name.
+   * @param subgoalId                the subgoal id.
+   * @param peek                     called for each fact added to the table (optional).
+   * @param falsePositiveProbability the false positive probability of the filter in front of the table.
+   * @param initialCapacity          the number of facts the filter is sized for at first. The filter grows as facts are
+   *                                 added.
+   */
+  public BPlusTreeSubgoalFacts(String directory, String tableName, int subgoalId, Consumer<Literal> peek,
+      double falsePositiveProbability, int initialCapacity) {
+
+    dir_ = new File(String.format("%s%s%s_%d", directory, File.separator, tableName, subgoalId));
+
+    if (!dir_.exists()) {
+      dir_.mkdirs();
     }
 
     peek_ = peek;
-    tree_ = BPlusTree.file().directory(dir.getAbsolutePath()).deleteOnClose().maxLeafKeys(32).maxNonLeafKeys(8)
-        .segmentSizeMB(1).uniqueKeys(false).keySerializer(Serializer.INTEGER).valueSerializer(Serializer.utf8())
+    bf_ = new ScalableBloomFilter<>(falsePositiveProbability, initialCapacity);
+    tree_ = BPlusTree.file().directory(dir_.getAbsolutePath()).deleteOnClose().maxLeafKeys(32).maxNonLeafKeys(8)
+        .segmentSizeMB(1).uniqueKeys(false).keySerializer(Serializer.LONG).valueSerializer(new ClauseSerializer())
         .naturalOrder();
   }
 
   @Override
-  protected void finalize() {
-    if (tree_ != null) {
+  public synchronized void close() {
+    if (!isClosed_) {
+
+      isClosed_ = true;
+
       try {
         tree_.close();
       } catch (Exception e) {
         logger_.error(LogFormatter.create(true).message(e).formatError());
       }
+      if (!dir_.delete()) {
+        logger_.error(
+            LogFormatter.create(true).message(String.format("the directory could not be deleted : %s", dir_))
+                .formatError());
+      }
     }
   }
 
   @Override
   public boolean contains(Clause clause) {
     String cacheKey = cacheKey(clause);
-    return View.of(tree_.find(cacheKey.hashCode())).contains(value -> value.startsWith(cacheKey + SEPARATOR));
+    long fingerprint = fingerprint(cacheKey);
+
+    if (!bf_.contains(fingerprint)) {
+      return false;
+    }
+    return View.of(tree_.find(fingerprint)).contains(value -> value.head().id().equals(cacheKey));
   }
 
   @Override
   public Iterator<Clause> facts() {
-    return View.of(tree_.findAll()).map(value -> Parser.parseClause(value.substring(value.indexOf(SEPARATOR) + 1)));
+    return tree_.findAll().iterator();
   }
 
   @Override
@@ -73,8 +112,9 @@ final public class BPlusTreeSubgoalFacts extends AbstractSubgoalFacts {
   @Override
   public void add(Clause clause) {
 
-    String cacheKey = cacheKey(clause);
-    tree_.insert(cacheKey.hashCode(), cacheKey + SEPARATOR + clause.toString() + ".");
+    long fingerprint = fingerprint(cacheKey(clause));
+    tree_.insert(fingerprint, clause);
+    bf_.add(fingerprint);
     nbFacts_++;
 
     if (peek_ != null) {
@@ -89,4 +129,8 @@ final public class BPlusTreeSubgoalFacts extends AbstractSubgoalFacts {
 
     return clause.head().id();
   }
+
+  private long fingerprint(String cacheKey) {
+    return Hashing.murmur3_128().hashString(cacheKey, StandardCharsets.UTF_8).asLong();
+  }
 }
@@ -0,0 +1,64 @@
+package com.computablefacts.decima.problog;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import com.google.errorprone.annotations.CheckReturnValue;
+
+/**
+ * The outcome of a bulk load. See {@link AbstractKnowledgeBase#azzert(java.util.stream.Stream)} for details.
+ */
+@CheckReturnValue
+final public class BulkLoadResult {
+
+  private final long nbClauses_;
+  private final long nbFacts_;
+  private final long nbRules_;
+  private final long elapsedMillis_;
+
+  BulkLoadResult(long nbClauses, long nbFacts, long nbRules, long elapsedMillis) {
+
+    Preconditions.checkArgument(nbClauses >= 0, "nbClauses should be >= 0");
+    Preconditions.checkArgument(elapsedMillis >= 0, "elapsedMillis should be >= 0");
+
+    nbClauses_ = nbClauses;
+    nbFacts_ = nbFacts;
+    nbRules_ = nbRules;
+    elapsedMillis_ = elapsedMillis;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this).add("nb_clauses", nbClauses_).add("nb_facts", nbFacts_)
+        .add("nb_rules", nbRules_).add("elapsed_millis", elapsedMillis_)
+        .add("clauses_per_second", clausesPerSecond()).toString();
+  }
+
+  /**
+   * The number of clauses read.
+   */
+  public long nbClauses() {
+    return nbClauses_;
+  }
+
+  /**
+   * The number of new facts stored, including the facts created when rewriting probabilistic rules.
+   */
+  public long nbFacts() {
+    return nbFacts_;
+  }
+
+  /**
+   * The number of new rules stored.
+   */
+  public long nbRules() {
+    return nbRules_;
+  }
+
+  public long elapsedMillis() {
+    return elapsedMillis_;
+  }
+
+  public long clausesPerSecond() {
+    return elapsedMillis_ == 0 ? nbClauses_ * 1000 : nbClauses_ * 1000 / elapsedMillis_;
+  }
+}
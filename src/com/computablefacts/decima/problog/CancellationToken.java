@@ -0,0 +1,35 @@
+package com.computablefacts.decima.problog;
+
+import com.google.errorprone.annotations.CheckReturnValue;
+
+/**
+ * A flag shared between the caller and a running {@link Solver}. The solver polls the flag in its inner loops and stops
+ * as soon as possible once the caller has called {@link #cancel()}.
+ */
+@CheckReturnValue
+final public class CancellationToken {
+
+  private final CancellationToken parent_;
+  private volatile boolean isCancelled_ = false;
+
+  public CancellationToken() {
+    this(null);
+  }
+
+  /**
+   * A token cancelled either directly or through its parent.
+   *
+   * @param parent the parent token (optional).
+   */
+  CancellationToken(CancellationToken parent) {
+    parent_ = parent;
+  }
+
+  public void cancel() {
+    isCancelled_ = true;
+  }
+
+  public boolean isCancelled() {
+    return isCancelled_ || (parent_ != null && parent_.isCancelled());
+  }
+}
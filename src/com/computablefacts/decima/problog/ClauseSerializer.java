@@ -0,0 +1,129 @@
+package com.computablefacts.decima.problog;
+
+import com.github.davidmoten.bplustree.LargeByteBuffer;
+import com.github.davidmoten.bplustree.Serializer;
+import com.google.common.base.Preconditions;
+import com.google.errorprone.annotations.CheckReturnValue;
+import com.google.errorprone.annotations.Var;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact binary encoding of facts. Predicates and constants are replaced by ids from an in-memory dictionary and the
+ * probability is stored as a scaled long whenever possible. Decoding a fact does not involve the {@link Parser}.
+ * <p>
+ * The dictionary lives on the heap as long as the serializer. Hence, a serializer must not outlive the B+-tree it is
+ * attached to. In order to keep the heap cost of a table independent of its number of facts, only the first
+ * {@value #MAX_NB_CONSTS} distinct constants get an id. The other constants are written inline. The predicates are
+ * not bounded : a subgoal table holds the facts of a single predicate.
+ */
+@CheckReturnValue
+final class ClauseSerializer implements Serializer<Clause> {
+
+  private static final byte PROBABILITY_ONE = 0;
+  private static final byte PROBABILITY_SCALED_LONG = 1;
+  private static final byte PROBABILITY_STRING = 2;
+  private static final int MAX_NB_CONSTS = 1024;
+  private static final int INLINE_CONST = 0;
+
+  private final Map<String, Integer> predicateToId_ = new HashMap<>();
+  private final List<String> idToPredicate_ = new ArrayList<>();
+  private final Map<String, Integer> constToId_ = new HashMap<>();
+  private final List<Const> idToConst_ = new ArrayList<>();
+
+  ClauseSerializer() {
+  }
+
+  @Override
+  public Clause read(LargeByteBuffer bb) {
+
+    BigDecimal probability = readProbability(bb);
+    String predicate = idToPredicate_.get(bb.getVarint());
+    int nbTerms = bb.getVarint();
+    List<AbstractTerm> terms = new ArrayList<>(nbTerms);
+
+    for (int i = 0; i < nbTerms; i++) {
+
+      int id = bb.getVarint();
+
+      terms.add(id == INLINE_CONST ? AbstractTerm.newConst(bb.getString()) : idToConst_.get(id - 1));
+    }
+    return new Clause(new Literal(probability, predicate, terms));
+  }
+
+  @Override
+  public void write(LargeByteBuffer bb, Clause clause) {
+
+    Preconditions.checkNotNull(clause, "clause should not be null");
+    Preconditions.checkArgument(clause.isFact(), "clause should be a fact : %s", clause);
+
+    Literal head = clause.head();
+
+    writeProbability(bb, head.probability());
+    bb.putVarint(predicateToId_.computeIfAbsent(head.predicate().name(), name -> {
+      idToPredicate_.add(name);
+      return idToPredicate_.size() - 1;
+    }));
+    bb.putVarint(head.terms().size());
+
+    for (AbstractTerm term : head.terms()) {
+
+      Const conzt = (Const) term;
+      @Var Integer id = constToId_.get(conzt.toString());
+
+      if (id == null && idToConst_.size() < MAX_NB_CONSTS) {
+        id = idToConst_.size();
+        idToConst_.add(conzt);
+        constToId_.put(conzt.toString(), id);
+      }
+      if (id == null) {
+        bb.putVarint(INLINE_CONST);
+        bb.putString(conzt.toString());
+      } else {
+        bb.putVarint(id + 1);
+      }
+    }
+  }
+
+  @Override
+  public int maxSize() {
+    return 0;
+  }
+
+  private BigDecimal readProbability(LargeByteBuffer bb) {
+
+    byte type = bb.get();
+
+    if (type == PROBABILITY_ONE) {
+      return BigDecimal.ONE;
+    }
+    if (type == PROBABILITY_SCALED_LONG) {
+      int scale = bb.getInt();
+      return BigDecimal.valueOf(bb.getVarlong(), scale);
+    }
+
+    Preconditions.checkState(type == PROBABILITY_STRING, "unknown probability type : %s", type);
+
+    return new BigDecimal(bb.getString());
+  }
+
+  private void writeProbability(LargeByteBuffer bb, BigDecimal probability) {
+
+    BigInteger unscaled = probability.unscaledValue();
+
+    if (BigDecimal.ONE.compareTo(probability) == 0) {
+      bb.put(PROBABILITY_ONE);
+    } else if (unscaled.bitLength() < 64) {
+      bb.put(PROBABILITY_SCALED_LONG);
+      bb.putInt(probability.scale());
+      bb.putVarlong(unscaled.longValueExact());
+    } else {
+      bb.put(PROBABILITY_STRING);
+      bb.putString(probability.toString());
+    }
+  }
+}
@@ -0,0 +1,457 @@
+package com.computablefacts.decima.problog;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterators;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import com.google.errorprone.annotations.CheckReturnValue;
+import com.google.errorprone.annotations.Var;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import javax.validation.constraints.NotNull;
+
+/**
+ * A knowledge base that stores the facts of each predicate as int columns. Each column holds term ids from a dictionary
+ * shared by all predicates and the probabilities are ids from a dictionary of their own. Each column is indexed by term
+ * id using int arrays only. Facts are materialized as {@link Clause} only when they are returned to the caller.
+ * <p>
+ * Rows and dictionary entries are never modified once written. Readers take a snapshot of the arrays under a read lock
+ * and iterate over it without locking, so concurrent solvers do not block each other.
+ */
+@CheckReturnValue
+final public class ColumnarKnowledgeBase extends AbstractKnowledgeBase {
+
+  private final ReadWriteLock lock_ = new ReentrantReadWriteLock();
+
+  // Dictionaries
+  private final Map<String, Integer> termToId_ = new HashMap<>();
+  private AbstractTerm[] idToTerm_ = new AbstractTerm[16];
+  private int nbTerms_ = 0;
+  private final Map<BigDecimal, Integer> probabilityToId_ = new HashMap<>();
+  private BigDecimal[] idToProbability_ = new BigDecimal[4];
+  private int nbProbabilities_ = 0;
+
+  // Facts and rules
+  private final Map<Predicate, Block> facts_ = new ConcurrentHashMap<>();
+  private final Map<Predicate, Set<Clause>> rules_ = new ConcurrentHashMap<>();
+
+  public ColumnarKnowledgeBase() {
+  }
+
+  /**
+   * Return an estimate of the memory used by the facts of each predicate, indexes included. The dictionaries shared by
+   * all predicates are not included.
+   *
+   * @return map between predicates ids and number of bytes.
+   */
+  public Map<String, Long> memoryFootprint() {
+    lock_.readLock().lock();
+    try {
+      return facts_.entrySet().stream()
+          .collect(Collectors.toMap(e -> e.getKey().id(), e -> e.getValue().memoryFootprint()));
+    } finally {
+      lock_.readLock().unlock();
+    }
+  }
+
+  @Override
+  protected boolean isThreadSafe() {
+    return true;
+  }
+
+  @Override
+  protected void azzertFact(@NotNull Clause fact) {
+    storeFact(fact);
+  }
+
+  @Override
+  protected void azzertRule(@NotNull Clause rule) {
+    storeRule(rule);
+  }
+
+  @Override
+  @CanIgnoreReturnValue
+  protected boolean storeFact(@NotNull Clause fact) {
+
+    Literal head = fact.head();
+    int[] row = new int[1 + head.terms().size()];
+
+    lock_.writeLock().lock();
+    try {
+
+      row[0] = probabilityToId_.computeIfAbsent(head.probability(), probability -> {
+        if (nbProbabilities_ == idToProbability_.length) {
+          idToProbability_ = Arrays.copyOf(idToProbability_, 2 * nbProbabilities_);
+        }
+        idToProbability_[nbProbabilities_] = probability;
+        return nbProbabilities_++;
+      });
+
+      for (int i = 0; i < head.terms().size(); i++) {
+
+        AbstractTerm term = head.terms().get(i);
+
+        row[1 + i] = termToId_.computeIfAbsent(term.id(), id -> {
+          if (nbTerms_ == idToTerm_.length) {
+            idToTerm_ = Arrays.copyOf(idToTerm_, 2 * nbTerms_);
+          }
+          idToTerm_[nbTerms_] = term;
+          return nbTerms_++;
+        });
+      }
+      return facts_.computeIfAbsent(head.predicate(), predicate -> new Block(predicate.name(), predicate.arity()))
+          .add(row);
+    } finally {
+      lock_.writeLock().unlock();
+    }
+  }
+
+  @Override
+  @CanIgnoreReturnValue
+  protected boolean storeRule(@NotNull Clause rule) {
+    return rules_.computeIfAbsent(rule.head().predicate(), predicate -> ConcurrentHashMap.newKeySet()).add(rule);
+  }
+
+  @Override
+  protected Iterator<Clause> facts(@NotNull Literal literal) {
+
+    lock_.readLock().lock();
+    try {
+
+      Block block = facts_.get(literal.predicate());
+
+      if (block == null) {
+        return Collections.emptyIterator();
+      }
+
+      // Map the literal constants to their dictionary ids and pick the column with the fewest candidate rows
+      int[] constants = new int[block.arity_];
+      @Var int column = -1;
+      @Var int nbCandidates = Integer.MAX_VALUE;
+
+      for (int i = 0; i < block.arity_; i++) {
+
+        AbstractTerm term = literal.terms().get(i);
+
+        if (!term.isConst()) {
+          constants[i] = -1;
+        } else {
+
+          Integer id = termToId_.get(term.id());
+          int nbRows = id == null ? 0 : block.index_[i].nbRows(id);
+
+          if (nbRows == 0) {
+            return Collections.emptyIterator(); // The constant is not in this column
+          }
+          if (nbRows < nbCandidates) {
+            column = i;
+            nbCandidates = nbRows;
+          }
+          constants[i] = id;
+        }
+      }
+
+      Snapshot snapshot = snapshot(block);
+      IntStream rows = column < 0 ? IntStream.range(0, snapshot.size_)
+          : Arrays.stream(block.index_[column].rows(constants[column]));
+
+      return rows.filter(row -> snapshot.matches(row, constants)).mapToObj(snapshot::fact).iterator();
+    } finally {
+      lock_.readLock().unlock();
+    }
+  }
+
+  @Override
+  protected Iterator<Clause> rules(@NotNull Literal literal) {
+    return rules_.getOrDefault(literal.predicate(), Collections.emptySet()).stream()
+        .filter(r -> r.head().isRelevant(literal)).iterator();
+  }
+
+  @Override
+  public Iterator<Clause> facts() {
+    return Iterators.concat(Iterators.transform(facts_.values().iterator(), block -> {
+      lock_.readLock().lock();
+      try {
+        Snapshot snapshot = snapshot(block);
+        return IntStream.range(0, snapshot.size_).mapToObj(snapshot::fact).iterator();
+      } finally {
+        lock_.readLock().unlock();
+      }
+    }));
+  }
+
+  @Override
+  public Iterator<Clause> rules() {
+    return rules_.values().stream().flatMap(Collection::stream).iterator();
+  }
+
+  // Must be called while holding the read lock
+  private Snapshot snapshot(Block block) {
+    return new Snapshot(block.predicate_, block.arity_, block.size_, block.probabilities_, block.columns_.clone(),
+        idToProbability_, idToTerm_);
+  }
+
+  /**
+   * The rows of a predicate at a given point in time.
+   */
+  private static final class Snapshot {
+
+    private final String predicate_;
+    private final int arity_;
+    private final int size_;
+    private final int[] probabilities_;
+    private final int[][] columns_;
+    private final BigDecimal[] idToProbability_;
+    private final AbstractTerm[] idToTerm_;
+
+    Snapshot(String predicate, int arity, int size, int[] probabilities, int[][] columns,
+        BigDecimal[] idToProbability, AbstractTerm[] idToTerm) {
+      predicate_ = predicate;
+      arity_ = arity;
+      size_ = size;
+      probabilities_ = probabilities;
+      columns_ = columns;
+      idToProbability_ = idToProbability;
+      idToTerm_ = idToTerm;
+    }
+
+    boolean matches(int row, int[] constants) {
+      for (int i = 0; i < arity_; i++) {
+        if (constants[i] >= 0 && columns_[i][row] != constants[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    Clause fact(int row) {
+
+      List<AbstractTerm> terms = new ArrayList<>(arity_);
+
+      for (int i = 0; i < arity_; i++) {
+        terms.add(idToTerm_[columns_[i][row]]);
+      }
+      return new Clause(new Literal(idToProbability_[probabilities_[row]], predicate_, terms));
+    }
+  }
+
+  /**
+   * The index of a column. An open-addressing hash table maps each term id to the number of rows where it appears and
+   * to the last of these rows. The rows of a term id are chained, from the last one to the first one, through an array
+   * parallel to the column. Hence, the index costs one int per row plus three ints per slot of the hash table.
+   */
+  private static final class ColumnIndex {
+
+    private int[] previous_; // the previous row with the same term id or -1
+    private int[] keys_ = new int[16]; // term id + 1 or 0 if the slot is empty
+    private int[] lastRows_ = new int[16];
+    private int[] nbRows_ = new int[16];
+    private int nbKeys_ = 0;
+
+    ColumnIndex(int capacity) {
+      previous_ = new int[capacity];
+    }
+
+    void grow(int capacity) {
+      previous_ = Arrays.copyOf(previous_, capacity);
+    }
+
+    void add(int id, int row) {
+
+      if (2 * (nbKeys_ + 1) > keys_.length) {
+        rehash();
+      }
+
+      int slot = slot(id);
+
+      if (keys_[slot] == 0) {
+        keys_[slot] = id + 1;
+        lastRows_[slot] = -1;
+        nbKeys_++;
+      }
+
+      previous_[row] = lastRows_[slot];
+      lastRows_[slot] = row;
+      nbRows_[slot]++;
+    }
+
+    int nbRows(int id) {
+      int slot = slot(id);
+      return keys_[slot] == 0 ? 0 : nbRows_[slot];
+    }
+
+    /**
+     * Return the rows where a term id appears, in ascending order.
+     */
+    int[] rows(int id) {
+
+      int slot = slot(id);
+
+      if (keys_[slot] == 0) {
+        return new int[0];
+      }
+
+      int[] rows = new int[nbRows_[slot]];
+      @Var int row = lastRows_[slot];
+
+      for (int i = rows.length - 1; i >= 0; i--) {
+        rows[i] = row;
+        row = previous_[row];
+      }
+      return rows;
+    }
+
+    long memoryFootprint() {
+      return (long) Integer.BYTES * (previous_.length + 3L * keys_.length);
+    }
+
+    private int slot(int id) {
+      @Var int slot = ((id * 0x9E3779B9) & Integer.MAX_VALUE) % keys_.length;
+      while (keys_[slot] != 0 && keys_[slot] != id + 1) {
+        slot = (slot + 1) % keys_.length;
+      }
+      return slot;
+    }
+
+    private void rehash() {
+
+      int[] keys = keys_;
+      int[] lastRows = lastRows_;
+      int[] nbRows = nbRows_;
+
+      keys_ = new int[2 * keys.length];
+      lastRows_ = new int[2 * keys.length];
+      nbRows_ = new int[2 * keys.length];
+
+      for (int i = 0; i < keys.length; i++) {
+        if (keys[i] != 0) {
+
+          int slot = slot(keys[i] - 1);
+
+          keys_[slot] = keys[i];
+          lastRows_[slot] = lastRows[i];
+          nbRows_[slot] = nbRows[i];
+        }
+      }
+    }
+  }
+
+  /**
+   * The facts of a single predicate. Duplicate facts are detected using an open-addressing hash table of row numbers.
+   * Each column has an index that maps a term id to the rows where it appears.
+   */
+  private static final class Block {
+
+    private final String predicate_;
+    private final int arity_;
+    private int size_ = 0;
+    private int[] probabilities_ = new int[8];
+    private final int[][] columns_;
+    private final ColumnIndex[] index_;
+    private int[] slots_ = new int[16]; // row + 1 or 0 if the slot is empty
+
+    Block(String predicate, int arity) {
+      predicate_ = Preconditions.checkNotNull(predicate, "predicate should not be null");
+      arity_ = arity;
+      columns_ = new int[arity][8];
+      index_ = new ColumnIndex[arity];
+      for (int i = 0; i < arity; i++) {
+        index_[i] = new ColumnIndex(8);
+      }
+    }
+
+    boolean add(int[] row) {
+
+      if (contains(row)) {
+        return false;
+      }
+      if (size_ == probabilities_.length) {
+        probabilities_ = Arrays.copyOf(probabilities_, 2 * size_);
+        for (int i = 0; i < arity_; i++) {
+          columns_[i] = Arrays.copyOf(columns_[i], 2 * size_);
+          index_[i].grow(2 * size_);
+        }
+      }
+
+      probabilities_[size_] = row[0];
+
+      for (int i = 0; i < arity_; i++) {
+        columns_[i][size_] = row[1 + i];
+        index_[i].add(row[1 + i], size_);
+      }
+
+      size_++;
+
+      if (2 * size_ > slots_.length) {
+        slots_ = new int[2 * slots_.length];
+        for (int r = 0; r < size_; r++) {
+          insert(r);
+        }
+      } else {
+        insert(size_ - 1);
+      }
+      return true;
+    }
+
+    long memoryFootprint() {
+      @Var long nbBytes = (long) Integer.BYTES * (probabilities_.length * (1L + arity_) + slots_.length);
+      for (ColumnIndex index : index_) {
+        nbBytes += index.memoryFootprint();
+      }
+      return nbBytes;
+    }
+
+    private boolean contains(int[] row) {
+      for (@Var int slot = slot(Arrays.hashCode(row)); slots_[slot] != 0; slot = (slot + 1) % slots_.length) {
+        if (equals(slots_[slot] - 1, row)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private void insert(int r) {
+      @Var int slot = slot(hashCode(r));
+      while (slots_[slot] != 0) {
+        slot = (slot + 1) % slots_.length;
+      }
+      slots_[slot] = r + 1;
+    }
+
+    private int slot(int hash) {
+      return (hash & Integer.MAX_VALUE) % slots_.length;
+    }
+
+    private boolean equals(int r, int[] row) {
+      if (probabilities_[r] != row[0]) {
+        return false;
+      }
+      for (int i = 0; i < arity_; i++) {
+        if (columns_[i][r] != row[1 + i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private int hashCode(int r) {
+      @Var int hash = 31 + probabilities_[r];
+      for (int i = 0; i < arity_; i++) {
+        hash = 31 * hash + columns_[i][r];
+      }
+      return hash;
+    }
+  }
+}
@@ -0,0 +1,96 @@
+package com.computablefacts.decima.problog;
+
+import com.google.common.base.Preconditions;
+import com.google.errorprone.annotations.CheckReturnValue;
+import com.google.errorprone.annotations.Var;
+
+/**
+ * A set of 32-bit fingerprints of facts, stored in an open-addressing hash table that starts small and doubles its
+ * capacity as fingerprints are added. A fact whose fingerprint is not in the set is a new fact. A fact whose
+ * fingerprint is in the set may be a new fact sharing its fingerprint with another one : the caller must check the
+ * facts themselves.
+ */
+@CheckReturnValue
+final class FactFingerprints {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private int[] slots_ = new int[INITIAL_CAPACITY]; // 0 if the slot is empty
+  private int size_ = 0;
+
+  FactFingerprints() {
+  }
+
+  /**
+   * Add the fingerprint of a fact.
+   *
+   * @param fact fact.
+   * @return true iif the fingerprint was not in the set.
+   */
+  boolean add(Clause fact) {
+
+    Preconditions.checkNotNull(fact, "fact should not be null");
+
+    return add(fingerprint(fact));
+  }
+
+  int size() {
+    return size_;
+  }
+
+  int capacity() {
+    return slots_.length;
+  }
+
+  boolean add(int fingerprint) {
+
+    Preconditions.checkArgument(fingerprint != 0, "fingerprint should not be 0");
+
+    for (@Var int slot = slot(fingerprint); slots_[slot] != 0; slot = (slot + 1) & (slots_.length - 1)) {
+      if (slots_[slot] == fingerprint) {
+        return false;
+      }
+    }
+
+    // Keep the load factor below 3/4
+    if (4 * (size_ + 1) > 3 * slots_.length) {
+
+      int[] slots = slots_;
+      slots_ = new int[2 * slots.length];
+
+      for (int fp : slots) {
+        if (fp != 0) {
+          insert(fp);
+        }
+      }
+    }
+
+    insert(fingerprint);
+    size_++;
+    return true;
+  }
+
+  private void insert(int fingerprint) {
+    @Var int slot = slot(fingerprint);
+    while (slots_[slot] != 0) {
+      slot = (slot + 1) & (slots_.length - 1);
+    }
+    slots_[slot] = fingerprint;
+  }
+
+  private int slot(int fingerprint) {
+    return fingerprint & (slots_.length - 1);
+  }
+
+  private static int fingerprint(Clause fact) {
+
+    // Murmur3 finalizer : spread the bits of the hash code over the whole int
+    @Var int hash = fact.head().hashCode();
+    hash ^= hash >>> 16;
+    hash *= 0x85ebca6b;
+    hash ^= hash >>> 13;
+    hash *= 0xc2b2ae35;
+    hash ^= hash >>> 16;
+    return hash == 0 ? 1 : hash;
+  }
+}
@@ -0,0 +1,153 @@
+package com.computablefacts.decima.problog;
+
+import com.google.common.base.Preconditions;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import com.google.errorprone.annotations.CheckReturnValue;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Keep the facts in memory until either the subgoal reaches a given number of facts or the global budget is exhausted.
+ * Then, move them to a disk-backed store (for example {@link BPlusTreeSubgoalFacts}) and write all the subsequent facts
+ * there.
+ * <p>
+ * The stores sharing a budget also share its lock. Hence, a fact is added and accounted for atomically, and a store
+ * cannot be spilled by the budget while another thread writes to it.
+ */
+@CheckReturnValue
+final public class HybridSubgoalFacts extends AbstractSubgoalFacts {
+
+  private final Supplier<AbstractSubgoalFacts> newDiskFacts_;
+  private final int maxFactsInMemory_;
+  private final SubgoalFactsBudget budget_;
+  private final Object lock_;
+
+  private volatile Set<Clause> memory_ = ConcurrentHashMap.newKeySet();
+  private volatile AbstractSubgoalFacts disk_ = null;
+
+  public HybridSubgoalFacts(Supplier<AbstractSubgoalFacts> newDiskFacts, int maxFactsInMemory) {
+    this(newDiskFacts, maxFactsInMemory, null);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param newDiskFacts     the disk-backed store to spill to.
+   * @param maxFactsInMemory the maximum number of facts kept in memory for this subgoal.
+   * @param budget           the budget shared by all subgoals (optional).
+   */
+  public HybridSubgoalFacts(Supplier<AbstractSubgoalFacts> newDiskFacts, int maxFactsInMemory,
+      SubgoalFactsBudget budget) {
+
+    Preconditions.checkNotNull(newDiskFacts, "newDiskFacts should not be null");
+    Preconditions.checkArgument(maxFactsInMemory >= 0, "maxFactsInMemory should be >= 0");
+
+    newDiskFacts_ = newDiskFacts;
+    maxFactsInMemory_ = maxFactsInMemory;
+    budget_ = budget;
+    lock_ = budget == null ? this : budget;
+  }
+
+  @Override
+  public boolean contains(Clause clause) {
+    AbstractSubgoalFacts disk = disk_;
+    return disk == null ? memory_.contains(clause) : disk.contains(clause);
+  }
+
+  @Override
+  public Iterator<Clause> facts() {
+    AbstractSubgoalFacts disk = disk_;
+    return disk == null ? memory_.iterator() : disk.facts();
+  }
+
+  @Override
+  public int size() {
+    AbstractSubgoalFacts disk = disk_;
+    return disk == null ? memory_.size() : disk.size();
+  }
+
+  @Override
+  public void add(Clause clause) {
+    synchronized (lock_) {
+      if (disk_ != null) {
+        disk_.add(clause);
+        return;
+      }
+      if (!memory_.add(clause)) {
+        return;
+      }
+      if (budget_ != null) {
+        budget_.allocate(this, 1);
+      }
+      if (nbFactsInMemory() > maxFactsInMemory_) {
+        spill();
+      }
+    }
+  }
+
+  /**
+   * Release the in-memory facts, hand them back to the budget and close the disk-backed store.
+   */
+  @Override
+  public void close() {
+    synchronized (lock_) {
+      if (budget_ != null) {
+        budget_.release(this, nbFactsInMemory());
+      }
+      memory_ = ConcurrentHashMap.newKeySet();
+      if (disk_ != null) {
+        disk_.close();
+      }
+    }
+  }
+
+  /**
+   * Check if the facts have been moved to disk.
+   *
+   * @return true iif the facts are on disk, false otherwise.
+   */
+  public boolean isSpilled() {
+    return disk_ != null;
+  }
+
+  /**
+   * Move the in-memory facts to disk. The iterators previously returned by {@link #facts()} remain valid.
+   *
+   * @return the number of facts released from memory.
+   */
+  @CanIgnoreReturnValue
+  int spill() {
+
+    synchronized (lock_) {
+      if (disk_ != null) {
+        return 0;
+      }
+
+      AbstractSubgoalFacts disk = newDiskFacts_.get();
+
+      Preconditions.checkState(disk != null, "the disk-backed store should not be null");
+
+      Set<Clause> memory = memory_;
+      memory.forEach(disk::add);
+
+      disk_ = disk;
+      memory_ = ConcurrentHashMap.newKeySet();
+
+      if (budget_ != null) {
+        budget_.release(this, memory.size());
+      }
+      return memory.size();
+    }
+  }
+
+  /**
+   * Return the number of facts currently held in memory.
+   *
+   * @return the number of in-memory facts.
+   */
+  int nbFactsInMemory() {
+    return disk_ == null ? memory_.size() : 0;
+  }
+}
@@ -0,0 +1,74 @@
+package com.computablefacts.decima.problog;
+
+import com.google.common.base.Preconditions;
+import com.google.common.hash.Hashing;
+import com.google.errorprone.annotations.CheckReturnValue;
+import com.google.errorprone.annotations.Var;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Estimate the number of distinct values in a stream using a fixed amount of memory.
+ * <p>
+ * See Flajolet, Philippe et al. (2007). "HyperLogLog: the analysis of a near-optimal cardinality estimation algorithm".
+ * DMTCS Proceedings. for details.
+ */
+@CheckReturnValue
+final public class HyperLogLog {
+
+  private final int precision_;
+  private final byte[] registers_;
+
+  /**
+   * Constructor.
+   *
+   * @param precision the number of bits used to select a register. The standard error is about 1.04 / sqrt(2^precision)
+   *                  and the memory used is 2^precision bytes.
+   */
+  public HyperLogLog(int precision) {
+
+    Preconditions.checkArgument(precision >= 4 && precision <= 16, "precision should be in [4, 16]");
+
+    precision_ = precision;
+    registers_ = new byte[1 << precision];
+  }
+
+  public void add(String value) {
+
+    Preconditions.checkNotNull(value, "value should not be null");
+
+    long hash = Hashing.murmur3_128().hashString(value, StandardCharsets.UTF_8).asLong();
+    int register = (int) (hash >>> (Long.SIZE - precision_));
+    byte rank = (byte) (Long.numberOfLeadingZeros((hash << precision_) | (1L << (precision_ - 1))) + 1);
+
+    update(register, rank);
+  }
+
+  private synchronized void update(int register, byte rank) {
+    if (rank > registers_[register]) {
+      registers_[register] = rank;
+    }
+  }
+
+  public synchronized long cardinality() {
+
+    int m = registers_.length;
+    @Var double sum = 0.0;
+    @Var int nbZeros = 0;
+
+    for (byte register : registers_) {
+      sum += 1.0 / (1L << register);
+      if (register == 0) {
+        nbZeros++;
+      }
+    }
+
+    double alpha = 0.7213 / (1.0 + 1.079 / m);
+    double estimate = alpha * m * m / sum;
+
+    // Small range correction
+    if (estimate <= 2.5 * m && nbZeros > 0) {
+      return Math.round(m * Math.log((double) m / nbZeros));
+    }
+    return Math.round(estimate);
+  }
+}
@@ -1,5 +1,6 @@
 package com.computablefacts.decima.problog;
 
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
 import com.google.errorprone.annotations.CheckReturnValue;
 import java.util.Collection;
 import java.util.Iterator;
@@ -18,27 +19,32 @@ final public class InMemoryKnowledgeBase extends AbstractKnowledgeBase {
   }
 
   @Override
-  protected void azzertFact(@NotNull Clause fact) {
-
-    Literal head = fact.head();
-    Predicate predicate = head.predicate();
+  protected boolean isThreadSafe() {
+    return true;
+  }
 
-    if (!facts_.containsKey(predicate)) {
-      facts_.put(predicate, ConcurrentHashMap.newKeySet());
-    }
-    facts_.get(predicate).add(fact);
+  @Override
+  protected void azzertFact(@NotNull Clause fact) {
+    storeFact(fact);
   }
 
   @Override
   protected void azzertRule(@NotNull Clause rule) {
+    storeRule(rule);
+  }
 
-    Literal head = rule.head();
-    Predicate predicate = head.predicate();
+  @Override
+  @CanIgnoreReturnValue
+  protected boolean storeFact(@NotNull Clause fact) {
+
+    return facts_.computeIfAbsent(fact.head().predicate(), predicate -> ConcurrentHashMap.newKeySet()).add(fact);
+  }
+
+  @Override
+  @CanIgnoreReturnValue
+  protected boolean storeRule(@NotNull Clause rule) {
 
-    if (!rules_.containsKey(predicate)) {
-      rules_.put(predicate, ConcurrentHashMap.newKeySet());
-    }
-    rules_.get(predicate).add(rule);
+    return rules_.computeIfAbsent(rule.head().predicate(), predicate -> ConcurrentHashMap.newKeySet()).add(rule);
   }
 
   @Override
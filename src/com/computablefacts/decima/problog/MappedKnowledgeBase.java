@@ -0,0 +1,590 @@
+package com.computablefacts.decima.problog;
+
+import static com.computablefacts.decima.problog.AbstractTerm.newConst;
+
+import com.computablefacts.logfmt.LogFormatter;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterators;
+import com.google.common.io.CountingOutputStream;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import com.google.errorprone.annotations.CheckReturnValue;
+import com.google.errorprone.annotations.Var;
+import java.io.BufferedOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+import javax.validation.constraints.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A knowledge base whose facts are served from a memory-mapped file built by
+ * {@link #compile(AbstractKnowledgeBase, File)}. Loading such a file does not parse nor copy the facts.
+ * <p>
+ * The file is made of :
+ *
+ * <ul>
+ * <li>a header, which ends with the signature of the sources the file has been compiled from ;</li>
+ * <li>a sorted dictionary of all the strings (predicates, constants and probabilities) ;</li>
+ * <li>the rules, as text ;</li>
+ * <li>one block of int columns per predicate : the probabilities, one column per argument and, for each argument, the
+ * rows sorted by argument value (the argument index).</li>
+ * </ul>
+ * <p>
+ * The compiled facts are read-only. Facts and rules asserted after loading are kept in memory.
+ */
+@CheckReturnValue
+final public class MappedKnowledgeBase extends AbstractKnowledgeBase {
+
+  private static final Logger logger_ = LoggerFactory.getLogger(MappedKnowledgeBase.class);
+  private static final int MAGIC = 0x444B4231; // DKB1
+  private static final int VERSION = 2;
+  private static final int HEADER_SIZE = 5 * Integer.BYTES + 5 * Long.BYTES;
+
+  // Compiled facts
+  private final LongBuffer dictionaryOffsets_;
+  private final ByteBuffer dictionary_;
+  private final int nbStrings_;
+  private final Map<String, Block> blocks_;
+
+  // Facts and rules asserted after loading
+  private final Map<Predicate, Set<Clause>> facts_ = new ConcurrentHashMap<>();
+  private final Map<Predicate, Set<Clause>> rules_ = new ConcurrentHashMap<>();
+
+  private MappedKnowledgeBase(LongBuffer dictionaryOffsets, ByteBuffer dictionary, int nbStrings,
+      Map<String, Block> blocks) {
+    dictionaryOffsets_ = dictionaryOffsets;
+    dictionary_ = dictionary;
+    nbStrings_ = nbStrings;
+    blocks_ = blocks;
+  }
+
+  /**
+   * Compile the facts and rules of a knowledge base to a file.
+   *
+   * @param kb   the knowledge base.
+   * @param file the output file.
+   * @return true iif the file has been written, false otherwise.
+   */
+  public static boolean compile(AbstractKnowledgeBase kb, File file) {
+    return compile(kb, file, 0L);
+  }
+
+  /**
+   * Compile the facts and rules of a knowledge base to a file. The file is first written next to its final location
+   * and then moved, so a failed compilation never leaves a partial file behind.
+   *
+   * @param kb        the knowledge base.
+   * @param file      the output file.
+   * @param signature the signature of the sources the knowledge base has been loaded from.
+   * @return true iif the file has been written, false otherwise.
+   */
+  public static boolean compile(AbstractKnowledgeBase kb, File file, long signature) {
+
+    Preconditions.checkNotNull(kb, "kb should not be null");
+    Preconditions.checkNotNull(file, "file should not be null");
+
+    // Build the dictionary
+    Set<String> strings = new TreeSet<>();
+    Map<String, Predicate> predicates = new HashMap<>();
+    Iterator<Clause> facts = kb.facts();
+
+    while (facts.hasNext()) {
+
+      Literal head = facts.next().head();
+
+      strings.add(head.probability().toString());
+      strings.add(head.predicate().name());
+      head.terms().forEach(term -> strings.add(term.toString()));
+      predicates.putIfAbsent(head.predicate().id(), head.predicate());
+    }
+
+    Map<String, Integer> ids = new HashMap<>();
+    strings.forEach(string -> ids.put(string, ids.size()));
+
+    // Encode the facts
+    Map<String, List<int[]>> rows = new HashMap<>();
+    Iterator<Clause> facts2 = kb.facts();
+
+    while (facts2.hasNext()) {
+
+      Literal head = facts2.next().head();
+      int[] row = new int[1 + head.terms().size()];
+      row[0] = ids.get(head.probability().toString());
+
+      for (int i = 0; i < head.terms().size(); i++) {
+        row[1 + i] = ids.get(head.terms().get(i).toString());
+      }
+      rows.computeIfAbsent(head.predicate().id(), id -> new ArrayList<>()).add(row);
+    }
+
+    List<String> rules = new ArrayList<>();
+    kb.rules().forEachRemaining(rule -> rules.add(rule.toString() + "."));
+
+    long[] offsets = new long[4];
+    File tmp = new File(file.getPath() + ".tmp");
+
+    try (CountingOutputStream cos = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        DataOutputStream dos = new DataOutputStream(cos)) {
+
+      // Header (the section offsets are rewritten below)
+      writeHeader(dos, strings.size(), rules.size(), rows.size(), offsets, signature);
+
+      // Dictionary
+      offsets[0] = cos.getCount();
+      @Var long offset = 0;
+      for (String string : strings) {
+        dos.writeLong(offset);
+        offset += string.getBytes(StandardCharsets.UTF_8).length;
+      }
+      dos.writeLong(offset);
+
+      offsets[1] = cos.getCount();
+      for (String string : strings) {
+        dos.write(string.getBytes(StandardCharsets.UTF_8));
+      }
+
+      // Rules
+      offsets[2] = cos.getCount();
+      for (String rule : rules) {
+        byte[] bytes = rule.getBytes(StandardCharsets.UTF_8);
+        dos.writeInt(bytes.length);
+        dos.write(bytes);
+      }
+
+      // Predicates directory
+      offsets[3] = cos.getCount();
+      @Var long blockOffset = offsets[3] + rows.size() * (3L * Integer.BYTES + Long.BYTES);
+      List<String> keys = new ArrayList<>(rows.keySet());
+
+      for (String key : keys) {
+
+        Predicate predicate = predicates.get(key);
+        int nbFacts = rows.get(key).size();
+
+        dos.writeInt(ids.get(predicate.name()));
+        dos.writeInt(predicate.arity());
+        dos.writeInt(nbFacts);
+        dos.writeLong(blockOffset);
+
+        blockOffset += (long) Integer.BYTES * nbFacts * (1 + 2 * predicate.arity());
+      }
+
+      // Predicates blocks
+      for (String key : keys) {
+
+        List<int[]> block = rows.get(key);
+        int arity = predicates.get(key).arity();
+
+        for (int col = 0; col <= arity; col++) {
+          for (int[] row : block) {
+            dos.writeInt(row[col]);
+          }
+        }
+        for (int col = 1; col <= arity; col++) {
+
+          long[] index = new long[block.size()];
+
+          for (int row = 0; row < block.size(); row++) {
+            index[row] = ((long) block.get(row)[col] << 32) | row;
+          }
+
+          Arrays.sort(index);
+
+          for (long entry : index) {
+            dos.writeInt((int) entry);
+          }
+        }
+      }
+
+      dos.flush();
+    } catch (IOException e) {
+      logger_.error(LogFormatter.create(true).message(e).formatError());
+      deleteQuietly(tmp);
+      return false;
+    }
+
+    try (RandomAccessFile raf = new RandomAccessFile(tmp, "rw")) {
+      writeHeader(raf, strings.size(), rules.size(), rows.size(), offsets, signature);
+    } catch (IOException e) {
+      logger_.error(LogFormatter.create(true).message(e).formatError());
+      deleteQuietly(tmp);
+      return false;
+    }
+
+    try {
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      return true;
+    } catch (IOException e) {
+      logger_.error(LogFormatter.create(true).message(e).formatError());
+      deleteQuietly(tmp);
+    }
+    return false;
+  }
+
+  /**
+   * Read the signature of the sources a compiled knowledge base has been built from.
+   *
+   * @param file a file built by {@link #compile(AbstractKnowledgeBase, File, long)}.
+   * @return the signature or null if the file cannot be read or has been built by another version of this class.
+   */
+  public static Long signature(File file) {
+
+    Preconditions.checkNotNull(file, "file should not be null");
+
+    if (!file.exists() || file.length() < HEADER_SIZE) {
+      return null;
+    }
+
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+
+      if (raf.readInt() != MAGIC || raf.readInt() != VERSION) {
+        return null;
+      }
+
+      raf.seek(HEADER_SIZE - Long.BYTES);
+      return raf.readLong();
+    } catch (IOException e) {
+      logger_.error(LogFormatter.create(true).message(e).formatError());
+    }
+    return null;
+  }
+
+  /**
+   * Load a compiled knowledge base.
+   *
+   * @param file a file built by {@link #compile(AbstractKnowledgeBase, File)}.
+   * @return a knowledge base or null if the file cannot be read.
+   */
+  public static MappedKnowledgeBase load(File file) {
+
+    Preconditions.checkNotNull(file, "file should not be null");
+    Preconditions.checkArgument(file.exists(), "file does not exist : %s", file);
+
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+
+      MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+
+      Preconditions.checkState(header.getInt() == MAGIC, "invalid file format : %s", file);
+      Preconditions.checkState(header.getInt() == VERSION, "unsupported file version : %s", file);
+
+      int nbStrings = header.getInt();
+      int nbRules = header.getInt();
+      int nbPredicates = header.getInt();
+      long dictionaryOffsetsPos = header.getLong();
+      long dictionaryPos = header.getLong();
+      long rulesPos = header.getLong();
+      long predicatesPos = header.getLong();
+
+      LongBuffer dictionaryOffsets = map(channel, dictionaryOffsetsPos, (nbStrings + 1L) * Long.BYTES).asLongBuffer();
+      ByteBuffer dictionary = map(channel, dictionaryPos, dictionaryOffsets.get(nbStrings));
+
+      // Load the block of each predicate
+      MappedByteBuffer directory = map(channel, predicatesPos, nbPredicates * (3L * Integer.BYTES + Long.BYTES));
+      List<int[]> entries = new ArrayList<>();
+      List<Long> positions = new ArrayList<>();
+
+      for (int i = 0; i < nbPredicates; i++) {
+        entries.add(new int[]{directory.getInt(), directory.getInt(), directory.getInt()});
+        positions.add(directory.getLong());
+      }
+
+      MappedKnowledgeBase kb = new MappedKnowledgeBase(dictionaryOffsets, dictionary, nbStrings,
+          new HashMap<>());
+
+      for (int i = 0; i < nbPredicates; i++) {
+
+        String name = kb.string(entries.get(i)[0]);
+        int arity = entries.get(i)[1];
+        int nbFacts = entries.get(i)[2];
+        IntBuffer data = map(channel, positions.get(i), (long) Integer.BYTES * nbFacts * (1 + 2 * arity))
+            .asIntBuffer();
+
+        Predicate predicate = new Predicate(name, arity);
+        kb.blocks_.put(predicate.id(), new Block(name, arity, nbFacts, data));
+        kb.addFacts(predicate, nbFacts);
+      }
+
+      // Load the rules
+      MappedByteBuffer rules = map(channel, rulesPos, predicatesPos - rulesPos);
+
+      for (int i = 0; i < nbRules; i++) {
+
+        byte[] bytes = new byte[rules.getInt()];
+        rules.get(bytes);
+
+        kb.azzert(Parser.parseClause(new String(bytes, StandardCharsets.UTF_8)));
+      }
+      return kb;
+    } catch (IOException e) {
+      logger_.error(LogFormatter.create(true).message(e).formatError());
+    }
+    return null;
+  }
+
+  private static MappedByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+
+    Preconditions.checkState(size <= Integer.MAX_VALUE, "section is too large to be mapped : %s bytes", size);
+
+    return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+  }
+
+  private static void deleteQuietly(File file) {
+    if (file.exists() && !file.delete()) {
+      logger_.error(
+          LogFormatter.create(true).message(String.format("the file could not be deleted : %s", file)).formatError());
+    }
+  }
+
+  private static void writeHeader(DataOutput output, int nbStrings, int nbRules, int nbPredicates, long[] offsets,
+      long signature) throws IOException {
+    output.writeInt(MAGIC);
+    output.writeInt(VERSION);
+    output.writeInt(nbStrings);
+    output.writeInt(nbRules);
+    output.writeInt(nbPredicates);
+    for (long offset : offsets) {
+      output.writeLong(offset);
+    }
+    output.writeLong(signature);
+  }
+
+  @Override
+  protected boolean isThreadSafe() {
+    return true;
+  }
+
+  @Override
+  protected void azzertFact(@NotNull Clause fact) {
+    storeFact(fact);
+  }
+
+  @Override
+  protected void azzertRule(@NotNull Clause rule) {
+    storeRule(rule);
+  }
+
+  @Override
+  @CanIgnoreReturnValue
+  protected boolean storeFact(@NotNull Clause fact) {
+    return facts_.computeIfAbsent(fact.head().predicate(), predicate -> ConcurrentHashMap.newKeySet()).add(fact);
+  }
+
+  @Override
+  @CanIgnoreReturnValue
+  protected boolean storeRule(@NotNull Clause rule) {
+    return rules_.computeIfAbsent(rule.head().predicate(), predicate -> ConcurrentHashMap.newKeySet()).add(rule);
+  }
+
+  @Override
+  protected Iterator<Clause> facts(@NotNull Literal literal) {
+
+    Iterator<Clause> facts = facts_.getOrDefault(literal.predicate(), Collections.emptySet()).stream()
+        .filter(f -> f.head().isRelevant(literal)).iterator();
+    Block block = blocks_.get(literal.predicate().id());
+
+    if (block == null) {
+      return facts;
+    }
+
+    // Map the literal constants to their dictionary ids
+    int[] constants = new int[block.arity_];
+    @Var int col = -1;
+
+    for (int i = 0; i < block.arity_; i++) {
+
+      AbstractTerm term = literal.terms().get(i);
+
+      if (!term.isConst()) {
+        constants[i] = -1;
+      } else {
+
+        constants[i] = id(term.toString());
+
+        if (constants[i] < 0) {
+          return facts; // The constant is not in the compiled facts
+        }
+        if (col < 0) {
+          col = i;
+        }
+      }
+    }
+
+    // Use the index of the first bound argument (if any)
+    IntStream rows;
+
+    if (col < 0) {
+      rows = IntStream.range(0, block.nbFacts_);
+    } else {
+
+      int column = col;
+      int first = block.lowerBound(column, constants[col]);
+      int last = block.lowerBound(column, constants[col] + 1);
+
+      rows = IntStream.range(first, last).map(i -> block.index(column, i));
+    }
+
+    Iterator<Clause> compiled = rows.filter(row -> {
+      for (int i = 0; i < block.arity_; i++) {
+        if (constants[i] >= 0 && block.arg(i, row) != constants[i]) {
+          return false;
+        }
+      }
+      return true;
+    }).mapToObj(row -> fact(block, row)).iterator();
+
+    return Iterators.concat(compiled, facts);
+  }
+
+  @Override
+  protected Iterator<Clause> rules(@NotNull Literal literal) {
+    return rules_.getOrDefault(literal.predicate(), Collections.emptySet()).stream()
+        .filter(r -> r.head().isRelevant(literal)).iterator();
+  }
+
+  @Override
+  public Iterator<Clause> facts() {
+    Iterator<Clause> compiled = blocks_.values().stream()
+        .flatMap(block -> IntStream.range(0, block.nbFacts_).mapToObj(row -> fact(block, row))).iterator();
+    return Iterators.concat(compiled, facts_.values().stream().flatMap(Collection::stream).iterator());
+  }
+
+  @Override
+  public Iterator<Clause> rules() {
+    return rules_.values().stream().flatMap(Collection::stream).iterator();
+  }
+
+  private Clause fact(Block block, int row) {
+
+    List<AbstractTerm> terms = new ArrayList<>(block.arity_);
+
+    for (int i = 0; i < block.arity_; i++) {
+      terms.add(newConst(string(block.arg(i, row))));
+    }
+    return new Clause(new Literal(new BigDecimal(string(block.probability(row))), block.predicate_, terms));
+  }
+
+  /**
+   * Decode a string from the dictionary.
+   *
+   * @param id the string id.
+   * @return the string.
+   */
+  private String string(int id) {
+
+    int begin = (int) dictionaryOffsets_.get(id);
+    int end = (int) dictionaryOffsets_.get(id + 1);
+    byte[] bytes = new byte[end - begin];
+
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = dictionary_.get(begin + i);
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Find the id of a string using a binary search over the sorted dictionary.
+   *
+   * @param string the string.
+   * @return the string id or -1 if the string is not in the dictionary.
+   */
+  private int id(String string) {
+
+    @Var int low = 0;
+    @Var int high = nbStrings_ - 1;
+
+    while (low <= high) {
+
+      int mid = (low + high) >>> 1;
+      int cmp = string(mid).compareTo(string);
+
+      if (cmp < 0) {
+        low = mid + 1;
+      } else if (cmp > 0) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * The compiled facts of a single predicate.
+   */
+  private static final class Block {
+
+    private final String predicate_;
+    private final int arity_;
+    private final int nbFacts_;
+    private final IntBuffer data_;
+
+    Block(String predicate, int arity, int nbFacts, IntBuffer data) {
+      predicate_ = predicate;
+      arity_ = arity;
+      nbFacts_ = nbFacts;
+      data_ = data;
+    }
+
+    int probability(int row) {
+      return data_.get(row);
+    }
+
+    int arg(int col, int row) {
+      return data_.get((1 + col) * nbFacts_ + row);
+    }
+
+    int index(int col, int i) {
+      return data_.get((1 + arity_ + col) * nbFacts_ + i);
+    }
+
+    /**
+     * Find the position, in the index of a given argument, of the first row whose argument value is &gt;= value.
+     *
+     * @param col   the argument.
+     * @param value the argument value.
+     * @return a position in the index.
+     */
+    int lowerBound(int col, int value) {
+
+      @Var int low = 0;
+      @Var int high = nbFacts_;
+
+      while (low < high) {
+
+        int mid = (low + high) >>> 1;
+
+        if (arg(col, index(col, mid)) < value) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+  }
+}
@@ -0,0 +1,57 @@
+package com.computablefacts.decima.problog;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import com.google.errorprone.annotations.CheckReturnValue;
+
+/**
+ * The metrics collected by a {@link Solver} for a single predicate : the number of subgoals searched, the number of
+ * facts read from the knowledge base and the time spent searching, excluding the time spent in nested subgoals.
+ */
+@CheckReturnValue
+final public class PredicateMetrics {
+
+  private final Predicate predicate_;
+  private long nbSearches_ = 0;
+  private long nbFactsScanned_ = 0;
+  private long nbFactsUnified_ = 0;
+  private long selfTimeNanos_ = 0;
+
+  PredicateMetrics(Predicate predicate) {
+    predicate_ = Preconditions.checkNotNull(predicate, "predicate should not be null");
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this).add("predicate", predicate_).add("nb_searches", nbSearches_)
+        .add("nb_facts_scanned", nbFactsScanned_).add("nb_facts_unified", nbFactsUnified_)
+        .add("self_time_nanos", selfTimeNanos_).toString();
+  }
+
+  public Predicate predicate() {
+    return predicate_;
+  }
+
+  public long nbSearches() {
+    return nbSearches_;
+  }
+
+  public long nbFactsScanned() {
+    return nbFactsScanned_;
+  }
+
+  public long nbFactsUnified() {
+    return nbFactsUnified_;
+  }
+
+  public long selfTimeNanos() {
+    return selfTimeNanos_;
+  }
+
+  void searched(long nbFactsScanned, long nbFactsUnified, long selfTimeNanos) {
+    nbSearches_++;
+    nbFactsScanned_ += nbFactsScanned;
+    nbFactsUnified_ += nbFactsUnified;
+    selfTimeNanos_ += selfTimeNanos;
+  }
+}
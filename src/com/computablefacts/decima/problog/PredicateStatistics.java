@@ -0,0 +1,99 @@
+package com.computablefacts.decima.problog;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import com.google.errorprone.annotations.CheckReturnValue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The statistics maintained by a knowledge base for a single predicate : the number of facts, the number of rules and,
+ * for each argument position, an estimate of the number of distinct values found in the facts. The estimates are only
+ * maintained when {@link AbstractKnowledgeBase#sketchDistinctValues(boolean)} is enabled.
+ */
+@CheckReturnValue
+final public class PredicateStatistics {
+
+  private static final int PRECISION = 10; // ~3% error, 1KB per argument
+
+  private final Predicate predicate_;
+  private final AtomicLong nbFacts_ = new AtomicLong(0);
+  private final AtomicLong nbRules_ = new AtomicLong(0);
+  private volatile HyperLogLog[] distinctValues_; // Allocated on the first sketched fact
+
+  PredicateStatistics(Predicate predicate) {
+    predicate_ = Preconditions.checkNotNull(predicate, "predicate should not be null");
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this).add("predicate", predicate_).add("nb_facts", nbFacts_.get())
+        .add("nb_rules", nbRules_.get()).toString();
+  }
+
+  public Predicate predicate() {
+    return predicate_;
+  }
+
+  public long nbFacts() {
+    return nbFacts_.get();
+  }
+
+  public long nbRules() {
+    return nbRules_.get();
+  }
+
+  /**
+   * Estimate the number of distinct values found at a given position in the facts.
+   *
+   * @param position the argument position.
+   * @return the estimated number of distinct values.
+   */
+  public long nbDistinctValues(int position) {
+
+    HyperLogLog[] distinctValues = distinctValues_;
+
+    Preconditions.checkState(distinctValues != null, "distinct values are not sketched : %s", predicate_);
+    Preconditions.checkElementIndex(position, distinctValues.length, "position");
+
+    return distinctValues[position].cardinality();
+  }
+
+  void addFact(Literal fact, boolean sketch) {
+
+    nbFacts_.incrementAndGet();
+
+    if (sketch) {
+
+      HyperLogLog[] distinctValues = distinctValues();
+
+      for (int i = 0; i < distinctValues.length; i++) {
+        distinctValues[i].add(fact.terms().get(i).id());
+      }
+    }
+  }
+
+  void addFacts(long nbFacts) {
+    nbFacts_.addAndGet(nbFacts);
+  }
+
+  void addRule() {
+    nbRules_.incrementAndGet();
+  }
+
+  private HyperLogLog[] distinctValues() {
+    if (distinctValues_ == null) {
+      synchronized (this) {
+        if (distinctValues_ == null) {
+
+          HyperLogLog[] distinctValues = new HyperLogLog[predicate_.arity()];
+
+          for (int i = 0; i < distinctValues.length; i++) {
+            distinctValues[i] = new HyperLogLog(PRECISION);
+          }
+          distinctValues_ = distinctValues;
+        }
+      }
+    }
+    return distinctValues_;
+  }
+}
@@ -3,20 +3,25 @@ package com.computablefacts.decima.problog;
 import com.computablefacts.asterix.RandomString;
 import com.computablefacts.decima.robdd.BddManager;
 import com.computablefacts.decima.robdd.BddNode;
+import com.computablefacts.decima.robdd.Pair;
 import com.google.common.annotations.Beta;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
 import com.google.errorprone.annotations.CheckReturnValue;
 import com.google.errorprone.annotations.Var;
 import java.math.BigDecimal;
+import java.math.MathContext;
 import java.math.RoundingMode;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -37,6 +42,17 @@ final public class ProbabilityEstimator {
     proofs_ = proofs;
   }
 
+  /**
+   * Build an estimator from a stream of proofs, for example the ones unfolded by {@link ProofAssistant}. The stream is
+   * not consumed incrementally : the proofs are drained into a set when the estimator is built because the BDD of a
+   * fact is compiled from all its proofs.
+   *
+   * @param proofs proofs.
+   */
+  public ProbabilityEstimator(Iterator<Clause> proofs) {
+    this(Sets.newHashSet(Preconditions.checkNotNull(proofs, "proofs should not be null")));
+  }
+
   @Beta
   public Map<Clause, BigDecimal> probabilities() {
     return probabilities(5);
@@ -67,6 +83,44 @@ final public class ProbabilityEstimator {
     return probabilities;
   }
 
+  /**
+   * Anytime estimation of the probability associated with each fact. For each fact, the proofs are sorted by
+   * decreasing probability and compiled to a BDD in batches of k, 2k, 4k, ... proofs. After each batch, the BDD
+   * probability is a lower bound of the fact probability and the lower bound plus the sum of the probabilities of the
+   * proofs not compiled yet is an upper bound. The compilation of a fact stops as soon as the bound width falls below
+   * {@code epsilon}, all its proofs have been compiled or the deadline has passed.
+   *
+   * @param k                   number of proofs compiled in the first batch.
+   * @param epsilon             maximum bound width.
+   * @param deadline            deadline in milliseconds since the epoch (see {@link System#currentTimeMillis()}). If
+   *                            this number is less than or equals to 0, there is no deadline.
+   * @param nbSignificantDigits number of significant digits.
+   * @return map between facts and probabilities intervals i.e. {@link Pair#t} is the lower bound and {@link Pair#u}
+   * the upper bound.
+   */
+  public Map<Clause, Pair<BigDecimal, BigDecimal>> probabilities(int k, BigDecimal epsilon, long deadline,
+      int nbSignificantDigits) {
+
+    Preconditions.checkArgument(k > 0, "k should be > 0");
+    Preconditions.checkNotNull(epsilon, "epsilon should not be null");
+    Preconditions.checkArgument(epsilon.signum() >= 0, "epsilon should be >= 0");
+    Preconditions.checkArgument(nbSignificantDigits > 0, "nbSignificantDigits should be > 0");
+
+    Map<String, List<Clause>> proofsByFact = proofs_.stream()
+        .collect(Collectors.groupingBy(proof -> proof.head().tag()));
+    Map<Clause, Pair<BigDecimal, BigDecimal>> probabilities = new HashMap<>();
+
+    for (List<Clause> proofs : proofsByFact.values()) {
+
+      Clause fact = new Clause(proofs.get(0).head());
+      Pair<BigDecimal, BigDecimal> bounds = bounds(proofs, k, epsilon, deadline);
+
+      probabilities.put(fact, new Pair<>(bounds.t.round(new MathContext(nbSignificantDigits, RoundingMode.FLOOR)),
+          bounds.u.round(new MathContext(nbSignificantDigits, RoundingMode.CEILING))));
+    }
+    return probabilities;
+  }
+
   @Beta
   public BigDecimal probability(Literal literal) {
 
@@ -149,27 +203,124 @@ final public class ProbabilityEstimator {
     return probability(bddVars, or(mgr, trees));
   }
 
+  /**
+   * Compute the probability bounds of a single fact. See {@link #probabilities(int, BigDecimal, long, int)} for
+   * details.
+   *
+   * @param proofs   the fact proofs.
+   * @param k        number of proofs compiled in the first batch.
+   * @param epsilon  maximum bound width.
+   * @param deadline deadline in milliseconds since the epoch.
+   * @return the lower and upper bounds.
+   */
+  private Pair<BigDecimal, BigDecimal> bounds(List<Clause> proofs, int k, BigDecimal epsilon, long deadline) {
+
+    Preconditions.checkNotNull(proofs, "proofs should not be null");
+    Preconditions.checkArgument(!proofs.isEmpty(), "proofs should not be empty");
+
+    // Literals with probability of 1 do not contribute to the final score. Hence, proofs made exclusively of such
+    // literals are ignored unless all proofs are made of them (see #probability() for details).
+    List<Map.Entry<Clause, BigDecimal>> sorted = proofs.stream().map(this::rewriteRuleBody)
+        .filter(proof -> (proof.isFact() ? ImmutableList.of(proof.head()) : proof.body()).stream()
+            .anyMatch(literal -> BigDecimal.ONE.compareTo(literal.probability()) != 0))
+        .map(proof -> new AbstractMap.SimpleImmutableEntry<>(proof, proofProbability(proof)))
+        .sorted(Comparator.comparing(Map.Entry<Clause, BigDecimal>::getValue).reversed())
+        .collect(Collectors.toList());
+
+    if (sorted.isEmpty()) {
+      return new Pair<>(BigDecimal.ONE, BigDecimal.ONE);
+    }
+
+    BddManager mgr = new BddManager(10);
+    BiMap<BddNode, Literal> bddVars = HashBiMap.create();
+
+    @Var BigDecimal remaining = sorted.stream().map(Map.Entry::getValue).reduce(BigDecimal.ZERO, BigDecimal::add);
+    @Var BigDecimal lower = BigDecimal.ZERO;
+    @Var BigDecimal upper = BigDecimal.ONE.min(remaining);
+    @Var BddNode bdd = null;
+    @Var int batchSize = k;
+    @Var int i = 0;
+
+    while (i < sorted.size()) {
+
+      for (int end = Math.min(sorted.size(), i + batchSize); i < end; i++) {
+
+        Clause proof = sorted.get(i).getKey();
+        List<Literal> body = proof.isFact() ? ImmutableList.of(proof.head()) : proof.body();
+
+        for (Literal literal : body) {
+          if (BigDecimal.ONE.compareTo(literal.probability()) != 0 && !bddVars.containsValue(literal)) {
+            bddVars.put(mgr.create(mgr.createVariable(), mgr.One, mgr.Zero), literal);
+          }
+        }
+
+        BddNode node = and(mgr, bddVars.inverse(), body);
+        bdd = bdd == null ? node : mgr.or(bdd, node);
+        remaining = remaining.subtract(sorted.get(i).getValue());
+      }
+
+      lower = probability(bddVars, bdd);
+      upper = BigDecimal.ONE.min(lower.add(remaining));
+
+      if (upper.subtract(lower).compareTo(epsilon) <= 0) {
+        break;
+      }
+      if (deadline > 0 && System.currentTimeMillis() >= deadline) {
+        break;
+      }
+      batchSize = batchSize > Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE : 2 * batchSize;
+    }
+    return new Pair<>(lower, upper);
+  }
+
+  /**
+   * Compute the probability of a single proof i.e. the product of the probabilities of its distinct literals.
+   *
+   * @param proof a proof, rewritten (see {@link #rewriteRuleBody(Clause)}) or not.
+   * @return probability.
+   */
+  static BigDecimal proofProbability(Clause proof) {
+
+    Preconditions.checkNotNull(proof, "proof should not be null");
+
+    List<Literal> body = proof.isFact() ? ImmutableList.of(proof.head()) : proof.body();
+    return body.stream().distinct().map(Literal::probability).reduce(BigDecimal.ONE, BigDecimal::multiply);
+  }
+
   private BigDecimal probability(BiMap<BddNode, Literal> bddVars, BddNode node) {
 
     Preconditions.checkNotNull(bddVars, "bddVars should not be null");
     Preconditions.checkNotNull(node, "node should not be null");
 
+    Map<Integer, BigDecimal> probabilities = new HashMap<>();
+    bddVars.forEach((bddNode, literal) -> probabilities.put(bddNode.index(), literal.probability()));
+
+    return probability(probabilities, node, new HashMap<>());
+  }
+
+  private BigDecimal probability(Map<Integer, BigDecimal> probabilities, BddNode node, Map<BddNode, BigDecimal> cache) {
+
+    Preconditions.checkNotNull(probabilities, "probabilities should not be null");
+    Preconditions.checkNotNull(node, "node should not be null");
+    Preconditions.checkNotNull(cache, "cache should not be null");
+
     if (node.isOne()) {
       return BigDecimal.ONE;
     }
     if (node.isZero()) {
       return BigDecimal.ZERO;
     }
+    if (cache.containsKey(node)) {
+      return cache.get(node);
+    }
 
-    BigDecimal probH = probability(bddVars, node.high());
-    BigDecimal probL = probability(bddVars, node.low());
-
-    Optional<Literal> fact = bddVars.entrySet().stream().filter(e -> e.getKey().index() == node.index())
-        .map(Map.Entry::getValue).findFirst();
-
-    BigDecimal probability = fact.get().probability();
+    BigDecimal probH = probability(probabilities, node.high(), cache);
+    BigDecimal probL = probability(probabilities, node.low(), cache);
+    BigDecimal probability = probabilities.get(node.index());
+    BigDecimal result = probability.multiply(probH).add(BigDecimal.ONE.subtract(probability).multiply(probL));
 
-    return probability.multiply(probH).add(BigDecimal.ONE.subtract(probability).multiply(probL));
+    cache.put(node, result);
+    return result;
   }
 
   private BddNode and(BddManager mgr, BiMap<Literal, BddNode> bddVars, List<Literal> body) {
@@ -2,21 +2,26 @@ package com.computablefacts.decima.problog;
 
 import com.computablefacts.asterix.trie.Trie;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Lists;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Sets;
 import com.google.errorprone.annotations.CheckReturnValue;
 import com.google.errorprone.annotations.Var;
 import java.math.BigDecimal;
-import java.util.AbstractMap;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.OptionalInt;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -27,33 +32,48 @@ import java.util.stream.Collectors;
 final public class ProofAssistant {
 
   // The intermediate proofs generated by the tabling algorithm
-  private final Set<Literal> facts_;
-  private final Set<Clause> rulesWithSubRules_;
-  private final Set<Clause> rulesWithoutSubRules_;
-  private final Map<Clause, Trie<Literal>> proofs_ = new HashMap<>();
-  private final Set<Map.Entry<Integer, Set<Clause>>> factsInProofs_ = new HashSet<>();
-  private final Set<Map.Entry<Integer, Set<Clause>>> rulesInProofs_ = new HashSet<>();
+  private final Index<Literal> facts_ = new Index<>(literal -> literal);
+  private final Index<Clause> rulesWithSubRules_ = new Index<>(Clause::head);
+  private final Index<Clause> rulesWithoutSubRules_ = new Index<>(Clause::head);
+
+  // The unfolded proofs, indexed by rule head tag
+  private final Map<String, Map<Clause, Trie<Literal>>> proofs_ = new HashMap<>();
+  private final Map<Integer, Set<Clause>> factsInProofs_ = new HashMap<>();
+  private final Map<Integer, Set<Clause>> rulesInProofs_ = new HashMap<>();
 
   public ProofAssistant(Collection<Subgoal> subgoals) {
 
     Preconditions.checkNotNull(subgoals, "subgoals should not be null");
 
-    facts_ = subgoals.stream().filter(subgoal -> subgoal.proofs().isEmpty())
-        .flatMap(subgoal -> Sets.newHashSet(subgoal.facts()).stream()).map(Clause::head).collect(Collectors.toSet());
+    Set<Literal> facts = new HashSet<>();
 
-    rulesWithoutSubRules_ = subgoals.stream().flatMap(subgoal -> subgoal.proofs().stream()).filter(Clause::isGrounded)
-        .filter(rule -> rule.body().stream()
-            .allMatch(literal -> literal.predicate().isPrimitive() || facts_.contains(literal)))
-        .collect(Collectors.toSet());
+    for (Subgoal subgoal : subgoals) {
+      if (subgoal.proofs().isEmpty()) {
+        Iterator<Clause> iterator = subgoal.facts();
+        while (iterator.hasNext()) {
+          Literal fact = iterator.next().head();
+          if (facts.add(fact)) {
+            facts_.add(fact);
+          }
+        }
+      }
+    }
 
-    rulesWithSubRules_ = subgoals.stream().flatMap(subgoal -> subgoal.proofs().stream()).filter(Clause::isGrounded)
-        .filter(rule -> rule.body().stream()
-            .anyMatch(literal -> !literal.predicate().isPrimitive() && !facts_.contains(literal)))
-        .collect(Collectors.toSet());
+    for (Subgoal subgoal : subgoals) {
+      for (Clause rule : subgoal.proofs()) {
+        if (rule.isGrounded()) {
+          if (rule.body().stream().allMatch(literal -> literal.predicate().isPrimitive() || facts.contains(literal))) {
+            rulesWithoutSubRules_.add(rule);
+          } else {
+            rulesWithSubRules_.add(rule);
+          }
+        }
+      }
+    }
   }
 
   public List<String> tableOfProofs() {
-    return Sets.union(factsInProofs_, rulesInProofs_).stream().flatMap(e -> {
+    return Sets.union(factsInProofs_.entrySet(), rulesInProofs_.entrySet()).stream().flatMap(e -> {
 
       int depth = e.getKey();
       Set<Clause> clauses = e.getValue();
@@ -74,155 +94,461 @@ final public class ProofAssistant {
     return proofs(curLiteral, 0, new HashSet<>());
   }
 
+  /**
+   * Lazily unfold the proofs of a given literal. The bodies of the rules whose head matches the literal are unfolded
+   * one rule at a time and the resulting proofs are enumerated on demand. Hence, the consumer may stop the enumeration
+   * at any time without paying for the proofs it did not ask for. Only the product is lazy : the proofs of the body
+   * literals are unfolded and memoized before the first proof of a rule is returned. Two rules may unfold to the same
+   * proof but each proof is returned once : the proofs already returned are memoized in a {@link Memo} that shares
+   * their common prefixes.
+   *
+   * @param curLiteral literal.
+   * @return proofs.
+   */
+  public Iterator<Clause> lazyProofs(Literal curLiteral) {
+
+    Preconditions.checkNotNull(curLiteral, "curLiteral should not be null");
+
+    Collection<Literal> curFacts = facts_.get(curLiteral);
+
+    if (!curFacts.isEmpty()) {
+      return curFacts.stream().map(Clause::new).peek(clause -> addFactAtDepth(clause, 0)).iterator();
+    }
+
+    List<Clause> rules = new ArrayList<>();
+    rules.addAll(rulesWithoutSubRules_.get(curLiteral));
+    rules.addAll(rulesWithSubRules_.get(curLiteral));
+
+    Memo memo = new Memo();
+
+    return Iterators.concat(Iterators.transform(rules.iterator(), rule -> {
+
+      Iterator<Clause> proofs = Iterators.transform(
+          Iterators.filter(bodies(rule, 0, new HashSet<>()).iterator(), body -> memo.add(rule.head(), body)),
+          body -> new Clause(rule.head(), body));
+      addRuleAtDepth(rule, 0);
+      return proofs;
+    }));
+  }
+
+  /**
+   * Unfold the proofs of a given literal. The unfolding is iterative : each literal being unfolded is a {@link Frame}
+   * pushed onto an explicit stack, so deep derivations do not exhaust the call stack.
+   *
+   * @param curLiteral literal.
+   * @param depth      the literal depth.
+   * @param visited    the rules already visited.
+   * @return proofs.
+   */
   private Set<Clause> proofs(Literal curLiteral, int depth, Set<Clause> visited) {
 
     Preconditions.checkNotNull(curLiteral, "curLiteral should not be null");
     Preconditions.checkArgument(depth >= 0, "depth should be >= 0");
     Preconditions.checkNotNull(visited, "visited should not be null");
 
-    if (facts_.stream().anyMatch(fact -> fact.isRelevant(curLiteral))) {
-      return facts_.stream().filter(literal -> literal.isRelevant(curLiteral)).map(Clause::new)
-          .peek(clause -> addFactAtDepth(clause, depth)).collect(Collectors.toSet());
+    Deque<Frame> stack = new ArrayDeque<>();
+    stack.push(new Frame(curLiteral, depth, visited));
+
+    @Var Set<Clause> proofs = null;
+
+    while (!stack.isEmpty()) {
+
+      Frame frame = stack.peek();
+
+      if (proofs != null) {
+        frame.resume(proofs);
+        proofs = null;
+      }
+
+      Frame child = frame.step();
+
+      if (child != null) {
+        stack.push(child);
+      } else {
+        stack.pop();
+        proofs = frame.unfolded_;
+      }
     }
+    return proofs;
+  }
 
-    Set<Clause> rulesWithSubRules = rulesWithSubRules_.stream().filter(clause -> !visited.contains(clause))
-        .filter(clause -> clause.head().isRelevant(curLiteral)).collect(Collectors.toSet());
+  /**
+   * Unfold the body of a given rule. The unfolded bodies are the cartesian product of the unfolded body literals and
+   * are computed on demand.
+   *
+   * @param rule    rule.
+   * @param depth   the rule depth.
+   * @param visited the rules already visited.
+   * @return the unfolded bodies.
+   */
+  private Iterable<List<Literal>> bodies(Clause rule, int depth, Set<Clause> visited) {
 
-    Set<Clause> rulesWithoutSubRules = rulesWithoutSubRules_.stream()
-        .filter(clause -> clause.head().isRelevant(curLiteral)).collect(Collectors.toSet());
+    Preconditions.checkNotNull(rule, "rule should not be null");
+    Preconditions.checkArgument(rule.isRule(), "rule should be a rule : %s", rule);
 
-    Set<Clause> proofs = new HashSet<>();
-    List<Clause> rules = new ArrayList<>();
-    rules.addAll(rulesWithoutSubRules);
-    rules.addAll(rulesWithSubRules);
+    List<List<List<Literal>>> alternatives = new ArrayList<>(rule.body().size());
 
-    for (Clause rule : rules) {
+    for (Literal literal : rule.body()) {
 
-      Set<List<Literal>> newBodies = new HashSet<>();
+      @Var List<List<Literal>> bodies = alternatives(literal, alternatives.isEmpty(), depth);
 
-      for (Literal literal : rule.body()) {
+      if (bodies == null) {
+        Set<Clause> newVisited = new HashSet<>(visited);
+        newVisited.add(rule);
+        bodies = shortest(proofs(literal, depth + 1, newVisited), rule);
+      }
+      alternatives.add(bodies);
+    }
+    return product(alternatives);
+  }
 
-        Set<Literal> facts = facts_.stream().filter(fact -> fact.isRelevant(literal)).collect(Collectors.toSet());
-        Set<List<Literal>> newNewBodies = new HashSet<>();
+  /**
+   * Get the alternative unfoldings of a single body literal.
+   *
+   * @param literal the body literal.
+   * @param isFirst true iif the literal is the first one of the rule body.
+   * @param depth   the rule depth.
+   * @return the unfolded literal or {@code null} if the literal is a rule whose proofs have not been unfolded yet.
+   */
+  private List<List<Literal>> alternatives(Literal literal, boolean isFirst, int depth) {
+
+    Preconditions.checkNotNull(literal, "literal should not be null");
+
+    if (literal.predicate().isPrimitive() /* function */) {
+      addFactAtDepth(new Clause(literal), depth);
+      return Collections.singletonList(Collections.singletonList(literal));
+    }
 
-        if (literal.predicate().isPrimitive() /* function */) {
-          if (newBodies.isEmpty()) {
-            newNewBodies.add(Lists.newArrayList(literal));
-          } else {
-            for (List<Literal> body : newBodies) {
-              List<Literal> nb = new ArrayList<>(body);
-              nb.add(literal);
-              newNewBodies.add(nb);
-            }
-          }
-          addFactAtDepth(new Clause(literal), depth);
-        } else if (!facts.isEmpty() /* fact */) {
-          for (Literal fact : facts) {
-            if (newBodies.isEmpty()) {
-              newNewBodies.add(Lists.newArrayList(fact));
-            } else {
-              for (List<Literal> body : newBodies) {
-                List<Literal> nb = new ArrayList<>(body);
-                nb.add(literal);
-                newNewBodies.add(nb);
-              }
-            }
-            addFactAtDepth(new Clause(literal), depth);
-          }
-        } else { /* rule */
+    Collection<Literal> facts = facts_.get(literal);
 
-          @Var Set<Clause> proofz = proofs_.entrySet().stream().filter(e -> e.getKey().head().isRelevant(literal))
-              .flatMap(e -> e.getValue().paths().stream().map(path -> new Clause(literal, path)))
-              .collect(Collectors.toSet());
+    if (!facts.isEmpty() /* fact */) {
+      addFactAtDepth(new Clause(literal), depth);
+      if (isFirst) {
+        return facts.stream().map(Collections::singletonList).collect(Collectors.toList());
+      }
+      return Collections.singletonList(Collections.singletonList(literal));
+    }
 
-          if (proofz.isEmpty()) {
-            Set<Clause> newVisited = new HashSet<>(visited);
-            newVisited.add(rule);
-            proofz = proofs(literal, depth + 1, newVisited);
-          }
+    /* rule */
+    Set<Clause> proofs = memoizedProofs(literal).entrySet().stream()
+        .filter(e -> e.getKey().head().isRelevant(literal))
+        .flatMap(e -> e.getValue().paths().stream().map(path -> new Clause(literal, path)))
+        .collect(Collectors.toSet());
+
+    return proofs.isEmpty() ? null : shortest(proofs, null);
+  }
 
-          Preconditions.checkState(!proofz.isEmpty(), "goal cannot be proven : %s", rule);
+  /**
+   * Here, we have two kinds of proofs : 1/ proofs where all the body literals have a probability of 1 and 2/ proofs
+   * where at least one of the body literals have a probability different from 1. If more than one proof are in 1/, only
+   * keep the shortest ones. This reduction in the number of proofs should have no impact on the computation performed
+   * by the {@link ProbabilityEstimator} class.
+   *
+   * @param proofs the proofs of a body literal.
+   * @param rule   the rule being unfolded (for error reporting only).
+   * @return the bodies of the remaining proofs.
+   */
+  private List<List<Literal>> shortest(Set<Clause> proofs, Clause rule) {
 
-          // --[ BEGIN SHENANIGANS ]--
-          // Here, we have two kinds of proofs : 1/ proofs where all the body literals have a
-          // probability of 1 and 2/ proofs where at least one of the body literals have a
-          // probability different from 1. If more than one proof are in 1/, only keep the shortest
-          // ones. This reduction in the number of proofs should have no impact on the computation
-          // performed by the ProbabilityEstimator class.
+    Preconditions.checkNotNull(proofs, "proofs should not be null");
+    Preconditions.checkState(!proofs.isEmpty(), "goal cannot be proven : %s", rule);
 
-          Set<Clause> ones = new HashSet<>();
-          Set<Clause> others = new HashSet<>();
+    Set<Clause> ones = new HashSet<>();
+    Set<Clause> others = new HashSet<>();
 
-          for (Clause proof : proofz) {
+    for (Clause proof : proofs) {
 
-            Preconditions.checkState(proof.isRule(), "proof should be a rule : %s", proof);
+      Preconditions.checkState(proof.isRule(), "proof should be a rule : %s", proof);
 
-            if (proof.body().stream().map(Literal::probability).allMatch(prob -> BigDecimal.ONE.compareTo(prob) == 0)) {
-              ones.add(proof);
-            } else {
-              others.add(proof);
-            }
-          }
+      if (proof.body().stream().map(Literal::probability).allMatch(prob -> BigDecimal.ONE.compareTo(prob) == 0)) {
+        ones.add(proof);
+      } else {
+        others.add(proof);
+      }
+    }
+
+    OptionalInt minSize = ones.stream().mapToInt(proof -> proof.body().size()).min();
+    return Sets.union(ones.stream().filter(p -> p.body().size() == minSize.getAsInt()).collect(Collectors.toSet()),
+        others).stream().map(Clause::body).collect(Collectors.toList());
+  }
+
+  /**
+   * Lazily compute the cartesian product of the unfolded body literals. The bodies are enumerated on demand and share
+   * the nodes of their common prefix (see {@link Product}).
+   *
+   * @param alternatives the alternative unfoldings of each body literal.
+   * @return the unfolded bodies.
+   */
+  private Iterable<List<Literal>> product(List<List<List<Literal>>> alternatives) {
+    return () -> new Product(alternatives);
+  }
+
+  /**
+   * Get the memoized proofs of the rules whose head is relevant to a given literal.
+   *
+   * @param literal literal.
+   * @return a map between rules and their unfolded bodies.
+   */
+  private Map<Clause, Trie<Literal>> memoizedProofs(Literal literal) {
+
+    Preconditions.checkNotNull(literal, "literal should not be null");
+
+    if (literal.isGrounded()) {
+      return proofs_.getOrDefault(literal.tag(), Collections.emptyMap());
+    }
+
+    Map<Clause, Trie<Literal>> proofs = new HashMap<>();
+    proofs_.values().forEach(proofs::putAll);
+    return proofs;
+  }
+
+  private void addFactAtDepth(Clause clause, int depth) {
+    factsInProofs_.computeIfAbsent(depth, d -> new HashSet<>()).add(clause);
+  }
 
-          OptionalInt minSize = ones.stream().mapToInt(proof -> proof.body().size()).min();
-          proofz = Sets.union(
-              ones.stream().filter(p -> p.body().size() == minSize.getAsInt()).collect(Collectors.toSet()), others);
-
-          // --[ END SHENANIGANS ]--
-
-          for (Clause proof : proofz) {
-            if (newBodies.isEmpty()) {
-              newNewBodies.add(new ArrayList<>(proof.body()));
-            } else {
-              for (List<Literal> body : newBodies) {
-                List<Literal> nb = new ArrayList<>(body);
-                nb.addAll(proof.body());
-                newNewBodies.add(nb);
-              }
-            }
+  private void addRuleAtDepth(Clause clause, int depth) {
+    rulesInProofs_.computeIfAbsent(depth, d -> new HashSet<>()).add(clause);
+  }
+
+  /**
+   * The unfolding state of a single literal. A frame walks the rules whose head matches its literal, one body literal
+   * at a time, and hands over to a child frame whenever a body literal has to be unfolded first.
+   */
+  private final class Frame {
+
+    private final int depth_;
+    private final Set<Clause> visited_;
+    private final List<Clause> rules_ = new ArrayList<>();
+    private final Set<Clause> unfolded_ = new HashSet<>();
+    private final List<List<List<Literal>>> alternatives_ = new ArrayList<>();
+    private int rule_ = 0;
+
+    Frame(Literal literal, int depth, Set<Clause> visited) {
+
+      depth_ = depth;
+      visited_ = visited;
+
+      Collection<Literal> facts = facts_.get(literal);
+
+      if (!facts.isEmpty()) {
+        facts.stream().map(Clause::new).peek(clause -> addFactAtDepth(clause, depth)).forEach(unfolded_::add);
+      } else {
+        rules_.addAll(rulesWithoutSubRules_.get(literal));
+        rulesWithSubRules_.get(literal).stream().filter(clause -> !visited.contains(clause)).forEach(rules_::add);
+      }
+    }
+
+    /**
+     * Resume the unfolding of the current rule with the proofs of its current body literal.
+     *
+     * @param proofs the proofs computed by the child frame.
+     */
+    void resume(Set<Clause> proofs) {
+      alternatives_.add(shortest(proofs, rules_.get(rule_)));
+    }
+
+    /**
+     * Unfold the remaining rules.
+     *
+     * @return a child frame if a body literal must be unfolded first, {@code null} if all rules have been unfolded.
+     */
+    Frame step() {
+      while (rule_ < rules_.size()) {
+
+        Clause rule = rules_.get(rule_);
+
+        if (alternatives_.size() == rule.body().size()) {
+
+          Trie<Literal> trie = proofs_.computeIfAbsent(rule.head().tag(), tag -> new HashMap<>())
+              .computeIfAbsent(rule, r -> new Trie<>());
+
+          for (List<Literal> body : product(alternatives_)) {
+            unfolded_.add(new Clause(rule.head(), body));
+            trie.insert(body);
           }
+
+          addRuleAtDepth(rule, depth_);
+          alternatives_.clear();
+          rule_++;
+          continue;
         }
 
-        newBodies.clear();
-        newBodies.addAll(newNewBodies);
+        Literal literal = rule.body().get(alternatives_.size());
+        List<List<Literal>> bodies = alternatives(literal, alternatives_.isEmpty(), depth_);
+
+        if (bodies == null) {
+          Set<Clause> newVisited = new HashSet<>(visited_);
+          newVisited.add(rule);
+          return new Frame(literal, depth_ + 1, newVisited);
+        }
+        alternatives_.add(bodies);
       }
-      if (!proofs_.containsKey(rule)) {
-        proofs_.put(rule, new Trie<>());
+      return null;
+    }
+  }
+
+  /**
+   * A node of an unfolded body : a literal and a pointer to the node of the previous literal. The bodies sharing a
+   * prefix share the nodes of this prefix.
+   */
+  private static final class Node {
+
+    private final Node parent_;
+    private final Literal literal_;
+    private final int size_;
+
+    Node(Node parent, Literal literal) {
+      parent_ = parent;
+      literal_ = literal;
+      size_ = parent == null ? 1 : parent.size_ + 1;
+    }
+
+    /**
+     * Materialize the body ending with this node.
+     *
+     * @return the body literals.
+     */
+    List<Literal> body() {
+
+      Literal[] body = new Literal[size_];
+
+      for (@Var Node node = this; node != null; node = node.parent_) {
+        body[node.size_ - 1] = node.literal_;
       }
-      for (List<Literal> body : newBodies) {
-        proofs.add(new Clause(rule.head(), body));
-        proofs_.get(rule).insert(body);
+      return Arrays.asList(body);
+    }
+  }
+
+  /**
+   * The cartesian product of the alternative unfoldings of the body literals, enumerated in the same order as
+   * {@link com.google.common.collect.Lists#cartesianProduct(List)}. The product is walked like an odometer : when the
+   * alternative of a body literal changes, only the nodes of this literal and of the following ones are rebuilt. The
+   * nodes of the prefix are shared and a body is materialized only once it is complete.
+   */
+  private static final class Product extends AbstractIterator<List<Literal>> {
+
+    private final List<List<List<Literal>>> alternatives_;
+    private final int[] indices_;
+    private final Node[] prefixes_;
+    private boolean isFirst_ = true;
+
+    Product(List<List<List<Literal>>> alternatives) {
+      alternatives_ = alternatives;
+      indices_ = new int[alternatives.size()];
+      prefixes_ = new Node[alternatives.size()];
+    }
+
+    @Override
+    protected List<Literal> computeNext() {
+
+      int nbLiterals = alternatives_.size();
+      @Var int from = nbLiterals - 1;
+
+      if (isFirst_) {
+        isFirst_ = false;
+        if (alternatives_.stream().anyMatch(List::isEmpty)) {
+          return endOfData();
+        }
+        from = 0;
+      } else {
+        while (from >= 0 && indices_[from] == alternatives_.get(from).size() - 1) {
+          indices_[from--] = 0;
+        }
+        if (from < 0) {
+          return endOfData();
+        }
+        indices_[from]++;
+      }
+
+      for (int i = from; i < nbLiterals; i++) {
+
+        @Var Node node = i == 0 ? null : prefixes_[i - 1];
+
+        for (Literal literal : alternatives_.get(i).get(indices_[i])) {
+          node = new Node(node, literal);
+        }
+        prefixes_[i] = node;
       }
-      addRuleAtDepth(rule, depth);
+      return nbLiterals == 0 || prefixes_[nbLiterals - 1] == null ? Collections.emptyList()
+          : prefixes_[nbLiterals - 1].body();
     }
-    return proofs;
   }
 
-  private void addFactAtDepth(Clause clause, int depth) {
+  /**
+   * The proofs already returned for a literal, stored as a tree of literals : the head, then the body literals. Hence,
+   * the proofs sharing a prefix share the nodes of this prefix.
+   */
+  private static final class Memo {
+
+    private Map<Literal, Memo> children_ = null;
+    private boolean isProof_ = false;
+
+    /**
+     * Memoize a proof.
+     *
+     * @param head the proof head.
+     * @param body the proof body.
+     * @return true iif the proof was not memoized yet.
+     */
+    boolean add(Literal head, List<Literal> body) {
+
+      @Var Memo memo = child(head);
 
-    Optional<Map.Entry<Integer, Set<Clause>>> opt = factsInProofs_.stream().filter(r -> r.getKey().equals(depth))
-        .findFirst();
+      for (Literal literal : body) {
+        memo = memo.child(literal);
+      }
+      if (memo.isProof_) {
+        return false;
+      }
+      memo.isProof_ = true;
+      return true;
+    }
 
-    if (opt.isPresent()) {
-      opt.get().getValue().add(clause);
-    } else {
-      Set<Clause> set = new HashSet<>();
-      set.add(clause);
-      factsInProofs_.add(new AbstractMap.SimpleImmutableEntry<>(depth, set));
+    private Memo child(Literal literal) {
+      if (children_ == null) {
+        children_ = new HashMap<>(2);
+      }
+      return children_.computeIfAbsent(literal, l -> new Memo());
     }
   }
 
-  private void addRuleAtDepth(Clause clause, int depth) {
+  /**
+   * An index over literals or clauses. Grounded literals are looked up by tag in O(1). Other literals are looked up by
+   * predicate and filtered using {@link Literal#isRelevant(Literal)}.
+   *
+   * @param <T> the indexed type.
+   */
+  private static final class Index<T> {
+
+    private final Function<T, Literal> key_;
+    private final Map<String, Set<T>> byPredicate_ = new HashMap<>();
+    private final Map<String, Set<T>> byTag_ = new HashMap<>();
+
+    Index(Function<T, Literal> key) {
+      key_ = Preconditions.checkNotNull(key, "key should not be null");
+    }
 
-    Optional<Map.Entry<Integer, Set<Clause>>> opt = rulesInProofs_.stream().filter(r -> r.getKey().equals(depth))
-        .findFirst();
+    void add(T value) {
 
-    if (opt.isPresent()) {
-      opt.get().getValue().add(clause);
-    } else {
-      Set<Clause> set = new HashSet<>();
-      set.add(clause);
-      rulesInProofs_.add(new AbstractMap.SimpleImmutableEntry<>(depth, set));
+      Preconditions.checkNotNull(value, "value should not be null");
+
+      Literal literal = key_.apply(value);
+
+      Preconditions.checkState(literal.isGrounded(), "literal should be grounded : %s", literal);
+
+      byPredicate_.computeIfAbsent(literal.predicate().id(), id -> new HashSet<>()).add(value);
+      byTag_.computeIfAbsent(literal.tag(), tag -> new HashSet<>()).add(value);
+    }
+
+    Collection<T> get(Literal literal) {
+
+      Preconditions.checkNotNull(literal, "literal should not be null");
+
+      if (literal.isGrounded()) {
+        return byTag_.getOrDefault(literal.tag(), Collections.emptySet());
+      }
+      return byPredicate_.getOrDefault(literal.predicate().id(), Collections.emptySet()).stream()
+          .filter(value -> key_.apply(value).isRelevant(literal)).collect(Collectors.toSet());
     }
   }
 }
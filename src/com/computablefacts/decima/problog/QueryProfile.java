@@ -0,0 +1,298 @@
+package com.computablefacts.decima.problog;
+
+import com.computablefacts.asterix.codecs.JsonCodec;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.google.errorprone.annotations.CheckReturnValue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The profile of a query i.e. the tree of the subgoals searched by the {@link Solver}. Each subgoal node lists the
+ * rules of the knowledge base tried to answer it and each rule node lists the subgoals searched while evaluating its
+ * body. A subgoal already in the tables is reported as a leaf, once per parent node, along with the number of times it
+ * has been reused. Times are measured with {@link System#nanoTime()} and include the nested nodes.
+ */
+@CheckReturnValue
+final public class QueryProfile {
+
+  private final Node root_ = new Node(Node.Kind.QUERY, "query");
+  private final Deque<Node> stack_ = new ArrayDeque<>();
+  private final Map<Subgoal, Node> subgoals_ = new IdentityHashMap<>();
+  private StopReason stopReason_ = null;
+  private SolverMetrics metrics_ = null;
+
+  QueryProfile() {
+    stack_.push(root_);
+  }
+
+  /**
+   * Render the profile as an indented tree, followed by the metrics of each predicate.
+   *
+   * @return the profile.
+   */
+  @Override
+  public String toString() {
+
+    StringBuilder builder = new StringBuilder();
+    builder.append(String.format(Locale.ROOT, "stop reason : %s, elapsed : %s\n", stopReason_,
+        millis(metrics_ == null ? root_.totalNanos_ : metrics_.elapsedNanos())));
+
+    for (Node node : root_.children_) {
+      append(builder, node, 0);
+    }
+    if (metrics_ != null) {
+      builder.append("predicates :\n");
+      for (PredicateMetrics predicate : metrics_.predicates()) {
+        builder.append(String.format(Locale.ROOT, "  %s : %d searches, %d/%d facts unified/scanned, self %s\n",
+            predicate.predicate().id(), predicate.nbSearches(), predicate.nbFactsUnified(),
+            predicate.nbFactsScanned(), millis(predicate.selfTimeNanos())));
+      }
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Render the profile as JSON.
+   *
+   * @return the profile.
+   */
+  public String toJson() {
+
+    Map<String, Object> map = new LinkedHashMap<>();
+    map.put("stop_reason", stopReason_ == null ? null : stopReason_.name());
+    map.put("subgoals", Lists.transform(root_.children_, Node::toMap));
+    map.put("metrics", metrics_ == null ? null : metrics_.toMap());
+
+    return JsonCodec.asString(map);
+  }
+
+  public StopReason stopReason() {
+    return stopReason_;
+  }
+
+  /**
+   * Return the subgoals searched to answer the query (or queries).
+   *
+   * @return the top-level nodes of the tree.
+   */
+  public List<Node> subgoals() {
+    return Collections.unmodifiableList(root_.children_);
+  }
+
+  void enter(Subgoal subgoal) {
+
+    Node node = new Node(Node.Kind.SUBGOAL, subgoal.literal().toString());
+    node.subgoal_ = subgoal;
+
+    subgoals_.put(subgoal, node);
+    enter(node);
+  }
+
+  void enter(Clause rule) {
+    enter(new Node(Node.Kind.RULE, rule.toString()));
+  }
+
+  void exit() {
+
+    Preconditions.checkState(stack_.size() > 1, "exit() should match a previous enter()");
+
+    Node node = stack_.pop();
+    node.totalNanos_ = System.nanoTime() - node.start_;
+  }
+
+  void tabled(Subgoal subgoal) {
+
+    Node parent = stack_.peek();
+
+    if (parent.tabled_ == null) {
+      parent.tabled_ = new IdentityHashMap<>();
+    }
+
+    // A rule continuation hits the same table once per grounding
+    Node node = parent.tabled_.computeIfAbsent(subgoal, sub -> {
+      Node newNode = new Node(Node.Kind.TABLED, sub.literal().toString());
+      newNode.subgoal_ = sub;
+      parent.children_.add(newNode);
+      return newNode;
+    });
+    node.nbHits_++;
+  }
+
+  void factScanned(boolean isUnified) {
+    Node node = stack_.peek();
+    node.nbFactsScanned_++;
+    if (isUnified) {
+      node.nbFactsUnified_++;
+    }
+  }
+
+  void waitersNotified(Subgoal subgoal, int nbWaiters) {
+    Node node = subgoals_.get(subgoal);
+    if (node != null) {
+      node.nbWaitersNotified_ += nbWaiters;
+    }
+  }
+
+  void finish(StopReason stopReason, SolverMetrics metrics) {
+
+    stopReason_ = stopReason;
+    metrics_ = metrics;
+
+    while (stack_.size() > 1) {
+      exit();
+    }
+
+    root_.finish();
+    subgoals_.clear();
+  }
+
+  private void enter(Node node) {
+    node.start_ = System.nanoTime();
+    stack_.peek().children_.add(node);
+    stack_.push(node);
+  }
+
+  private static void append(StringBuilder builder, Node node, int depth) {
+
+    builder.append(Strings.repeat("  ", depth)).append("-> ").append(node.label_);
+
+    if (node.kind_ == Node.Kind.SUBGOAL) {
+      builder.append(String.format(Locale.ROOT, " : %d answers, %d/%d facts unified/scanned, %d waiters notified, %s",
+          node.nbAnswers_, node.nbFactsUnified_, node.nbFactsScanned_, node.nbWaitersNotified_,
+          millis(node.totalNanos_)));
+    } else if (node.kind_ == Node.Kind.RULE) {
+      builder.append(String.format(Locale.ROOT, " : %s", millis(node.totalNanos_)));
+    } else {
+      builder.append(String.format(Locale.ROOT, " : tabled, %d answers, %d hits", node.nbAnswers_, node.nbHits_));
+    }
+
+    builder.append('\n');
+
+    for (Node child : node.children_) {
+      append(builder, child, depth + 1);
+    }
+  }
+
+  private static String millis(long nanos) {
+    return String.format(Locale.ROOT, "%.3f ms", nanos / 1000000.0);
+  }
+
+  /**
+   * A node of the profile : a subgoal searched, a rule tried or a subgoal found in the tables.
+   */
+  final public static class Node {
+
+    private final Kind kind_;
+    private final String label_;
+    private final List<Node> children_ = new ArrayList<>();
+    private Subgoal subgoal_ = null;
+    private Map<Subgoal, Node> tabled_ = null;
+    private long start_ = 0;
+    private long totalNanos_ = 0;
+    private long nbFactsScanned_ = 0;
+    private long nbFactsUnified_ = 0;
+    private long nbWaitersNotified_ = 0;
+    private long nbAnswers_ = 0;
+    private long nbHits_ = 0;
+
+    private Node(Kind kind, String label) {
+      kind_ = kind;
+      label_ = label;
+    }
+
+    public Kind kind() {
+      return kind_;
+    }
+
+    /**
+     * The literal of a subgoal or the rule.
+     */
+    public String label() {
+      return label_;
+    }
+
+    public List<Node> children() {
+      return Collections.unmodifiableList(children_);
+    }
+
+    public long totalNanos() {
+      return totalNanos_;
+    }
+
+    public long nbFactsScanned() {
+      return nbFactsScanned_;
+    }
+
+    public long nbFactsUnified() {
+      return nbFactsUnified_;
+    }
+
+    public long nbWaitersNotified() {
+      return nbWaitersNotified_;
+    }
+
+    /**
+     * The number of answers of a subgoal, once the search is over.
+     */
+    public long nbAnswers() {
+      return nbAnswers_;
+    }
+
+    /**
+     * The number of times a subgoal already in the tables has been reused by the parent node.
+     */
+    public long nbHits() {
+      return nbHits_;
+    }
+
+    private void finish() {
+      if (subgoal_ != null) {
+        nbAnswers_ = subgoal_.nbFacts();
+        subgoal_ = null;
+      }
+      tabled_ = null;
+      for (Node child : children_) {
+        child.finish();
+      }
+    }
+
+    private Map<String, Object> toMap() {
+
+      Map<String, Object> map = new LinkedHashMap<>();
+      map.put("kind", kind_.name().toLowerCase(Locale.ROOT));
+      map.put("label", label_);
+
+      if (kind_ != Kind.RULE) {
+        map.put("nb_answers", nbAnswers_);
+      }
+      if (kind_ == Kind.TABLED) {
+        map.put("nb_hits", nbHits_);
+      }
+      if (kind_ == Kind.SUBGOAL) {
+        map.put("nb_facts_scanned", nbFactsScanned_);
+        map.put("nb_facts_unified", nbFactsUnified_);
+        map.put("nb_waiters_notified", nbWaitersNotified_);
+      }
+      if (kind_ != Kind.TABLED) {
+        map.put("total_nanos", totalNanos_);
+      }
+      if (!children_.isEmpty()) {
+        map.put("children", Lists.transform(children_, Node::toMap));
+      }
+      return map;
+    }
+
+    public enum Kind {
+      QUERY, SUBGOAL, RULE, TABLED
+    }
+  }
+}
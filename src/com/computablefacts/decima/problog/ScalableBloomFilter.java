@@ -0,0 +1,76 @@
+package com.computablefacts.decima.problog;
+
+import com.computablefacts.asterix.BloomFilter;
+import com.google.common.base.Preconditions;
+import com.google.errorprone.annotations.CheckReturnValue;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A Bloom filter that grows with the number of elements. See Almeida, Paulo Sérgio et al. (2007). "Scalable Bloom
+ * Filters". Information Processing Letters. 101. 255-261. for details.
+ * <p>
+ * The filter is a list of fixed-size filters. Once the last one is full, a new one twice as large is added with a false
+ * positive probability half as large. Hence, the overall false positive probability remains below the requested one
+ * and a small table does not pay for the filter of a large one.
+ */
+@CheckReturnValue
+final class ScalableBloomFilter<T> {
+
+  private static final double TIGHTENING_RATIO = 0.5;
+  private static final int GROWTH_FACTOR = 2;
+
+  private final List<BloomFilter<T>> filters_ = new ArrayList<>();
+  private double falsePositiveProbability_;
+  private int capacity_;
+  private int size_ = 0;
+
+  /**
+   * Constructor.
+   *
+   * @param falsePositiveProbability the false positive probability of the whole filter.
+   * @param initialCapacity          the number of elements of the first filter.
+   */
+  ScalableBloomFilter(double falsePositiveProbability, int initialCapacity) {
+
+    Preconditions.checkArgument(falsePositiveProbability > 0.0 && falsePositiveProbability < 1.0,
+        "falsePositiveProbability should be in ]0, 1[");
+    Preconditions.checkArgument(initialCapacity > 0, "initialCapacity should be > 0");
+
+    falsePositiveProbability_ = falsePositiveProbability * (1.0 - TIGHTENING_RATIO);
+    capacity_ = initialCapacity;
+    filters_.add(new BloomFilter<>(falsePositiveProbability_, capacity_));
+  }
+
+  boolean contains(T element) {
+    for (int i = filters_.size() - 1; i >= 0; i--) {
+      if (filters_.get(i).contains(element)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  void add(T element) {
+    if (size_ == capacity_) {
+
+      falsePositiveProbability_ *= TIGHTENING_RATIO;
+      capacity_ = capacity_ > Integer.MAX_VALUE / GROWTH_FACTOR ? Integer.MAX_VALUE : GROWTH_FACTOR * capacity_;
+      size_ = 0;
+
+      filters_.add(new BloomFilter<>(falsePositiveProbability_, capacity_));
+    }
+
+    filters_.get(filters_.size() - 1).add(element);
+    size_++;
+  }
+
+  /**
+   * Return the number of fixed-size filters.
+   *
+   * @return the number of filters.
+   */
+  int nbFilters() {
+    return filters_.size();
+  }
+}
@@ -2,22 +2,28 @@ package com.computablefacts.decima.problog;
 
 import static com.computablefacts.decima.problog.AbstractTerm.newConst;
 
-import com.computablefacts.asterix.BloomFilter;
 import com.computablefacts.asterix.Generated;
 import com.computablefacts.asterix.trie.Trie;
 import com.google.common.annotations.Beta;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.google.errorprone.annotations.CheckReturnValue;
 import com.google.errorprone.annotations.Var;
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
@@ -42,30 +48,32 @@ import org.slf4j.LoggerFactory;
  * </ul>
  */
 @CheckReturnValue
-final public class Solver {
+final public class Solver implements AutoCloseable {
 
-  private static final double FALSE_POSITIVE_PROBABILITY = 0.05;
-  private static final int EXPECTED_NUMBER_OF_ELEMENTS = 10000000;
+  private static final int HEAP_CHECK_INTERVAL = 1024;
   private static final Logger logger_ = LoggerFactory.getLogger(Solver.class);
 
   private final AbstractKnowledgeBase kb_;
   private final Map<String, Subgoal> subgoals_;
   private final Function<Literal, Subgoal> newSubgoal_;
-  private final BloomFilter<String> bf_;
 
   private Subgoal root_ = null;
   private int maxSampleSize_ = -1;
+  private SolverLimits limits_ = SolverLimits.NONE;
+  private StopReason stopReason_ = StopReason.COMPLETED;
+  private long deadline_ = 0;
+  private long heapAtStart_ = 0;
+  private int nbChecks_ = 0;
+  private Consumer<Clause> onAnswer_ = null;
+  private SolverMetrics metrics_ = new SolverMetrics();
+  private boolean isProfiling_ = false;
+  private QueryProfile profile_ = null;
 
   public Solver(AbstractKnowledgeBase kb, boolean computeProofs) {
     this(kb, literal -> new Subgoal(literal, new InMemorySubgoalFacts(), computeProofs));
   }
 
   public Solver(AbstractKnowledgeBase kb, Function<Literal, Subgoal> newSubgoal) {
-    this(kb, newSubgoal, FALSE_POSITIVE_PROBABILITY, EXPECTED_NUMBER_OF_ELEMENTS); // BF : ~72MB
-  }
-
-  public Solver(AbstractKnowledgeBase kb, Function<Literal, Subgoal> newSubgoal, double falsePositiveProbability,
-      int expectedNumberOfElements) {
 
     Preconditions.checkNotNull(kb, "kb should not be null");
     Preconditions.checkNotNull(newSubgoal, "newSubgoal should not be null");
@@ -73,7 +81,31 @@ final public class Solver {
     kb_ = kb;
     subgoals_ = new ConcurrentHashMap<>();
     newSubgoal_ = newSubgoal;
-    bf_ = new BloomFilter<>(falsePositiveProbability, expectedNumberOfElements);
+  }
+
+  /**
+   * @deprecated the solver does not use a Bloom filter anymore and the sizing parameters are ignored. Use
+   * {@link #Solver(AbstractKnowledgeBase, Function)} instead.
+   */
+  @Deprecated
+  public Solver(AbstractKnowledgeBase kb, Function<Literal, Subgoal> newSubgoal, double falsePositiveProbability,
+      int expectedNumberOfElements) {
+    this(kb, newSubgoal);
+  }
+
+  /**
+   * Release the resources held by the subgoals tables. The tables are dropped, hence the solver can be reused but the
+   * answers of the previous queries are not tabled anymore.
+   * <p>
+   * The tables of a query are also released when the next query starts and, for {@link #lazySolve(Literal)}, as soon as
+   * the search ends. Hence, the answers and proofs returned lazily by a query must be consumed before the next query is
+   * submitted to the same solver.
+   */
+  @Override
+  public void close() {
+    subgoals_.values().forEach(Subgoal::close);
+    subgoals_.clear();
+    root_ = null;
   }
 
   /**
@@ -86,6 +118,44 @@ final public class Solver {
     return subgoals_.size();
   }
 
+  /**
+   * Return the metrics collected while answering the last query (or the last batch of queries).
+   *
+   * @return the metrics.
+   */
+  public SolverMetrics metrics() {
+    return metrics_;
+  }
+
+  /**
+   * Enable or disable the profiling of the next queries. Profiling records the tree of the subgoals searched, hence it
+   * is more expensive than collecting metrics.
+   *
+   * @param isEnabled true iif the next queries should be profiled.
+   */
+  public void enableProfiling(boolean isEnabled) {
+    isProfiling_ = isEnabled;
+  }
+
+  /**
+   * Return the profile of the last query (or the last batch of queries).
+   *
+   * @return the profile or null if profiling was disabled.
+   */
+  public QueryProfile profile() {
+    return profile_;
+  }
+
+  /**
+   * Return the reason why the last search stopped. If the search did not complete, the answers and proofs returned are
+   * partial and so are the tables : the solver should be closed before being reused.
+   *
+   * @return the reason why the last search stopped.
+   */
+  public StopReason stopReason() {
+    return stopReason_;
+  }
+
   /**
    * First, sets up and calls the subgoal search procedure. Then, extracts the answers and unfold the proofs. In order
    * to work, subgoals must track rules i.e. {@code computeProofs = true}.
@@ -94,27 +164,83 @@ final public class Solver {
    * @return proofs.
    */
   public Set<Clause> proofs(Literal query) {
+    return proofs(query, SolverLimits.NONE);
+  }
 
-    Preconditions.checkNotNull(query, "query should not be null");
-
-    root_ = newSubgoal_.apply(query);
-    subgoals_.put(query.tag(), root_);
+  /**
+   * First, sets up and calls the subgoal search procedure. Then, extracts the answers and unfold the proofs. The search
+   * stops as soon as one of the limits is reached. In order to work, subgoals must track rules i.e.
+   * {@code computeProofs = true}.
+   *
+   * @param query  goal.
+   * @param limits the resources the search is allowed to use.
+   * @return proofs.
+   */
+  public Set<Clause> proofs(Literal query, SolverLimits limits) {
 
-    search(root_);
+    start(query, limits);
 
     ProofAssistant assistant = new ProofAssistant(subgoals_.values());
     return assistant.proofs(root_.literal());
   }
 
-  @Beta
-  public List<String> tableOfProofs(Literal query) {
+  /**
+   * First, sets up and calls the subgoal search procedure. Then, extracts the answers and lazily unfold the proofs. In
+   * order to work, subgoals must track rules i.e. {@code computeProofs = true}.
+   *
+   * @param query goal.
+   * @return proofs.
+   */
+  public Iterator<Clause> lazyProofs(Literal query) {
+    return lazyProofs(query, -1, null);
+  }
 
-    Preconditions.checkNotNull(query, "query should not be null");
+  /**
+   * First, sets up and calls the subgoal search procedure. Then, extracts the answers and lazily unfold the proofs. The
+   * enumeration stops as soon as one of the limits is reached. In order to work, subgoals must track rules i.e.
+   * {@code computeProofs = true}.
+   *
+   * @param query           goal.
+   * @param maxNbProofs     stops the enumeration after this number of proofs. If this number is less than or equals to
+   *                        0, there is no limit.
+   * @param probabilityMass stops the enumeration as soon as the sum of the probabilities of the returned proofs is
+   *                        greater than or equals to this number. If this number is {@code null}, there is no limit.
+   *                        Each proof is returned once but distinct proofs may still overlap. Hence, the sum is an
+   *                        upper bound of the probability of the returned proofs and the cutoff is a heuristic.
+   * @return proofs.
+   */
+  public Iterator<Clause> lazyProofs(Literal query, int maxNbProofs, BigDecimal probabilityMass) {
 
-    root_ = newSubgoal_.apply(query);
-    subgoals_.put(query.tag(), root_);
+    start(query, SolverLimits.NONE);
 
-    search(root_);
+    ProofAssistant assistant = new ProofAssistant(subgoals_.values());
+    Iterator<Clause> proofs = assistant.lazyProofs(root_.literal());
+    Iterator<Clause> limited = maxNbProofs <= 0 ? proofs : Iterators.limit(proofs, maxNbProofs);
+
+    if (probabilityMass == null) {
+      return limited;
+    }
+    return new AbstractIterator<Clause>() {
+
+      private BigDecimal mass_ = BigDecimal.ZERO;
+
+      @Override
+      protected Clause computeNext() {
+        if (mass_.compareTo(probabilityMass) >= 0 || !limited.hasNext()) {
+          return endOfData();
+        }
+
+        Clause proof = limited.next();
+        mass_ = mass_.add(ProbabilityEstimator.proofProbability(proof));
+        return proof;
+      }
+    };
+  }
+
+  @Beta
+  public List<String> tableOfProofs(Literal query) {
+
+    start(query, SolverLimits.NONE);
 
     ProofAssistant assistant = new ProofAssistant(subgoals_.values());
     Set<Clause> proofs = assistant.proofs(root_.literal());
@@ -131,10 +257,13 @@ final public class Solver {
 
     Preconditions.checkNotNull(query, "query should not be null");
 
-    Set<Clause> proofs = proofs(query);
+    Iterator<Clause> proofs = lazyProofs(query);
     Map<Literal, Trie<Literal>> tries = new HashMap<>();
 
-    for (Clause proof : proofs) {
+    while (proofs.hasNext()) {
+
+      Clause proof = proofs.next();
+
       if (!tries.containsKey(proof.head())) {
         tries.put(proof.head(), new Trie<>());
       }
@@ -162,15 +291,114 @@ final public class Solver {
    * @return facts answering the query.
    */
   public Iterator<Clause> solve(Literal query, int maxSampleSize) {
+    return solve(query, maxSampleSize, SolverLimits.NONE);
+  }
+
+  /**
+   * First, sets up and calls the subgoal search procedure. Then, extracts the answers but do not unfold the proofs. The
+   * search stops as soon as one of the limits is reached.
+   *
+   * @param query         goal.
+   * @param maxSampleSize stops the solver after the goal reaches this number of solutions or more. If this number is
+   *                      less than or equals to 0, returns all solutions.
+   * @param limits        the resources the search is allowed to use.
+   * @return facts answering the query.
+   */
+  public Iterator<Clause> solve(Literal query, int maxSampleSize, SolverLimits limits) {
+    maxSampleSize_ = maxSampleSize <= 0 ? -1 : maxSampleSize;
+    return start(query, limits).facts();
+  }
+
+  /**
+   * Sets up and calls the subgoal search procedure in a background thread. The answers are returned as soon as they are
+   * derived : the search is suspended when the caller lags behind and resumes when the caller asks for more answers.
+   * The solver must not be used until the returned stream is exhausted or closed. The stream must be closed unless it
+   * is exhausted.
+   *
+   * @param query goal.
+   * @return facts answering the query.
+   */
+  public AnswerStream lazySolve(Literal query) {
+    return lazySolve(query, SolverLimits.NONE);
+  }
+
+  /**
+   * Sets up and calls the subgoal search procedure in a background thread. The answers are returned as soon as they are
+   * derived : the search is suspended when the caller lags behind and resumes when the caller asks for more answers.
+   * The search stops as soon as one of the limits is reached or the stream is closed. The solver must not be used until
+   * the returned stream is exhausted or closed. The stream must be closed unless it is exhausted.
+   *
+   * @param query  goal.
+   * @param limits the resources the search is allowed to use.
+   * @return facts answering the query.
+   */
+  public AnswerStream lazySolve(Literal query, SolverLimits limits) {
 
     Preconditions.checkNotNull(query, "query should not be null");
+    Preconditions.checkNotNull(limits, "limits should not be null");
 
-    root_ = newSubgoal_.apply(query);
-    subgoals_.put(query.tag(), root_);
-    maxSampleSize_ = maxSampleSize <= 0 ? -1 : maxSampleSize;
+    return new AnswerStream(this, query, limits);
+  }
 
-    search(root_);
-    return root_.facts();
+  /**
+   * Answer several queries in a single tabling session. A query is searched only if its subgoal has not been evaluated
+   * yet by the same batch, hence the subgoals shared by several queries are evaluated once. In order to work, subgoals
+   * must track rules i.e. {@code computeProofs = true}.
+   *
+   * @param queries goals.
+   * @return the proofs of each query.
+   */
+  public Map<Literal, Set<Clause>> proofsAll(Collection<Literal> queries) {
+
+    Preconditions.checkNotNull(queries, "queries should not be null");
+
+    Map<Literal, Subgoal> roots = roots(queries);
+    ProofAssistant assistant = new ProofAssistant(subgoals_.values());
+    Map<Literal, Set<Clause>> proofs = new LinkedHashMap<>();
+
+    roots.forEach((query, root) -> proofs.put(query, assistant.proofs(root.literal())));
+    return proofs;
+  }
+
+  /**
+   * Answer several queries in a single tabling session. A query is searched only if its subgoal has not been evaluated
+   * yet by the same batch, hence the subgoals shared by several queries are evaluated once. The proofs are not
+   * unfolded.
+   *
+   * @param queries goals.
+   * @return the facts answering each query.
+   */
+  public Map<Literal, Set<Clause>> solveAll(Collection<Literal> queries) {
+
+    Preconditions.checkNotNull(queries, "queries should not be null");
+
+    Map<Literal, Subgoal> roots = roots(queries);
+    Map<Literal, Set<Clause>> facts = new LinkedHashMap<>();
+
+    roots.forEach((query, root) -> facts.put(query, Sets.newHashSet(root.facts())));
+    return facts;
+  }
+
+  /**
+   * Search a query and report each new answer as soon as it is derived.
+   *
+   * @param query    goal.
+   * @param limits   the resources the search is allowed to use.
+   * @param onAnswer called once for each answer.
+   */
+  void solve(Literal query, SolverLimits limits, Consumer<Clause> onAnswer) {
+
+    Preconditions.checkNotNull(onAnswer, "onAnswer should not be null");
+
+    maxSampleSize_ = -1;
+    onAnswer_ = onAnswer;
+
+    try {
+      Subgoal root = start(query, limits);
+    } finally {
+      onAnswer_ = null;
+      close(); // The answers have already been handed over
+    }
   }
 
   /**
@@ -188,12 +416,145 @@ final public class Solver {
   }
 
   /**
-   * Check if the number of samples asked by the caller has been reached.
+   * Set up and search the subgoal of each query, unless a previous query of the same batch already evaluated it. The
+   * tables left by earlier calls may be partial (sampled or limited searches) hence they are released first.
+   *
+   * @param queries goals.
+   * @return the subgoal of each query.
+   */
+  private Map<Literal, Subgoal> roots(Collection<Literal> queries) {
+
+    Map<Literal, Subgoal> roots = new LinkedHashMap<>();
+    maxSampleSize_ = -1;
+    close(); // Only reuse the tables of this batch
+    reset(SolverLimits.NONE);
+
+    for (Literal query : queries) {
+
+      Preconditions.checkNotNull(query, "query should not be null");
+
+      @Var Subgoal root = subgoals_.get(query.tag());
+
+      if (root == null) {
+
+        root = newSubgoal(query);
+        subgoals_.put(query.tag(), root);
+
+        search(root);
+      }
+
+      root_ = root;
+      roots.put(query, root);
+    }
+
+    finish();
+    return roots;
+  }
+
+  /**
+   * Set up the subgoal of a query and search it.
+   *
+   * @param query  goal.
+   * @param limits the resources the search is allowed to use.
+   * @return the subgoal of the query.
+   */
+  private Subgoal start(Literal query, SolverLimits limits) {
+
+    Preconditions.checkNotNull(query, "query should not be null");
+    Preconditions.checkNotNull(limits, "limits should not be null");
+
+    close(); // Release the tables of the previous query
+    reset(limits);
+    root_ = newSubgoal(query);
+    subgoals_.put(query.tag(), root_);
+
+    search(root_);
+    finish();
+    return root_;
+  }
+
+  private void finish() {
+    metrics_.stop();
+    if (profile_ != null) {
+      profile_.finish(stopReason_, metrics_);
+    }
+  }
+
+  /**
+   * Create the subgoal of a literal.
+   *
+   * @param literal literal.
+   * @return a new subgoal.
+   */
+  private Subgoal newSubgoal(Literal literal) {
+    metrics_.subgoalCreated();
+    return newSubgoal_.apply(literal);
+  }
+
+  /**
+   * Reset the limits checked by {@link #shouldStop()}. The deadline and the heap budget start from now.
+   *
+   * @param limits the resources the next search is allowed to use.
+   */
+  private void reset(SolverLimits limits) {
+    limits_ = limits;
+    stopReason_ = StopReason.COMPLETED;
+    metrics_ = new SolverMetrics();
+    profile_ = isProfiling_ ? new QueryProfile() : null;
+    deadline_ = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, limits.timeoutMillis()));
+    heapAtStart_ = limits.maxHeapBytes() > 0 ? usedHeap() : 0;
+    nbChecks_ = 0;
+  }
+
+  /**
+   * Check if the search should stop i.e. if the number of samples asked by the caller has been reached, if the query
+   * has been cancelled or if it ran out of time or memory. Once this method returns true, it keeps returning true until
+   * the next query.
+   *
+   * @return true iif the search should stop, false otherwise.
+   */
+  private boolean shouldStop() {
+    if (stopReason_ != StopReason.COMPLETED) {
+      return true;
+    }
+    if (maxSampleSize_ > 0 && root_ != null && root_.nbFacts() >= maxSampleSize_) {
+      return stop(StopReason.MAX_SAMPLE_SIZE);
+    }
+    if (limits_.token() != null && limits_.token().isCancelled()) {
+      return stop(StopReason.CANCELLED);
+    }
+    if (limits_.timeoutMillis() > 0 && System.nanoTime() - deadline_ >= 0) {
+      return stop(StopReason.DEADLINE);
+    }
+
+    // Measuring the heap is more expensive than reading the clock : do it once in a while
+    if (limits_.maxHeapBytes() > 0 && ++nbChecks_ % HEAP_CHECK_INTERVAL == 0
+        && usedHeap() - heapAtStart_ > limits_.maxHeapBytes()) {
+      return stop(StopReason.HEAP_BUDGET);
+    }
+    return false;
+  }
+
+  /**
+   * Check if a new subgoal can be added to the tables.
    *
-   * @return true iif the number of samples has been reached, false otherwise.
+   * @return true iif the tables are full, false otherwise.
    */
-  private boolean maxSampleSizeReached() {
-    return maxSampleSize_ > 0 && root_ != null && root_.nbFacts() >= maxSampleSize_;
+  private boolean maxSubgoalsReached() {
+    if (limits_.maxSubgoals() > 0 && subgoals_.size() >= limits_.maxSubgoals()) {
+      return stop(StopReason.MAX_SUBGOALS);
+    }
+    return false;
+  }
+
+  private boolean stop(StopReason reason) {
+    stopReason_ = reason;
+    return true;
+  }
+
+  private long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    return runtime.totalMemory() - runtime.freeMemory();
   }
 
   /**
@@ -205,6 +566,35 @@ final public class Solver {
 
     Preconditions.checkNotNull(subgoal, "subgoal should not be null");
 
+    if (shouldStop()) {
+      return;
+    }
+
+    long start = System.nanoTime();
+    metrics_.enter();
+
+    if (profile_ != null) {
+      profile_.enter(subgoal);
+    }
+
+    try {
+      resolve(subgoal);
+    } finally {
+      metrics_.exit(subgoal.literal().predicate(), System.nanoTime() - start);
+
+      if (profile_ != null) {
+        profile_.exit();
+      }
+    }
+  }
+
+  /**
+   * Resolve the literal associated with {@param subgoal} against the facts and rules of the KB.
+   *
+   * @param subgoal subgoal.
+   */
+  private void resolve(Subgoal subgoal) {
+
     Literal literal = subgoal.literal();
     Predicate predicate = literal.predicate();
 
@@ -215,8 +605,12 @@ final public class Solver {
       Preconditions.checkState(literal.isSemiGrounded(), "negated clauses should be grounded : %s", literal);
 
       // Evaluate the positive version of the rule (i.e. negation as failure)
+      if (maxSubgoalsReached()) {
+        return;
+      }
+
       Literal base = new Literal(predicate.baseName(), literal.terms());
-      Subgoal sub = newSubgoal_.apply(base);
+      Subgoal sub = newSubgoal(base);
 
       subgoals_.put(sub.literal().tag(), sub);
 
@@ -250,6 +644,7 @@ final public class Solver {
               if (!BigDecimal.ZERO.equals(newFact.head().probability())) {
                 fact(subgoal, newFact);
               } else {
+                metrics_.proofPopped();
                 subgoal.pop(new Clause(literal));
               }
             } else {
@@ -282,7 +677,7 @@ final public class Solver {
               }
             }
           }
-          if (maxSampleSizeReached()) {
+          if (shouldStop()) {
             break;
           }
         }
@@ -298,12 +693,17 @@ final public class Solver {
         Clause renamed = fact.rename();
 
         Map<com.computablefacts.decima.problog.Var, AbstractTerm> env = literal.unify(renamed.head());
+        metrics_.factScanned(env != null);
+
+        if (profile_ != null) {
+          profile_.factScanned(env != null);
+        }
 
         if (env != null) {
           fact(subgoal, renamed.subst(env));
           match = true;
         }
-        if (maxSampleSizeReached()) {
+        if (shouldStop()) {
           break;
         }
       }
@@ -316,17 +716,28 @@ final public class Solver {
         Clause renamed = rule.rename();
 
         Map<com.computablefacts.decima.problog.Var, AbstractTerm> env = literal.unify(renamed.head());
+        metrics_.ruleScanned(env != null);
 
         if (env != null) {
-          rule(subgoal, renamed.subst(env), true);
+
+          Clause newRule = renamed.subst(env);
+
+          if (profile_ == null) {
+            rule(subgoal, newRule, true);
+          } else {
+            profile_.enter(newRule);
+            rule(subgoal, newRule, true);
+            profile_.exit();
+          }
           match = true;
         }
-        if (maxSampleSizeReached()) {
+        if (shouldStop()) {
           break;
         }
       }
 
       if (!match) {
+        metrics_.proofPopped();
         subgoal.pop(new Clause(literal));
       }
     }
@@ -344,23 +755,42 @@ final public class Solver {
     Preconditions.checkNotNull(clause, "clause should not be null");
     Preconditions.checkArgument(clause.isFact(), "clause should be a fact : %s", clause);
 
-    String hash = subgoal.literal().id() + clause.head().id();
+    if (shouldStop()) {
+      return;
+    }
 
-    if (!bf_.contains(hash)) {
-      bf_.add(hash);
-    } else {
-      if (subgoal.contains(clause)) { // Potentially expensive call...
+    if (!subgoal.addFingerprint(clause)) {
+
+      boolean isDuplicate = subgoal.contains(clause); // Potentially expensive call...
+      metrics_.fingerprintHit(!isDuplicate);
+
+      if (isDuplicate) {
         return;
       }
     }
 
+    if (limits_.maxAnswersPerSubgoal() > 0 && subgoal.nbFacts() >= limits_.maxAnswersPerSubgoal()) {
+      boolean isOk = stop(StopReason.MAX_ANSWERS_PER_SUBGOAL);
+      return;
+    }
+
     subgoal.addFact(clause);
 
+    if (subgoal == root_) {
+      metrics_.answerFound();
+      if (onAnswer_ != null) {
+        onAnswer_.accept(clause);
+      }
+    }
+    if (profile_ != null) {
+      profile_.waitersNotified(subgoal, subgoal.waiters().size());
+    }
+
     for (Map.Entry<Subgoal, Clause> entry : subgoal.waiters()) {
 
       ground(entry.getKey(), entry.getValue(), clause);
 
-      if (maxSampleSizeReached()) {
+      if (shouldStop()) {
         return;
       }
     }
@@ -379,24 +809,30 @@ final public class Solver {
     Preconditions.checkNotNull(rule, "rule should not be null");
     Preconditions.checkArgument(rule.isRule(), "rule should be a rule : %s", rule);
 
+    if (shouldStop()) {
+      return;
+    }
+
     subgoal.addRule(isInKb ? rule : null);
     Literal first = rule.body().get(0);
 
     if (first.predicate().isPrimitive()) {
 
       Iterator<Literal> literals = first.execute(kb_.definitions());
+      metrics_.primitiveExecuted();
 
       if (literals != null) {
         while (literals.hasNext()) {
 
           ground(subgoal, rule, new Clause(literals.next()));
 
-          if (maxSampleSizeReached()) {
+          if (shouldStop()) {
             break;
           }
         }
         return;
       }
+      metrics_.proofPopped();
       subgoal.pop(rule);
       return;
     }
@@ -405,10 +841,20 @@ final public class Solver {
 
     if (sub != null) {
       sub.addWaiter(subgoal, rule);
+      metrics_.waiterAdded();
+
+      if (profile_ != null) {
+        profile_.tabled(sub);
+      }
     } else {
 
-      sub = newSubgoal_.apply(first);
+      if (maxSubgoalsReached()) {
+        return;
+      }
+
+      sub = newSubgoal(first);
       sub.addWaiter(subgoal, rule);
+      metrics_.waiterAdded();
 
       subgoals_.put(sub.literal().tag(), sub);
 
@@ -418,13 +864,14 @@ final public class Solver {
     Iterator<Clause> facts = sub.facts();
 
     if (!facts.hasNext()) {
+      metrics_.proofPopped();
       subgoal.pop(rule);
     } else {
       while (facts.hasNext()) {
 
         ground(subgoal, rule, facts.next());
 
-        if (maxSampleSizeReached()) {
+        if (shouldStop()) {
           return;
         }
       }
@@ -455,6 +902,8 @@ final public class Solver {
     Clause newClause = new Clause(prevClause.head(),
         Collections.unmodifiableList(prevClause.body().subList(1, prevClause.body().size())));
 
+    metrics_.groundCalled();
+    metrics_.proofPushed();
     subgoal.push(prevClause);
 
     if (newClause.isFact()) {
@@ -0,0 +1,65 @@
+package com.computablefacts.decima.problog;
+
+import com.google.common.base.MoreObjects;
+import com.google.errorprone.annotations.CheckReturnValue;
+
+/**
+ * The resources a single query is allowed to use. A limit less than or equals to 0 means there is no limit. When a
+ * limit is reached, the {@link Solver} stops and returns the answers found so far. See {@link Solver#stopReason()}.
+ */
+@CheckReturnValue
+final public class SolverLimits {
+
+  public static final SolverLimits NONE = new SolverLimits(-1, -1, -1, -1, null);
+
+  private final long timeoutMillis_;
+  private final int maxSubgoals_;
+  private final int maxAnswersPerSubgoal_;
+  private final long maxHeapBytes_;
+  private final CancellationToken token_;
+
+  /**
+   * Constructor.
+   *
+   * @param timeoutMillis        the time allowed to the query, starting when the query is submitted.
+   * @param maxSubgoals          the maximum number of subgoals in the tables.
+   * @param maxAnswersPerSubgoal the maximum number of answers of a single subgoal.
+   * @param maxHeapBytes         the approximate number of bytes the heap is allowed to grow by while the query runs.
+   * @param token                a cancellation token polled by the solver (optional).
+   */
+  public SolverLimits(long timeoutMillis, int maxSubgoals, int maxAnswersPerSubgoal, long maxHeapBytes,
+      CancellationToken token) {
+    timeoutMillis_ = timeoutMillis;
+    maxSubgoals_ = maxSubgoals;
+    maxAnswersPerSubgoal_ = maxAnswersPerSubgoal;
+    maxHeapBytes_ = maxHeapBytes;
+    token_ = token;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this).add("timeout_millis", timeoutMillis_).add("max_subgoals", maxSubgoals_)
+        .add("max_answers_per_subgoal", maxAnswersPerSubgoal_).add("max_heap_bytes", maxHeapBytes_)
+        .add("is_cancellable", token_ != null).toString();
+  }
+
+  public long timeoutMillis() {
+    return timeoutMillis_;
+  }
+
+  public int maxSubgoals() {
+    return maxSubgoals_;
+  }
+
+  public int maxAnswersPerSubgoal() {
+    return maxAnswersPerSubgoal_;
+  }
+
+  public long maxHeapBytes() {
+    return maxHeapBytes_;
+  }
+
+  public CancellationToken token() {
+    return token_;
+  }
+}
@@ -0,0 +1,280 @@
+package com.computablefacts.decima.problog;
+
+import com.google.common.base.MoreObjects;
+import com.google.errorprone.annotations.CheckReturnValue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The metrics collected by a {@link Solver} while answering a single query. The counters are plain fields updated by
+ * the thread running the search : they should be read once the search is over.
+ */
+@CheckReturnValue
+final public class SolverMetrics {
+
+  private final long start_ = System.nanoTime();
+  private long elapsedNanos_ = -1;
+  private long timeToFirstAnswerNanos_ = -1;
+
+  private long nbSubgoals_ = 0;
+  private long nbFactsScanned_ = 0;
+  private long nbFactsUnified_ = 0;
+  private long nbRulesScanned_ = 0;
+  private long nbRulesUnified_ = 0;
+  private long nbWaiters_ = 0;
+  private long nbGroundCalls_ = 0;
+  private long nbFingerprintHits_ = 0;
+  private long nbFingerprintFalsePositives_ = 0;
+  private long nbPrimitiveExecutions_ = 0;
+  private long nbProofPushes_ = 0;
+  private long nbProofPops_ = 0;
+  private final Map<Predicate, PredicateMetrics> predicates_ = new HashMap<>();
+
+  // One entry per subgoal being searched : the time spent in nested subgoals and the facts scanned
+  private int depth_ = 0;
+  private long[] nestedNanos_ = new long[64];
+  private long[] factsScanned_ = new long[64];
+  private long[] factsUnified_ = new long[64];
+
+  SolverMetrics() {
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this).add("elapsed_nanos", elapsedNanos())
+        .add("time_to_first_answer_nanos", timeToFirstAnswerNanos_).add("nb_subgoals", nbSubgoals_)
+        .add("nb_facts_scanned", nbFactsScanned_).add("nb_facts_unified", nbFactsUnified_)
+        .add("nb_rules_scanned", nbRulesScanned_).add("nb_rules_unified", nbRulesUnified_)
+        .add("nb_waiters", nbWaiters_).add("nb_ground_calls", nbGroundCalls_)
+        .add("nb_fingerprint_hits", nbFingerprintHits_)
+        .add("nb_fingerprint_false_positives", nbFingerprintFalsePositives_)
+        .add("nb_primitive_executions", nbPrimitiveExecutions_).add("nb_proof_pushes", nbProofPushes_)
+        .add("nb_proof_pops", nbProofPops_).toString();
+  }
+
+  /**
+   * Export the metrics as a map, e.g. to serialize a query profile. The per-predicate metrics are sorted by decreasing
+   * self time.
+   *
+   * @return the metrics.
+   */
+  public Map<String, Object> toMap() {
+
+    Map<String, Object> map = new LinkedHashMap<>();
+    map.put("elapsed_nanos", elapsedNanos());
+    map.put("time_to_first_answer_nanos", timeToFirstAnswerNanos_);
+    map.put("nb_subgoals", nbSubgoals_);
+    map.put("nb_facts_scanned", nbFactsScanned_);
+    map.put("nb_facts_unified", nbFactsUnified_);
+    map.put("nb_rules_scanned", nbRulesScanned_);
+    map.put("nb_rules_unified", nbRulesUnified_);
+    map.put("nb_waiters", nbWaiters_);
+    map.put("nb_ground_calls", nbGroundCalls_);
+    map.put("nb_fingerprint_hits", nbFingerprintHits_);
+    map.put("nb_fingerprint_false_positives", nbFingerprintFalsePositives_);
+    map.put("nb_primitive_executions", nbPrimitiveExecutions_);
+    map.put("nb_proof_pushes", nbProofPushes_);
+    map.put("nb_proof_pops", nbProofPops_);
+
+    List<Map<String, Object>> predicates = new ArrayList<>();
+
+    for (PredicateMetrics metrics : predicates()) {
+
+      Map<String, Object> predicate = new LinkedHashMap<>();
+      predicate.put("predicate", metrics.predicate().id());
+      predicate.put("nb_searches", metrics.nbSearches());
+      predicate.put("nb_facts_scanned", metrics.nbFactsScanned());
+      predicate.put("nb_facts_unified", metrics.nbFactsUnified());
+      predicate.put("self_time_nanos", metrics.selfTimeNanos());
+
+      predicates.add(predicate);
+    }
+
+    map.put("predicates", predicates);
+    return map;
+  }
+
+  /**
+   * Return the time elapsed since the query was submitted or, if the search is over, the duration of the search.
+   *
+   * @return a number of nanoseconds.
+   */
+  public long elapsedNanos() {
+    return elapsedNanos_ < 0 ? System.nanoTime() - start_ : elapsedNanos_;
+  }
+
+  /**
+   * Return the time elapsed between the submission of the query and its first answer.
+   *
+   * @return a number of nanoseconds or -1 if the query has no answer (yet).
+   */
+  public long timeToFirstAnswerNanos() {
+    return timeToFirstAnswerNanos_;
+  }
+
+  /**
+   * Return the metrics of each predicate searched, sorted by decreasing self time.
+   *
+   * @return the per-predicate metrics.
+   */
+  public List<PredicateMetrics> predicates() {
+    List<PredicateMetrics> predicates = new ArrayList<>(predicates_.values());
+    predicates.sort(Comparator.comparingLong(PredicateMetrics::selfTimeNanos).reversed());
+    return Collections.unmodifiableList(predicates);
+  }
+
+  public long nbSubgoals() {
+    return nbSubgoals_;
+  }
+
+  public long nbFactsScanned() {
+    return nbFactsScanned_;
+  }
+
+  public long nbFactsUnified() {
+    return nbFactsUnified_;
+  }
+
+  public long nbRulesScanned() {
+    return nbRulesScanned_;
+  }
+
+  public long nbRulesUnified() {
+    return nbRulesUnified_;
+  }
+
+  public long nbWaiters() {
+    return nbWaiters_;
+  }
+
+  public long nbGroundCalls() {
+    return nbGroundCalls_;
+  }
+
+  /**
+   * The number of derived facts whose fingerprint was already recorded by their subgoal i.e. the number of times the
+   * subgoal facts had to be checked for duplicates.
+   */
+  public long nbFingerprintHits() {
+    return nbFingerprintHits_;
+  }
+
+  /**
+   * The number of fingerprint hits that turned out to be new facts.
+   */
+  public long nbFingerprintFalsePositives() {
+    return nbFingerprintFalsePositives_;
+  }
+
+  public long nbPrimitiveExecutions() {
+    return nbPrimitiveExecutions_;
+  }
+
+  public long nbProofPushes() {
+    return nbProofPushes_;
+  }
+
+  public long nbProofPops() {
+    return nbProofPops_;
+  }
+
+  void stop() {
+    elapsedNanos_ = System.nanoTime() - start_;
+  }
+
+  void answerFound() {
+    if (timeToFirstAnswerNanos_ < 0) {
+      timeToFirstAnswerNanos_ = System.nanoTime() - start_;
+    }
+  }
+
+  void subgoalCreated() {
+    nbSubgoals_++;
+  }
+
+  void factScanned(boolean isUnified) {
+    nbFactsScanned_++;
+    if (depth_ > 0) {
+      factsScanned_[depth_ - 1]++;
+    }
+    if (isUnified) {
+      nbFactsUnified_++;
+      if (depth_ > 0) {
+        factsUnified_[depth_ - 1]++;
+      }
+    }
+  }
+
+  void ruleScanned(boolean isUnified) {
+    nbRulesScanned_++;
+    if (isUnified) {
+      nbRulesUnified_++;
+    }
+  }
+
+  void waiterAdded() {
+    nbWaiters_++;
+  }
+
+  void groundCalled() {
+    nbGroundCalls_++;
+  }
+
+  void fingerprintHit(boolean isFalsePositive) {
+    nbFingerprintHits_++;
+    if (isFalsePositive) {
+      nbFingerprintFalsePositives_++;
+    }
+  }
+
+  void primitiveExecuted() {
+    nbPrimitiveExecutions_++;
+  }
+
+  void proofPushed() {
+    nbProofPushes_++;
+  }
+
+  void proofPopped() {
+    nbProofPops_++;
+  }
+
+  /**
+   * Must be called when the search of a subgoal begins.
+   */
+  void enter() {
+    if (depth_ == nestedNanos_.length) {
+      nestedNanos_ = Arrays.copyOf(nestedNanos_, 2 * depth_);
+      factsScanned_ = Arrays.copyOf(factsScanned_, 2 * depth_);
+      factsUnified_ = Arrays.copyOf(factsUnified_, 2 * depth_);
+    }
+    nestedNanos_[depth_] = 0;
+    factsScanned_[depth_] = 0;
+    factsUnified_[depth_] = 0;
+    depth_++;
+  }
+
+  /**
+   * Must be called when the search of a subgoal ends.
+   *
+   * @param predicate    the predicate of the subgoal.
+   * @param elapsedNanos the time spent searching the subgoal, including the nested subgoals.
+   */
+  void exit(Predicate predicate, long elapsedNanos) {
+
+    depth_--;
+
+    if (depth_ > 0) {
+      nestedNanos_[depth_ - 1] += elapsedNanos;
+    }
+
+    predicates_.computeIfAbsent(predicate, PredicateMetrics::new)
+        .searched(factsScanned_[depth_], factsUnified_[depth_], elapsedNanos - nestedNanos_[depth_]);
+  }
+}
@@ -0,0 +1,43 @@
+package com.computablefacts.decima.problog;
+
+/**
+ * The reason why the {@link Solver} stopped searching. Unless the reason is {@link #COMPLETED}, the answers returned by
+ * the solver are a subset of the answers of the query.
+ */
+public enum StopReason {
+
+  /**
+   * The search explored the whole search space.
+   */
+  COMPLETED,
+
+  /**
+   * The query reached the number of solutions asked by the caller.
+   */
+  MAX_SAMPLE_SIZE,
+
+  /**
+   * The caller cancelled the query through its {@link CancellationToken}.
+   */
+  CANCELLED,
+
+  /**
+   * The query ran past its deadline.
+   */
+  DEADLINE,
+
+  /**
+   * The query needed more subgoals than allowed.
+   */
+  MAX_SUBGOALS,
+
+  /**
+   * A subgoal reached the maximum number of answers allowed.
+   */
+  MAX_ANSWERS_PER_SUBGOAL,
+
+  /**
+   * The heap grew by more than the allowed number of bytes since the query started.
+   */
+  HEAP_BUDGET
+}
@@ -0,0 +1,439 @@
+package com.computablefacts.decima.problog;
+
+import static com.computablefacts.decima.problog.AbstractTerm.newConst;
+
+import com.computablefacts.logfmt.LogFormatter;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Streams;
+import com.google.errorprone.annotations.CheckReturnValue;
+import com.google.errorprone.annotations.Var;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A parser for large files of clauses, one clause per line. Facts are read by a hand-written scanner that works
+ * directly on the characters of the input. Rules and any line the scanner does not recognize are handed over to
+ * {@link Parser#parseClause(String)}.
+ */
+@CheckReturnValue
+final public class StreamingParser {
+
+  private static final Logger logger_ = LoggerFactory.getLogger(StreamingParser.class);
+  private static final int CHUNK_SIZE = 8 * 1024 * 1024;
+
+  private StreamingParser() {
+  }
+
+  /**
+   * Parse a file of clauses. The file is memory-mapped and split into chunks at line boundaries. The chunks are parsed
+   * in parallel, ahead of the caller, while the clauses are returned sequentially in file order. Hence, consuming the
+   * stream with {@link Stream#iterator()} does not serialize the parsing. At most one chunk per worker of the common
+   * pool is parsed ahead.
+   * <p>
+   * A chunk made of ASCII characters only is parsed in place. Any other chunk is first decoded to a heap buffer.
+   *
+   * @param file the file to parse.
+   * @return a stream of clauses or null if the file cannot be read.
+   */
+  public static Stream<Clause> parse(File file) {
+
+    Preconditions.checkNotNull(file, "file should not be null");
+    Preconditions.checkArgument(file.exists(), "file does not exist : %s", file);
+
+    List<ByteBuffer> chunks = new ArrayList<>();
+
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+
+      long size = channel.size();
+      @Var long begin = 0;
+
+      while (begin < size) {
+
+        long end = nextLine(channel, Math.min(size, begin + CHUNK_SIZE), size);
+
+        // The mappings remain valid once the channel is closed
+        chunks.add(channel.map(FileChannel.MapMode.READ_ONLY, begin, end - begin));
+        begin = end;
+      }
+    } catch (IOException e) {
+      logger_.error(LogFormatter.create(true).message(e).formatError());
+      return null;
+    }
+
+    int parallelism = ForkJoinPool.getCommonPoolParallelism();
+    Iterator<ByteBuffer> remaining = chunks.iterator();
+    Deque<CompletableFuture<List<Clause>>> parsing = new ArrayDeque<>();
+
+    Iterator<List<Clause>> parsed = new AbstractIterator<List<Clause>>() {
+
+      @Override
+      protected List<Clause> computeNext() {
+
+        // Keep the workers busy while the caller consumes the clauses of the current chunk
+        while (parsing.size() <= parallelism && remaining.hasNext()) {
+          ByteBuffer chunk = remaining.next();
+          parsing.add(CompletableFuture.supplyAsync(() -> Lists.newArrayList(parse(chunk))));
+        }
+        if (parsing.isEmpty()) {
+          return endOfData();
+        }
+        try {
+          return parsing.poll().join();
+        } catch (CompletionException e) {
+          Throwables.throwIfUnchecked(e.getCause());
+          throw e;
+        }
+      }
+    };
+    return Streams.stream(Iterators.concat(Iterators.transform(parsed, List::iterator)))
+        .onClose(() -> parsing.forEach(chunk -> chunk.cancel(false)));
+  }
+
+  private static Iterator<Clause> parse(ByteBuffer chunk) {
+    return parseLines(isAscii(chunk) ? new AsciiSequence(chunk) : StandardCharsets.UTF_8.decode(chunk));
+  }
+
+  /**
+   * Parse clauses, one clause per line. The clauses are parsed one at a time, as the iterator is consumed. Empty lines
+   * and comments are skipped.
+   *
+   * @param buffer the clauses.
+   * @return an iterator over the clauses.
+   */
+  public static Iterator<Clause> parse(CharBuffer buffer) {
+
+    Preconditions.checkNotNull(buffer, "buffer should not be null");
+
+    return parseLines(buffer.slice());
+  }
+
+  private static Iterator<Clause> parseLines(CharSequence chars) {
+    return new AbstractIterator<Clause>() {
+
+      private int pos_ = 0;
+
+      @Override
+      protected Clause computeNext() {
+        while (pos_ < chars.length()) {
+
+          int begin = pos_;
+          @Var int end = begin;
+
+          while (end < chars.length() && chars.charAt(end) != '\n') {
+            end++;
+          }
+
+          pos_ = end + 1;
+
+          if (!isBlank(chars, begin, end)) {
+
+            Clause fact = parseFact(chars, begin, end);
+
+            if (fact != null) {
+              return fact;
+            }
+
+            Clause clause = Parser.parseClause(chars.subSequence(begin, end).toString());
+
+            if (clause != null) {
+              return clause;
+            }
+          }
+        }
+        return endOfData();
+      }
+    };
+  }
+
+  /**
+   * Parse a single fact i.e. {@code [probability::]predicate(term, ...).} where the terms are quoted strings, numbers
+   * or words.
+   *
+   * @param text  the text to parse.
+   * @param begin the index of the first character of the fact.
+   * @param end   the index after the last character of the fact.
+   * @return a fact or null if the text is not a fact the scanner can read.
+   */
+  static Clause parseFact(CharSequence text, int begin, int end) {
+
+    Preconditions.checkNotNull(text, "text should not be null");
+
+    Scanner scanner = new Scanner(text, begin, end);
+    return scanner.fact();
+  }
+
+  private static boolean isBlank(CharSequence text, int begin, int end) {
+    for (int i = begin; i < end; i++) {
+      if (text.charAt(i) > ' ') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isAscii(ByteBuffer buffer) {
+    for (int i = buffer.position(); i < buffer.limit(); i++) {
+      if (buffer.get(i) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static long nextLine(FileChannel channel, long position, long size) throws IOException {
+
+    ByteBuffer buffer = ByteBuffer.allocate(4096);
+    @Var long pos = position;
+
+    while (pos < size) {
+
+      buffer.clear();
+      int length = channel.read(buffer, pos);
+
+      for (int i = 0; i < length; i++) {
+        if (buffer.get(i) == '\n') {
+          return pos + i + 1;
+        }
+      }
+      pos += length;
+    }
+    return size;
+  }
+
+  /**
+   * A view of ASCII bytes as characters. Only the scanned tokens and the lines handed over to {@link Parser} are
+   * copied.
+   */
+  private static final class AsciiSequence implements CharSequence {
+
+    private final ByteBuffer buffer_;
+
+    AsciiSequence(ByteBuffer buffer) {
+      buffer_ = buffer.slice();
+    }
+
+    @Override
+    public int length() {
+      return buffer_.limit();
+    }
+
+    @Override
+    public char charAt(int index) {
+      return (char) buffer_.get(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int begin, int end) {
+
+      ByteBuffer buffer = buffer_.duplicate();
+      buffer.position(begin);
+      buffer.limit(end);
+
+      return new AsciiSequence(buffer);
+    }
+
+    @Override
+    public String toString() {
+
+      byte[] bytes = new byte[buffer_.limit()];
+      buffer_.duplicate().get(bytes);
+
+      return new String(bytes, StandardCharsets.US_ASCII);
+    }
+  }
+
+  /**
+   * A scanner that follows the tokenizer rules of {@link Parser} and gives up, by returning null, on anything but a
+   * plain fact.
+   */
+  private static final class Scanner {
+
+    private final CharSequence text_;
+    private final int end_;
+    private int pos_;
+
+    Scanner(CharSequence text, int begin, int end) {
+      text_ = text;
+      pos_ = begin;
+      end_ = end;
+    }
+
+    Clause fact() {
+
+      skipWhitespaces();
+
+      @Var BigDecimal probability = BigDecimal.ONE;
+      @Var String predicate = word();
+
+      if (predicate == null) {
+        return null;
+      }
+      if (isNumber(predicate)) {
+
+        String number = number(predicate);
+
+        if (number == null || !skip(':') || !skip(':')) {
+          return null;
+        }
+
+        probability = new BigDecimal(number);
+        skipWhitespaces();
+        predicate = word();
+
+        if (predicate == null || isNumber(predicate)) {
+          return null;
+        }
+      }
+      if (predicate.startsWith("fn_") || !skip('(')) {
+        return null; // Functions and built-ins are expanded by the parser
+      }
+
+      List<AbstractTerm> terms = new ArrayList<>();
+
+      if (!skip(')')) {
+        do {
+
+          AbstractTerm term = term();
+
+          if (term == null) {
+            return null;
+          }
+          terms.add(term);
+        } while (skip(','));
+
+        if (!skip(')')) {
+          return null;
+        }
+      }
+      if (!skip('.')) {
+        return null;
+      }
+
+      skipWhitespaces();
+
+      if (pos_ < end_) {
+        return null; // Trailing comment or clause
+      }
+      return new Clause(new Literal(probability, predicate, terms));
+    }
+
+    private AbstractTerm term() {
+
+      skipWhitespaces();
+
+      if (pos_ >= end_) {
+        return null;
+      }
+
+      char quote = text_.charAt(pos_);
+
+      if (quote == '"' || quote == '\'') {
+
+        int begin = ++pos_;
+
+        while (pos_ < end_ && text_.charAt(pos_) != quote) {
+
+          char c = text_.charAt(pos_);
+
+          if (c == '\\' || c == '\n' || c == '\r') {
+            return null; // Escape sequences are handled by the parser
+          }
+          pos_++;
+        }
+        if (pos_ >= end_) {
+          return null;
+        }
+        return newConst(Parser.unwrap(text_.subSequence(begin, pos_++).toString()));
+      }
+
+      String word = word();
+
+      if (word == null || "_".equals(word) || Character.isUpperCase(word.codePointAt(0))) {
+        return null; // Variables are not allowed in facts
+      }
+      if (isNumber(word)) {
+        String number = number(word);
+        return number == null ? null : newConst(number);
+      }
+      return newConst(word);
+    }
+
+    private String number(String integerPart) {
+
+      if (pos_ >= end_ || text_.charAt(pos_) != '.') {
+        return lookingAt('.') ? null : integerPart;
+      }
+      if (pos_ + 1 >= end_ || !Character.isDigit((int) text_.charAt(pos_ + 1))) {
+        return null;
+      }
+
+      pos_++;
+      String decimalPart = word();
+      return decimalPart == null || !isNumber(decimalPart) ? null : integerPart + "." + decimalPart;
+    }
+
+    private String word() {
+
+      int begin = pos_;
+
+      while (pos_ < end_ && isWordChar(text_.charAt(pos_))) {
+        pos_++;
+      }
+      return begin == pos_ ? null : text_.subSequence(begin, pos_).toString();
+    }
+
+    private boolean skip(char c) {
+      if (lookingAt(c)) {
+        pos_++;
+        return true;
+      }
+      return false;
+    }
+
+    private boolean lookingAt(char c) {
+      skipWhitespaces();
+      return pos_ < end_ && text_.charAt(pos_) == c;
+    }
+
+    private void skipWhitespaces() {
+      while (pos_ < end_ && text_.charAt(pos_) <= ' ') {
+        pos_++;
+      }
+    }
+
+    private static boolean isNumber(String word) {
+      for (int i = 0; i < word.length(); i++) {
+        if (!Character.isDigit((int) word.charAt(i))) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private static boolean isWordChar(char c) {
+      return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || (c >= 160
+          && c <= 255);
+    }
+  }
+}
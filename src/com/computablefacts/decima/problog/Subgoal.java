@@ -8,11 +8,14 @@ import com.google.errorprone.annotations.CheckReturnValue;
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 /**
  * A subgoal is the item that is tabled by this algorithm.
@@ -34,8 +37,20 @@ final public class Subgoal {
 
   // Facts derived for this subgoal
   private final AbstractSubgoalFacts facts_;
+  private final FactFingerprints fingerprints_ = new FactFingerprints();
   private final List<Clause> rules_ = new ArrayList<>();
-  private final List<Clause> proofs_ = new ArrayList<>();
+
+  // Rules and proofs indexed by the predicate of their first and last body literals
+  private final Map<String, List<Clause>> rulesByLastLiteral_ = new HashMap<>();
+  private final List<Proof> proofs_ = new ArrayList<>();
+  private final Map<String, List<Proof>> proofsByFirstLiteral_ = new HashMap<>();
+  private final Map<String, List<Proof>> proofsByLastLiteral_ = new HashMap<>();
+  private int nbRemovedProofs_ = 0;
+
+  // Proofs indexed by each of their suffixes : length of the suffix and tag of its first literal
+  private static final int MAX_ARITY_INDEXED = 4;
+  private final Map<String, List<Proof>> proofsBySuffix_ = new HashMap<>();
+  private long nbProofs_ = 0;
 
   public Subgoal(Literal literal, AbstractSubgoalFacts facts, boolean computeProofs) {
 
@@ -84,6 +99,7 @@ final public class Subgoal {
   void addRule(Clause rule) {
     if (rule != null) {
       rules_.add(rule);
+      rulesByLastLiteral_.computeIfAbsent(lastLiteral(rule), key -> new ArrayList<>()).add(rule);
     }
   }
 
@@ -96,6 +112,17 @@ final public class Subgoal {
     return facts_.contains(clause);
   }
 
+  /**
+   * Record the fingerprint of a fact about to be added to the subgoal. If this method returns true, the fact is not in
+   * the subgoal yet. Otherwise, the fact may or may not be in the subgoal.
+   *
+   * @param clause the fact.
+   * @return true iif the fingerprint of the fact was not recorded yet.
+   */
+  boolean addFingerprint(Clause clause) {
+    return fingerprints_.add(clause);
+  }
+
   @Generated
   Iterator<Clause> facts() {
     return facts_.facts();
@@ -106,6 +133,13 @@ final public class Subgoal {
     return facts_.size();
   }
 
+  /**
+   * Release the resources held by the subgoal facts.
+   */
+  void close() {
+    facts_.close();
+  }
+
   @Generated
   Set<Map.Entry<Subgoal, Clause>> waiters() {
     return waiters_;
@@ -133,8 +167,14 @@ final public class Subgoal {
     facts_.add(clause);
   }
 
+  /**
+   * Get the live proofs of the subgoal i.e. the proofs that have not been removed.
+   *
+   * @return the proofs.
+   */
   Collection<Clause> proofs() {
-    return proofs_;
+    return Collections.unmodifiableList(
+        proofs_.stream().filter(proof -> !proof.isRemoved_).map(proof -> proof.clause_).collect(Collectors.toList()));
   }
 
   void push(Clause clause) {
@@ -147,20 +187,20 @@ final public class Subgoal {
     }
 
     @com.google.errorprone.annotations.Var Clause prev = null;
+    Proof proof = lastRelevantProof(clause);
 
-    if (!proofs_.isEmpty()) {
-      for (int i = proofs_.size() - 1; i >= 0; i--) {
-        if (proofs_.get(i).head().isRelevant(clause.head()) && proofs_.get(i).hasSuffix(clause.body())) {
-          prev = proofs_.remove(i);
-          break;
-        }
-      }
+    if (proof != null) {
+      prev = proof.clause_;
+      remove(proof);
     }
 
     if (prev == null) {
-      for (int i = rules_.size() - 1; i >= 0; i--) {
-        if (rules_.get(i).head().isRelevant(clause.head()) && rules_.get(i).hasSuffix(clause.body())) {
-          prev = rules_.get(i);
+
+      List<Clause> rules = rulesByLastLiteral_.getOrDefault(lastLiteral(clause), Collections.emptyList());
+
+      for (int i = rules.size() - 1; i >= 0; i--) {
+        if (rules.get(i).head().isRelevant(clause.head()) && rules.get(i).hasSuffix(clause.body())) {
+          prev = rules.get(i);
           break;
         }
       }
@@ -168,30 +208,34 @@ final public class Subgoal {
 
     Preconditions.checkState(prev != null, "prev should not be null");
 
-    @com.google.errorprone.annotations.Var Clause proof = merge(clause, prev);
+    @com.google.errorprone.annotations.Var Clause merged = merge(clause, prev);
 
-    if (!proof.isGrounded() && clause.isGrounded()) {
+    int length = merged.body().size() - clause.body().size();
 
-      int length = proof.body().size() - clause.body().size();
-      List<Literal> prefix = proof.body().subList(0, length);
+    if (!merged.isGrounded() && clause.isGrounded() && length > 0) {
+
+      List<Literal> prefix = merged.body().subList(0, length);
+      List<Proof> candidates = proofsByFirstLiteral_.getOrDefault(prefix.get(0).predicate().id(),
+          Collections.emptyList());
 
       // If the clause is grounded but the proof is not, we must backtrack in the tree
-      for (int i = proofs_.size() - 1; i >= 0; i--) {
-        if (proofs_.get(i).hasPrefix(prefix)) {
+      for (int i = candidates.size() - 1; i >= 0; i--) {
+        Proof p = candidates.get(i);
+        if (!p.isRemoved_ && p.clause_.hasPrefix(prefix)) {
 
-          List<Literal> body = new ArrayList<>(proofs_.get(i).body().subList(0, length));
+          List<Literal> body = new ArrayList<>(p.clause_.body().subList(0, length));
           boolean isGrounded = body.stream().allMatch(Literal::isGrounded);
 
-          Preconditions.checkState(isGrounded, "proof should be grounded : %s", proofs_.get(i));
+          Preconditions.checkState(isGrounded, "proof should be grounded : %s", p.clause_);
 
-          body.addAll(proof.body().subList(length, proof.body().size()));
-          proof = new Clause(proof.head(), body);
+          body.addAll(merged.body().subList(length, merged.body().size()));
+          merged = new Clause(merged.head(), body);
           break;
         }
       }
     }
 
-    proofs_.add(proof);
+    add(new Proof(merged, nbProofs_++));
   }
 
   void pop(Clause clause) {
@@ -203,33 +247,145 @@ final public class Subgoal {
     }
 
     // Deal with primitives
-    if (!proofs_.isEmpty()) {
+    Collection<Proof> proofs = clause.body().isEmpty() ? proofs_
+        : proofsByLastLiteral_.getOrDefault(lastLiteral(clause), Collections.emptyList());
+
+    for (Proof proof : proofs) {
+      if (!proof.isRemoved_ && proof.clause_.head().isRelevant(clause.head()) && proof.clause_.hasSuffix(
+          clause.body())) {
+        remove(proof);
+      }
+    }
+    compact();
 
-      List<Clause> removed = new ArrayList<>();
+    // Deal with negation
+    for (Map.Entry<Subgoal, Clause> waiter : waiters_) {
+
+      Subgoal subgoal = waiter.getKey();
+      List<Proof> stack = subgoal.proofsByLastLiteral_.getOrDefault(clause.head().predicate().id(),
+          Collections.emptyList());
 
-      for (int i = proofs_.size() - 1; i >= 0; i--) {
-        if (proofs_.get(i).head().isRelevant(clause.head()) && proofs_.get(i).hasSuffix(clause.body())) {
-          removed.add(proofs_.get(i));
+      for (Proof proof : stack) {
+        if (!proof.isRemoved_ && proof.clause_.body().get(proof.clause_.body().size() - 1)
+            .isRelevant(clause.head())) {
+          subgoal.remove(proof);
         }
       }
+      subgoal.compact();
+    }
+  }
 
-      proofs_.removeAll(removed);
+  private void add(Proof proof) {
+
+    proofs_.add(proof);
+    proofsByFirstLiteral_.computeIfAbsent(firstLiteral(proof.clause_), key -> new ArrayList<>()).add(proof);
+    proofsByLastLiteral_.computeIfAbsent(lastLiteral(proof.clause_), key -> new ArrayList<>()).add(proof);
+
+    List<Literal> body = proof.clause_.body();
+
+    for (int length = 1; length <= body.size(); length++) {
+      proofsBySuffix_.computeIfAbsent(suffix(length, body.get(body.size() - length).tag()),
+          key -> new ArrayList<>()).add(proof);
     }
+  }
 
-    // Deal with negation
-    for (Map.Entry<Subgoal, Clause> waiter : waiters_) {
+  /**
+   * Find the most recent live proof whose head is relevant to the clause head and whose body ends with literals
+   * relevant to the clause body. The first literal of the clause body is grounded. Hence, the literal of a matching
+   * proof at the same position is a generalization of it i.e. each of its terms is either a variable or the same
+   * constant. Only the proofs indexed under one of these generalizations are checked.
+   *
+   * @param clause the clause.
+   * @return the proof or null if no proof is relevant.
+   */
+  private Proof lastRelevantProof(Clause clause) {
+
+    Literal first = clause.body().get(0);
+    List<List<Proof>> candidates = new ArrayList<>();
+
+    if (!first.isGrounded() || first.terms().size() > MAX_ARITY_INDEXED) {
+      candidates.add(proofsByLastLiteral_.getOrDefault(lastLiteral(clause), Collections.emptyList()));
+    } else {
+      for (String tag : generalizations(first)) {
+        List<Proof> proofs = proofsBySuffix_.get(suffix(clause.body().size(), tag));
+        if (proofs != null) {
+          candidates.add(proofs);
+        }
+      }
+    }
 
-      List<Clause> removed = new ArrayList<>();
-      List<Clause> stack = waiter.getKey().proofs_;
+    @com.google.errorprone.annotations.Var Proof last = null;
 
-      for (int i = stack.size() - 1; i >= 0; i--) {
-        if (stack.get(i).body().get(stack.get(i).body().size() - 1).isRelevant(clause.head())) {
-          removed.add(stack.get(i));
+    for (List<Proof> proofs : candidates) {
+      for (int i = proofs.size() - 1; i >= 0 && (last == null || proofs.get(i).rank_ > last.rank_); i--) {
+        Proof p = proofs.get(i);
+        if (!p.isRemoved_ && p.clause_.head().isRelevant(clause.head()) && p.clause_.hasSuffix(clause.body())) {
+          last = p;
+          break;
         }
       }
+    }
+    return last;
+  }
+
+  /**
+   * Enumerate the tags of a grounded literal where any subset of the constants has been replaced with a variable.
+   */
+  private static List<String> generalizations(Literal literal) {
 
-      stack.removeAll(removed);
+    List<AbstractTerm> terms = literal.terms();
+    List<String> tags = new ArrayList<>(1 << terms.size());
+
+    for (int mask = 0; mask < (1 << terms.size()); mask++) {
+
+      StringBuilder tag = new StringBuilder(literal.predicate().id());
+
+      for (int i = 0; i < terms.size(); i++) {
+        tag.append(':').append((mask & (1 << i)) == 0 ? terms.get(i).tag() : "v");
+      }
+      tags.add(tag.toString());
     }
+    return tags;
+  }
+
+  private static String suffix(int length, String tag) {
+    return length + "|" + tag;
+  }
+
+  /**
+   * Remove a proof in O(1) by marking it as removed. The removed proofs are physically deleted by {@link #compact()}.
+   *
+   * @param proof the proof to remove.
+   */
+  private void remove(Proof proof) {
+    proof.isRemoved_ = true;
+    nbRemovedProofs_++;
+  }
+
+  /**
+   * Physically delete the removed proofs once they outnumber the live ones. Hence, the amortized cost of a removal
+   * remains O(1).
+   */
+  private void compact() {
+    if (nbRemovedProofs_ > 0 && 2 * nbRemovedProofs_ >= proofs_.size()) {
+
+      proofs_.removeIf(proof -> proof.isRemoved_);
+      proofsByFirstLiteral_.values().forEach(proofs -> proofs.removeIf(proof -> proof.isRemoved_));
+      proofsByFirstLiteral_.values().removeIf(List::isEmpty);
+      proofsByLastLiteral_.values().forEach(proofs -> proofs.removeIf(proof -> proof.isRemoved_));
+      proofsByLastLiteral_.values().removeIf(List::isEmpty);
+      proofsBySuffix_.values().forEach(proofs -> proofs.removeIf(proof -> proof.isRemoved_));
+      proofsBySuffix_.values().removeIf(List::isEmpty);
+      nbRemovedProofs_ = 0;
+    }
+  }
+
+  private String firstLiteral(Clause rule) {
+    return rule.body().get(0).predicate().id();
+  }
+
+  private String lastLiteral(Clause rule) {
+    return rule.body().get(rule.body().size() - 1).predicate().id();
   }
 
   private Clause merge(Clause cur, Clause prev) {
@@ -267,4 +423,19 @@ final public class Subgoal {
     // 4 - Create a new cur
     return new Clause(head, body);
   }
+
+  /**
+   * A proof, its rank in the order of creation and its removal mark.
+   */
+  private static final class Proof {
+
+    private final Clause clause_;
+    private final long rank_;
+    private boolean isRemoved_ = false;
+
+    Proof(Clause clause, long rank) {
+      clause_ = clause;
+      rank_ = rank;
+    }
+  }
 }
@@ -0,0 +1,76 @@
+package com.computablefacts.decima.problog;
+
+import com.google.common.base.Preconditions;
+import com.google.errorprone.annotations.CheckReturnValue;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * A memory budget, expressed as a number of facts, shared by several {@link HybridSubgoalFacts}. When the budget is
+ * exhausted, the largest in-memory stores are spilled to disk until the budget is met again.
+ */
+@CheckReturnValue
+final public class SubgoalFactsBudget {
+
+  private final long maxFactsInMemory_;
+  private final Set<HybridSubgoalFacts> stores_ = new HashSet<>();
+  private long nbFactsInMemory_ = 0;
+  private int nbSpills_ = 0;
+
+  public SubgoalFactsBudget(long maxFactsInMemory) {
+
+    Preconditions.checkArgument(maxFactsInMemory >= 0, "maxFactsInMemory should be >= 0");
+
+    maxFactsInMemory_ = maxFactsInMemory;
+  }
+
+  /**
+   * Return the number of facts currently held in memory by all the stores sharing this budget.
+   *
+   * @return the number of in-memory facts.
+   */
+  public synchronized long nbFactsInMemory() {
+    return nbFactsInMemory_;
+  }
+
+  /**
+   * Return the number of stores spilled to disk because the budget was exhausted.
+   *
+   * @return the number of spills.
+   */
+  public synchronized int nbSpills() {
+    return nbSpills_;
+  }
+
+  synchronized void allocate(HybridSubgoalFacts store, int nbFacts) {
+
+    Preconditions.checkNotNull(store, "store should not be null");
+
+    stores_.add(store);
+    nbFactsInMemory_ += nbFacts;
+
+    while (nbFactsInMemory_ > maxFactsInMemory_) {
+
+      Optional<HybridSubgoalFacts> largest = stores_.stream()
+          .max(Comparator.comparingInt(HybridSubgoalFacts::nbFactsInMemory));
+
+      if (!largest.isPresent()) {
+        break;
+      }
+      if (largest.get().spill() > 0) {
+        nbSpills_++;
+      }
+      stores_.remove(largest.get());
+    }
+  }
+
+  synchronized void release(HybridSubgoalFacts store, int nbFacts) {
+
+    Preconditions.checkNotNull(store, "store should not be null");
+
+    stores_.remove(store);
+    nbFactsInMemory_ -= nbFacts;
+  }
+}
@@ -0,0 +1,351 @@
+package com.computablefacts.decima.problog;
+
+import static com.computablefacts.decima.problog.AbstractTerm.newConst;
+import static com.computablefacts.decima.problog.AbstractTerm.newVar;
+import static com.computablefacts.decima.problog.Parser.parseClause;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Streams;
+import com.google.errorprone.annotations.CheckReturnValue;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A synthetic ProbLog program of arbitrary size, used as a standard load for benchmarking and soak-testing the engine.
+ * The facts are generated lazily from a seed : the same parameters always yield the same facts, in the same order, and
+ * a program of 10^8 facts is never materialized in memory.
+ * <p>
+ * Random graphs may contain duplicate facts. They are dropped by the knowledge base when the program is loaded.
+ */
+@CheckReturnValue
+final public class Workload {
+
+  private static final int CHUNK_SIZE = 64 * 1024;
+
+  private final String name_;
+  private final long nbFacts_;
+  private final long seed_;
+  private final FactGenerator generator_;
+  private final List<Clause> rules_;
+  private final Literal query_;
+
+  private Workload(String name, long nbFacts, long seed, FactGenerator generator, List<Clause> rules,
+      Literal query) {
+    name_ = Preconditions.checkNotNull(name, "name should not be null");
+    nbFacts_ = nbFacts;
+    seed_ = seed;
+    generator_ = Preconditions.checkNotNull(generator, "generator should not be null");
+    rules_ = ImmutableList.copyOf(rules);
+    query_ = Preconditions.checkNotNull(query, "query should not be null");
+  }
+
+  /**
+   * A directed graph whose edges link two nodes chosen uniformly at random. Each edge has a probability between 0.1 and
+   * 0.9. The rules compute the transitive closure of the graph.
+   *
+   * <pre>
+   * 0.x::edge(nI, nJ).
+   * path(X, Y) :- edge(X, Y).
+   * path(X, Y) :- edge(X, Z), path(Z, Y).
+   * </pre>
+   *
+   * @param nbNodes the number of nodes.
+   * @param nbEdges the number of edges.
+   * @param seed    the seed of the random number generator.
+   * @return a workload.
+   */
+  public static Workload randomGraph(long nbNodes, long nbEdges, long seed) {
+
+    Preconditions.checkArgument(nbNodes > 0, "nbNodes should be > 0");
+    Preconditions.checkArgument(nbEdges >= 0, "nbEdges should be >= 0");
+
+    return new Workload("random_graph", nbEdges, seed,
+        (random, index) -> edge(random, uniform(random, nbNodes), uniform(random, nbNodes)), pathRules(false),
+        new Literal("path", newConst("n0"), newVar()));
+  }
+
+  /**
+   * A directed graph whose node degrees follow a power law : the probability that a given edge starts or ends at the
+   * node of rank k is proportional to {@code k^-exponent}. Hence, {@code n0} is the largest hub of the graph. Each edge
+   * has a probability between 0.1 and 0.9. The rules are the same as {@link #randomGraph(long, long, long)}.
+   *
+   * @param nbNodes  the number of nodes.
+   * @param nbEdges  the number of edges.
+   * @param exponent the exponent of the power law, usually between 2 and 3.
+   * @param seed     the seed of the random number generator.
+   * @return a workload.
+   */
+  public static Workload powerLawGraph(long nbNodes, long nbEdges, double exponent, long seed) {
+
+    Preconditions.checkArgument(nbNodes > 0, "nbNodes should be > 0");
+    Preconditions.checkArgument(nbEdges >= 0, "nbEdges should be >= 0");
+    Preconditions.checkArgument(exponent > 1.0, "exponent should be > 1");
+
+    return new Workload("power_law_graph", nbEdges, seed,
+        (random, index) -> edge(random, powerLaw(random, nbNodes, exponent), powerLaw(random, nbNodes, exponent)),
+        pathRules(false), new Literal("path", newConst("n0"), newVar()));
+  }
+
+  /**
+   * A chain of probabilistic edges {@code n0 -> n1 -> ... -> nN}. The rules are left-recursive, hence the only proof of
+   * {@code path(n0, nN)} goes through every edge of the chain.
+   *
+   * @param length the number of edges.
+   * @param seed   the seed of the random number generator.
+   * @return a workload.
+   */
+  public static Workload chain(long length, long seed) {
+
+    Preconditions.checkArgument(length > 0, "length should be > 0");
+
+    return new Workload("chain", length, seed, (random, index) -> edge(random, index, index + 1), pathRules(true),
+        new Literal("path", newConst("n0"), newConst("n" + length)));
+  }
+
+  /**
+   * A smokers-style social network. Each person is stressed with some probability and has a fixed number of friends
+   * chosen uniformly at random. A person smokes if they are stressed or if one of their friends smokes.
+   *
+   * <pre>
+   * person(pI).
+   * 0.x::stress(pI).
+   * 0.x::friend(pI, pJ).
+   * smokes(X) :- stress(X).
+   * smokes(X) :- friend(X, Y), smokes(Y).
+   * </pre>
+   *
+   * @param nbPeople           the number of persons.
+   * @param nbFriendsPerPerson the number of friends of each person.
+   * @param seed               the seed of the random number generator.
+   * @return a workload.
+   */
+  public static Workload socialNetwork(long nbPeople, int nbFriendsPerPerson, long seed) {
+
+    Preconditions.checkArgument(nbPeople > 0, "nbPeople should be > 0");
+    Preconditions.checkArgument(nbFriendsPerPerson >= 0, "nbFriendsPerPerson should be >= 0");
+
+    int nbFactsPerPerson = 2 + nbFriendsPerPerson;
+    List<Clause> rules = new ArrayList<>();
+    rules.add(parseClause("smokes(X) :- stress(X)."));
+    rules.add(parseClause("smokes(X) :- friend(X, Y), smokes(Y)."));
+
+    return new Workload("social_network", nbPeople * nbFactsPerPerson, seed, (random, index) -> {
+
+      long person = index / nbFactsPerPerson;
+      long fact = index % nbFactsPerPerson;
+
+      if (fact == 0) {
+        return new Clause(new Literal("person", newConst("p" + person)));
+      }
+      if (fact == 1) {
+        return new Clause(new Literal(probability(random), "stress", newConst("p" + person)));
+      }
+      return new Clause(new Literal(probability(random), "friend", newConst("p" + person),
+          newConst("p" + uniform(random, nbPeople))));
+    }, rules, new Literal("smokes", newConst("p0")));
+  }
+
+  /**
+   * A join of {@code width} binary relations {@code r0, ..., rW-1} : {@code join(X0, XW) :- r0(X0, X1), ..., rW-1(XW-1,
+   * XW).} Each relation holds {@code nbFactsPerRelation} pairs of constants chosen uniformly at random among
+   * {@code nbFactsPerRelation} constants. Hence, a constant matches one fact of each relation on average.
+   *
+   * @param width              the number of relations in the body of the rule.
+   * @param nbFactsPerRelation the number of facts of each relation.
+   * @param seed               the seed of the random number generator.
+   * @return a workload.
+   */
+  public static Workload join(int width, long nbFactsPerRelation, long seed) {
+
+    Preconditions.checkArgument(width > 0, "width should be > 0");
+    Preconditions.checkArgument(nbFactsPerRelation > 0, "nbFactsPerRelation should be > 0");
+
+    List<AbstractTerm> vars = new ArrayList<>();
+
+    for (int i = 0; i <= width; i++) {
+      vars.add(newVar());
+    }
+
+    List<Literal> body = new ArrayList<>();
+
+    for (int i = 0; i < width; i++) {
+      body.add(new Literal("r" + i, vars.get(i), vars.get(i + 1)));
+    }
+
+    Clause rule = new Clause(new Literal("join", vars.get(0), vars.get(width)), body);
+
+    return new Workload("join", width * nbFactsPerRelation, seed, (random, index) -> {
+
+      long relation = index / nbFactsPerRelation;
+      long first = uniform(random, nbFactsPerRelation);
+      long second = uniform(random, nbFactsPerRelation);
+
+      return new Clause(
+          new Literal(probability(random), "r" + relation, newConst("c" + first), newConst("c" + second)));
+    }, ImmutableList.of(rule), new Literal("join", newVar(), newVar()));
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this).add("name", name_).add("nb_facts", nbFacts_).add("nb_rules", rules_.size())
+        .add("seed", seed_).add("query", query_).toString();
+  }
+
+  public String name() {
+    return name_;
+  }
+
+  /**
+   * The number of facts generated, duplicates included.
+   */
+  public long nbFacts() {
+    return nbFacts_;
+  }
+
+  public List<Clause> rules() {
+    return rules_;
+  }
+
+  /**
+   * A query that exercises the rules of the workload.
+   */
+  public Literal query() {
+    return query_;
+  }
+
+  /**
+   * Generate the facts. Each call restarts the generation from the seed.
+   *
+   * @return an iterator over the facts.
+   */
+  public Iterator<Clause> facts() {
+
+    Random random = new Random(seed_);
+
+    return new AbstractIterator<Clause>() {
+
+      private long index_ = 0;
+
+      @Override
+      protected Clause computeNext() {
+        return index_ < nbFacts_ ? generator_.next(random, index_++) : endOfData();
+      }
+    };
+  }
+
+  /**
+   * Generate the facts then the rules. The stream can be handed over to
+   * {@link AbstractKnowledgeBase#azzert(Stream)}.
+   *
+   * @return a stream of clauses.
+   */
+  public Stream<Clause> clauses() {
+    return Stream.concat(Streams.stream(facts()), rules_.stream());
+  }
+
+  /**
+   * Load the workload into a knowledge base. See {@link AbstractKnowledgeBase#azzert(Stream)} for details.
+   *
+   * @param kb the knowledge base.
+   * @return the number of clauses read and stored and the throughput of the load.
+   */
+  public BulkLoadResult loadInto(AbstractKnowledgeBase kb) {
+
+    Preconditions.checkNotNull(kb, "kb should not be null");
+
+    return kb.azzert(clauses());
+  }
+
+  /**
+   * Write all facts then all rules, one clause per line. The output can be read back using
+   * {@link StreamingParser#parse(java.io.File)}. The writer is flushed but not closed.
+   *
+   * @param writer where to write the clauses.
+   */
+  public void writeTo(Writer writer) throws IOException {
+
+    Preconditions.checkNotNull(writer, "writer should not be null");
+
+    Writer output = writer instanceof BufferedWriter || writer instanceof StringWriter ? writer
+        : new BufferedWriter(writer, CHUNK_SIZE);
+    Iterator<Clause> clauses = clauses().iterator();
+
+    while (clauses.hasNext()) {
+      output.write(clauses.next().toString());
+      output.write(".\n");
+    }
+    output.flush();
+  }
+
+  /**
+   * Write all facts then all rules, one clause per line, as UTF-8. See {@link #writeTo(Writer)} for details. The stream
+   * is flushed but not closed.
+   *
+   * @param stream where to write the clauses.
+   * @param gzip   true iif the output must be gzip-compressed.
+   */
+  public void writeTo(OutputStream stream, boolean gzip) throws IOException {
+
+    Preconditions.checkNotNull(stream, "stream should not be null");
+
+    if (!gzip) {
+      writeTo(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+      return;
+    }
+
+    GZIPOutputStream gzipStream = new GZIPOutputStream(stream, CHUNK_SIZE);
+    writeTo(new OutputStreamWriter(gzipStream, StandardCharsets.UTF_8));
+    gzipStream.finish();
+    stream.flush();
+  }
+
+  private static List<Clause> pathRules(boolean leftRecursive) {
+
+    List<Clause> rules = new ArrayList<>();
+    rules.add(parseClause("path(X, Y) :- edge(X, Y)."));
+    rules.add(leftRecursive ? parseClause("path(X, Y) :- path(X, Z), edge(Z, Y).")
+        : parseClause("path(X, Y) :- edge(X, Z), path(Z, Y)."));
+    return rules;
+  }
+
+  private static Clause edge(Random random, long from, long to) {
+    return new Clause(new Literal(probability(random), "edge", newConst("n" + from), newConst("n" + to)));
+  }
+
+  private static BigDecimal probability(Random random) {
+    return BigDecimal.valueOf(1 + random.nextInt(9), 1);
+  }
+
+  private static long uniform(Random random, long bound) {
+    return (long) (random.nextDouble() * bound);
+  }
+
+  /**
+   * Sample a rank in [0, bound) from a continuous power law by inverting its cumulative distribution function.
+   */
+  private static long powerLaw(Random random, long bound, double exponent) {
+    double x = Math.pow(1.0 - random.nextDouble() * (1.0 - Math.pow(bound, 1.0 - exponent)), 1.0 / (1.0 - exponent));
+    return Math.max(0, Math.min(bound - 1, (long) x - 1));
+  }
+
+  @FunctionalInterface
+  private interface FactGenerator {
+
+    Clause next(Random random, long index);
+  }
+}
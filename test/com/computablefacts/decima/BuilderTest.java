@@ -1,14 +1,26 @@
 package com.computablefacts.decima;
 
 import com.computablefacts.asterix.WildcardMatcher;
+import com.computablefacts.decima.problog.Clause;
+import com.computablefacts.decima.problog.MappedKnowledgeBase;
 import com.computablefacts.decima.problog.Parser;
 import com.computablefacts.decima.yaml.TestUtils;
+import com.google.common.base.Splitter;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -96,4 +108,92 @@ public class BuilderTest {
     Assert.assertTrue(
         WildcardMatcher.match(result, "*json_path(\"\", \"????????\", \"Actors\", \"0\", \"name\", \"Tom Cruise\").*"));
   }
+
+  @Test
+  public void testStreamKb() throws IOException {
+
+    String json = TestUtils.load("/data/tests/simple-json.txt");
+    Path input = Files.createTempFile("rules-", ".json");
+    Files.write(input, Lists.newArrayList(json, "", json));
+
+    Builder.main(new String[]{"-input", input.toString(), "-stream", "true"});
+
+    String result = outContent_.toString().replace("\r", "");
+    Set<String> facts = Sets.newHashSet(Splitter.on('\n').omitEmptyStrings().split(result));
+
+    Assert.assertEquals(2 * 25, facts.size());
+    Assert.assertTrue(WildcardMatcher.match(result,
+        "*json_path(\"\", \"????????\", \"Actors\", \"1\", \"children\", \"1\", \"Avri Roel\").\n*"));
+    Assert.assertTrue(
+        WildcardMatcher.match(result, "*json_path(\"\", \"????????\", \"Actors\", \"0\", \"name\", \"Tom Cruise\").*"));
+  }
+
+  @Test
+  public void testStreamKeepsInputOrder() throws IOException {
+
+    StringBuilder input = new StringBuilder();
+
+    for (int i = 0; i < 100; i++) {
+      input.append("{\"id\":").append(i).append("}\n");
+    }
+
+    StringWriter output = new StringWriter();
+    long nbObjects = Builder.build(new BufferedReader(new StringReader(input.toString())), output, 7);
+    List<String> facts = Splitter.on('\n').omitEmptyStrings().splitToList(output.toString());
+
+    Assert.assertEquals(100, nbObjects);
+    Assert.assertEquals(200, facts.size());
+
+    for (int i = 0; i < 100; i++) {
+      Assert.assertTrue(facts.get(2 * i).startsWith("json("));
+      Assert.assertTrue(facts.get(2 * i + 1).endsWith("\"id\", \"" + i + "\")."));
+    }
+  }
+
+  @Test
+  public void testBuildKbAssignsOneIdPerObject() throws IOException {
+
+    List<String> lines = new ArrayList<>();
+
+    for (int i = 0; i < 1000; i++) {
+      lines.add("{\"id\":" + i + "}");
+    }
+
+    Path input = Files.createTempFile("rules-", ".json");
+    Files.write(input, lines);
+
+    Builder.main(new String[]{"-input", input.toString()});
+
+    Map<String, String> ids = new HashMap<>(); // id -> value of the "id" key
+
+    for (String fact : Splitter.on('\n').omitEmptyStrings().split(outContent_.toString().replace("\r", ""))) {
+
+      Clause clause = Parser.parseClause(fact);
+
+      if ("json_path".equals(clause.head().predicate().name())) {
+        Assert.assertNull(ids.put(clause.head().terms().get(1).toString(), clause.head().terms().get(3).toString()));
+      }
+    }
+
+    Assert.assertEquals(1000, ids.size());
+    Assert.assertEquals(1000, Sets.newHashSet(ids.values()).size());
+  }
+
+  @Test
+  public void testBuildCompiledKb() throws IOException {
+
+    String json = TestUtils.load("/data/tests/simple-json.txt");
+    Path input = Files.createTempFile("rules-", ".json");
+    Files.write(input, Lists.newArrayList(json));
+    Path compiledKb = Files.createTempFile("kb-", ".bin");
+
+    Builder.main(new String[]{"-input", input.toString(), "-compiled_kb", compiledKb.toString()});
+
+    MappedKnowledgeBase kb = MappedKnowledgeBase.load(compiledKb.toFile());
+
+    Assert.assertNotNull(kb);
+    Assert.assertEquals(25, kb.nbFacts());
+    Assert.assertEquals(1,
+        kb.nbFacts(Parser.parseQuery("json_path(_, _, \"Actors\", \"0\", \"name\", \"Tom Cruise\")?")));
+  }
 }
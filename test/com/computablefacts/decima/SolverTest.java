@@ -1,7 +1,9 @@
 package com.computablefacts.decima;
 
 import com.computablefacts.asterix.WildcardMatcher;
+import com.google.common.base.Splitter;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
@@ -9,7 +11,9 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -81,4 +85,110 @@ public class SolverTest {
     Assert.assertTrue(WildcardMatcher.match(outContent_.toString(),
         "*{\"external_id\":\"*\",\"metadata\":[{\"type\":\"Comment\",\"key\":\"extracted_with\",\"value\":\"decima\"},{\"type\":\"Comment\",\"key\":\"extracted_by\",\"value\":\"decima\"},{\"type\":\"Comment\",\"key\":\"extraction_date\",\"value\":\"????-??-??T??:??:??*Z\"}],\"provenances\":[{\"source_store\":\"ACCUMULO/my_root/my_dataset/000|0000-00-00T00:00:00.000Z\",\"source_type\":\"STORAGE/ROOT/DATASET/DOC_ID\"}],\"values\":[\"bill\",\"alice\"],\"type\":\"son\",\"is_valid\":true,\"confidence_score\":1.0,\"start_date\":\"????-??-??T??:??:??*Z\"}*"));
   }
+
+  @Test
+  public void testSolveManyQueriesWithThreads() throws IOException {
+
+    List<String> facts = new ArrayList<>();
+    List<String> queries = new ArrayList<>();
+
+    for (int i = 0; i < 100; i++) {
+      facts.add("edge(n" + i + ", n" + (i + 1) + ").");
+      queries.add("path(n" + i + ", X)?");
+    }
+
+    List<String> rules = Lists.newArrayList("path(X, Y) :- edge(X, Y).", "path(X, Y) :- path(X, Z), edge(Z, Y).");
+
+    Path factz = Files.createTempFile("facts-", ".txt");
+    java.nio.file.Files.write(factz, facts, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+    Path rulez = Files.createTempFile("rules-", ".txt");
+    java.nio.file.Files.write(rulez, rules, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+    Path queriez = Files.createTempFile("queries-", ".txt");
+    java.nio.file.Files.write(queriez, queries, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+    Solver.main(new String[]{"-facts", factz.toString(), "-rules", rulez.toString(), "-queries", queriez.toString(),
+        "-compute_probabilities", "false", "-threads", "4"});
+
+    Set<String> answers = Sets.newHashSet(Splitter.on('\n').omitEmptyStrings().split(outContent_.toString()));
+
+    Assert.assertEquals(100 * 101 / 2, answers.size());
+    Assert.assertTrue(answers.contains("1::path(\"n0\", \"n100\")."));
+    Assert.assertTrue(answers.contains("1::path(\"n99\", \"n100\")."));
+  }
+
+  @Test
+  public void testSolveWithProfile() throws IOException {
+
+    List<String> facts = Lists.newArrayList("boy(bill).", "mother(alice, bill).");
+    List<String> rules = Lists.newArrayList("child(X,Y) :- mother(Y,X).", "son(X,Y) :- child(X,Y),boy(X).");
+    List<String> queries = Lists.newArrayList("son(X, alice)?");
+
+    Path factz = Files.createTempFile("facts-", ".txt");
+    java.nio.file.Files.write(factz, facts, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+    Path rulez = Files.createTempFile("rules-", ".txt");
+    java.nio.file.Files.write(rulez, rules, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+    Path queriez = Files.createTempFile("queries-", ".txt");
+    java.nio.file.Files.write(queriez, queries, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+    Solver.main(new String[]{"-facts", factz.toString(), "-rules", rulez.toString(), "-queries", queriez.toString(),
+        "-profile", "text"});
+
+    Assert.assertTrue(outContent_.toString().startsWith("1.0000::son(\"bill\", \"alice\")."));
+    Assert.assertTrue(errContent_.toString().startsWith("query : son("));
+    Assert.assertTrue(errContent_.toString().contains("stop reason : COMPLETED"));
+    Assert.assertTrue(errContent_.toString().contains("-> mother("));
+    Assert.assertTrue(errContent_.toString().contains("son/2 : 1 searches"));
+
+    errContent_.reset();
+
+    Solver.main(new String[]{"-facts", factz.toString(), "-rules", rulez.toString(), "-queries", queriez.toString(),
+        "-profile", "json"});
+
+    Assert.assertTrue(
+        errContent_.toString().startsWith("{\"stop_reason\":\"COMPLETED\",\"subgoals\":[{\"kind\":\"subgoal\""));
+  }
+
+  @Test
+  public void testCompiledKbIsRebuiltWhenFactsChange() throws IOException {
+
+    List<String> rules = Lists.newArrayList("child(X,Y) :- mother(Y,X).", "son(X,Y) :- child(X,Y),boy(X).");
+    List<String> queries = Lists.newArrayList("son(X, alice)?");
+
+    Path factz = Files.createTempFile("facts-", ".txt");
+    java.nio.file.Files.write(factz, Lists.newArrayList("boy(bill).", "mother(alice, bill)."), StandardCharsets.UTF_8,
+        StandardOpenOption.APPEND);
+
+    Path rulez = Files.createTempFile("rules-", ".txt");
+    java.nio.file.Files.write(rulez, rules, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+    Path queriez = Files.createTempFile("queries-", ".txt");
+    java.nio.file.Files.write(queriez, queries, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+    Path compiledKb = Files.createTempFile("kb-", ".dkb");
+    Files.delete(compiledKb);
+    compiledKb.toFile().deleteOnExit();
+
+    String[] args = new String[]{"-facts", factz.toString(), "-rules", rulez.toString(), "-queries",
+        queriez.toString(), "-compiled_kb", compiledKb.toString(), "-compute_probabilities", "false"};
+
+    Solver.main(args);
+
+    Assert.assertTrue(Files.exists(compiledKb));
+    Assert.assertEquals(Sets.newHashSet("1::son(\"bill\", \"alice\")."),
+        Sets.newHashSet(Splitter.on('\n').omitEmptyStrings().split(outContent_.toString())));
+
+    // The facts changed : the compiled kb must not be reused
+    java.nio.file.Files.write(factz, Lists.newArrayList("boy(bob).", "mother(alice, bob)."), StandardCharsets.UTF_8,
+        StandardOpenOption.APPEND);
+    outContent_.reset();
+
+    Solver.main(args);
+
+    Assert.assertEquals(Sets.newHashSet("1::son(\"bill\", \"alice\").", "1::son(\"bob\", \"alice\")."),
+        Sets.newHashSet(Splitter.on('\n').omitEmptyStrings().split(outContent_.toString())));
+  }
 }
@@ -10,17 +10,28 @@ import com.computablefacts.asterix.codecs.JsonCodec;
 import com.computablefacts.decima.robdd.Pair;
 import com.computablefacts.nona.Function;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.google.common.io.ByteStreams;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import javax.validation.constraints.NotNull;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -490,6 +501,293 @@ public class AbstractKnowledgeBaseTest {
             && clauses.get(1).equals(clause1)));
   }
 
+  @Test
+  public void testStatistics() {
+
+    InMemoryKnowledgeBase kb = kb();
+    kb.sketchDistinctValues(true);
+    kb.azzert(parseClause("0.3::edge(a, b)."));
+    kb.azzert(parseClause("0.3::edge(a, b).")); // Duplicate facts are not counted twice
+    kb.azzert(parseClause("0.5::edge(a, c)."));
+    kb.azzert(parseClause("0.5::edge(b, c)."));
+    kb.azzert(parseClause("path(A, B) :- edge(A, B)."));
+    kb.azzert(parseClause("path(A, B) :- path(A, X), edge(X, B)."));
+
+    Assert.assertEquals(3, kb.nbFacts());
+    Assert.assertEquals(2, kb.nbRules());
+    Assert.assertEquals(3, kb.nbFacts(parseQuery("edge(X, Y)?")));
+    Assert.assertEquals(2, kb.nbFacts(parseQuery("edge(a, Y)?")));
+    Assert.assertEquals(2, kb.nbRules(parseQuery("path(X, Y)?")));
+
+    PredicateStatistics edge = kb.statistics().get("edge/2");
+
+    Assert.assertEquals(3, edge.nbFacts());
+    Assert.assertEquals(0, edge.nbRules());
+    Assert.assertEquals(2, edge.nbDistinctValues(0));
+    Assert.assertEquals(2, edge.nbDistinctValues(1));
+
+    PredicateStatistics path = kb.statistics().get("path/2");
+
+    Assert.assertEquals(0, path.nbFacts());
+    Assert.assertEquals(2, path.nbRules());
+  }
+
+  @Test
+  public void testDistinctValuesEstimate() {
+
+    InMemoryKnowledgeBase kb = kb();
+    kb.sketchDistinctValues(true);
+
+    for (int i = 0; i < 10000; i++) {
+      kb.azzert(parseClause("edge(n" + (i % 5000) + ", " + i + ")."));
+    }
+
+    PredicateStatistics edge = kb.statistics().get("edge/2");
+
+    Assert.assertEquals(10000, edge.nbFacts());
+    Assert.assertEquals(5000, edge.nbDistinctValues(0), 5000 * 0.1);
+    Assert.assertEquals(10000, edge.nbDistinctValues(1), 10000 * 0.1);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testDistinctValuesAreNotSketchedByDefault() {
+
+    InMemoryKnowledgeBase kb = kb();
+    kb.azzert(parseClause("edge(a, b)."));
+
+    PredicateStatistics edge = kb.statistics().get("edge/2");
+
+    Assert.assertEquals(1, edge.nbFacts());
+
+    long nbDistinctValues = edge.nbDistinctValues(0);
+  }
+
+  @Test
+  public void testSubclassOverridingAzzertFactOnly() {
+
+    Map<Predicate, List<Clause>> facts = new HashMap<>();
+    AbstractKnowledgeBase kb = new AbstractKnowledgeBase() {
+
+      @Override
+      protected void azzertFact(@NotNull Clause fact) {
+        facts.computeIfAbsent(fact.head().predicate(), predicate -> new ArrayList<>()).add(fact);
+      }
+
+      @Override
+      protected void azzertRule(@NotNull Clause rule) {
+      }
+
+      @Override
+      protected Iterator<Clause> facts(@NotNull Literal literal) {
+        return facts.getOrDefault(literal.predicate(), Collections.emptyList()).stream()
+            .filter(fact -> fact.head().isRelevant(literal)).iterator();
+      }
+
+      @Override
+      protected Iterator<Clause> rules(@NotNull Literal literal) {
+        return Collections.emptyIterator();
+      }
+
+      @Override
+      public Iterator<Clause> facts() {
+        return facts.values().stream().flatMap(List::stream).iterator();
+      }
+
+      @Override
+      public Iterator<Clause> rules() {
+        return Collections.emptyIterator();
+      }
+    };
+
+    kb.azzert(parseClause("edge(a, b)."));
+    kb.azzert(parseClause("edge(a, c)."));
+
+    Assert.assertEquals(2, kb.nbFacts());
+    Assert.assertEquals(2, facts.get(new Predicate("edge", 2)).size());
+  }
+
+  @Test
+  public void testBulkAzzert() {
+
+    List<Clause> clauses = Lists.newArrayList(parseClause("0.3::edge(a, b)."), parseClause("0.5::edge(b, c)."),
+        parseClause("0.5::edge(b, c)."), parseClause("0.2::path(A, B) :- edge(A, B)."),
+        parseClause("path(A, B) :- path(A, X), edge(X, B)."), parseClause("fn_is_true(a)."));
+
+    InMemoryKnowledgeBase kb = kb();
+    BulkLoadResult result = kb.azzert(clauses.stream());
+
+    Assert.assertEquals(6, result.nbClauses());
+    Assert.assertEquals(3, result.nbFacts()); // including the fact created for the probabilistic rule
+    Assert.assertEquals(2, result.nbRules());
+    Assert.assertEquals(3, kb.nbFacts());
+    Assert.assertEquals(2, kb.nbRules());
+    Assert.assertEquals(2, kb.nbFacts(parseQuery("edge(X, Y)?")));
+  }
+
+  @Test
+  public void testBulkAzzertDoesNotStoreAnythingIfAClauseIsInvalid() {
+
+    List<Clause> clauses = new ArrayList<>();
+
+    for (int i = 0; i < 1000; i++) {
+      clauses.add(parseClause("edge(a, " + i + ")."));
+    }
+    clauses.add(parseClause("0.0::edge(b, c)."));
+
+    InMemoryKnowledgeBase kb = kb();
+
+    try {
+      BulkLoadResult result = kb.azzert(clauses.iterator());
+      Assert.fail();
+    } catch (IllegalStateException e) {
+      // Expected
+    }
+
+    Assert.assertEquals(0, kb.nbFacts());
+    Assert.assertFalse(kb.facts().hasNext());
+  }
+
+  @Test
+  public void testBulkAzzertStoresTheBatchesReadBeforeAnInvalidClause() {
+
+    List<Clause> clauses = new ArrayList<>();
+
+    for (int i = 0; i < 50000; i++) {
+      clauses.add(parseClause("edge(a, " + i + ")."));
+    }
+    clauses.add(parseClause("0.0::edge(b, c)."));
+
+    InMemoryKnowledgeBase kb = kb();
+
+    try {
+      BulkLoadResult result = kb.azzert(clauses.iterator());
+      Assert.fail();
+    } catch (IllegalStateException e) {
+      // Expected
+    }
+
+    Assert.assertTrue(kb.nbFacts() > 0);
+    Assert.assertTrue(kb.nbFacts() < 50000);
+  }
+
+  @Test
+  public void testBulkAzzertKeepsTheOrderOfFacts() {
+
+    Workload workload = Workload.randomGraph(1000, 100000, 42);
+    ColumnarKnowledgeBase kb = new ColumnarKnowledgeBase();
+    BulkLoadResult result = workload.loadInto(kb);
+
+    List<Clause> expected = Lists.newArrayList(Sets.newLinkedHashSet(Lists.newArrayList(workload.facts())));
+
+    Assert.assertEquals(100000 + workload.rules().size(), result.nbClauses());
+    Assert.assertEquals(expected.size(), kb.nbFacts());
+    Assert.assertEquals(expected, Lists.newArrayList(kb.facts()));
+  }
+
+  @Test
+  public void testBulkAzzertThroughput() {
+
+    List<Clause> clauses = new ArrayList<>();
+
+    for (int i = 0; i < 200000; i++) {
+      clauses.add(new Clause(new Literal("json_path", newConst("ns"), newConst("uuid_" + (i / 10)),
+          newConst("key_" + (i % 10)), newConst(i))));
+    }
+
+    InMemoryKnowledgeBase kb = kb();
+    BulkLoadResult result = kb.azzert(clauses.stream());
+
+    Assert.assertEquals(200000, result.nbFacts());
+    Assert.assertEquals(200000, kb.nbFacts());
+    Assert.assertTrue(result.clausesPerSecond() > 0);
+  }
+
+  @Test
+  public void testBulkAzzertDoesNotStoreConcurrentlyIntoAThreadUnsafeKb() {
+
+    AtomicInteger nbWriters = new AtomicInteger(0);
+    AtomicInteger maxNbWriters = new AtomicInteger(0);
+    List<Clause> facts = new ArrayList<>();
+    AbstractKnowledgeBase kb = new AbstractKnowledgeBase() {
+
+      @Override
+      protected void azzertFact(@NotNull Clause fact) {
+        maxNbWriters.accumulateAndGet(nbWriters.incrementAndGet(), Math::max);
+        facts.add(fact);
+        nbWriters.decrementAndGet();
+      }
+
+      @Override
+      protected void azzertRule(@NotNull Clause rule) {
+      }
+
+      @Override
+      protected Iterator<Clause> facts(@NotNull Literal literal) {
+        return facts.stream().filter(fact -> fact.head().isRelevant(literal)).iterator();
+      }
+
+      @Override
+      protected Iterator<Clause> rules(@NotNull Literal literal) {
+        return Collections.emptyIterator();
+      }
+
+      @Override
+      public Iterator<Clause> facts() {
+        return facts.iterator();
+      }
+
+      @Override
+      public Iterator<Clause> rules() {
+        return Collections.emptyIterator();
+      }
+    };
+
+    // One predicate per fact : a thread-safe kb would store them all in parallel
+    List<Clause> clauses = new ArrayList<>();
+
+    for (int i = 0; i < 10000; i++) {
+      clauses.add(new Clause(new Literal("p" + i, newConst(i))));
+    }
+
+    BulkLoadResult result = kb.azzert(clauses.stream());
+
+    Assert.assertEquals(10000, result.nbFacts());
+    Assert.assertEquals(10000, facts.size());
+    Assert.assertEquals(1, maxNbWriters.get());
+  }
+
+  @Test
+  public void testWriteTo() throws IOException {
+
+    InMemoryKnowledgeBase kb = kb();
+    kb.azzert(parseClause("0.3::edge(a, b)."));
+    kb.azzert(parseClause("path(A, B) :- edge(A, B)."));
+
+    StringWriter writer = new StringWriter();
+    kb.writeTo(writer);
+
+    Assert.assertEquals(2, Splitter.on('\n').omitEmptyStrings().splitToList(writer.toString()).size());
+    Assert.assertTrue(writer.toString().startsWith("0.3::edge(\"a\", \"b\").\npath("));
+    Assert.assertEquals(writer.toString(), kb.toString());
+  }
+
+  @Test
+  public void testWriteToGzip() throws IOException {
+
+    InMemoryKnowledgeBase kb = kb();
+
+    for (int i = 0; i < 10000; i++) {
+      kb.azzert(parseClause("edge(a, " + i + ")."));
+    }
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    kb.writeTo(bytes, true);
+
+    try (GZIPInputStream stream = new GZIPInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      Assert.assertEquals(kb.toString(), new String(ByteStreams.toByteArray(stream), StandardCharsets.UTF_8));
+    }
+  }
+
   private InMemoryKnowledgeBase kb() {
     return new InMemoryKnowledgeBase();
   }
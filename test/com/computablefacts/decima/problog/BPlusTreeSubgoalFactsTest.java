@@ -5,11 +5,15 @@ import static com.computablefacts.decima.problog.Parser.parseClause;
 
 import com.computablefacts.asterix.RandomString;
 import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multiset;
 import com.google.common.collect.Sets;
+import java.io.File;
 import java.math.BigDecimal;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Assert;
 import org.junit.Test;
@@ -44,10 +48,13 @@ public class BPlusTreeSubgoalFactsTest {
     // s1(1)?
     AtomicInteger id = new AtomicInteger(0);
     String tblName = "solver_subgoals_" + new RandomString().nextString();
-    Solver solver = new Solver(kb, literal -> new Subgoal(literal,
-        new BPlusTreeSubgoalFacts(System.getProperty("java.io.tmpdir"), tblName, id.getAndIncrement()), true));
     Literal query = new Literal("s1", newConst(1));
-    List<Clause> proofs = Lists.newArrayList(solver.proofs(query));
+    List<Clause> proofs;
+
+    try (Solver solver = new Solver(kb, literal -> new Subgoal(literal,
+        new BPlusTreeSubgoalFacts(System.getProperty("java.io.tmpdir"), tblName, id.getAndIncrement()), true))) {
+      proofs = Lists.newArrayList(solver.proofs(query));
+    }
 
     // Verify BDD answer
     // 0.734375::s1(1).
@@ -86,11 +93,14 @@ public class BPlusTreeSubgoalFactsTest {
     Multiset<Literal> facts = HashMultiset.create();
     AtomicInteger id = new AtomicInteger(0);
     String tblName = "solver_subgoals_" + new RandomString().nextString();
-    Solver solver = new Solver(kb, literal -> new Subgoal(literal,
-        new BPlusTreeSubgoalFacts(System.getProperty("java.io.tmpdir"), tblName, id.getAndIncrement(), facts::add),
-        true));
     Literal query = new Literal("s2", newConst(1));
-    List<Clause> proofs = Lists.newArrayList(solver.proofs(query));
+    List<Clause> proofs;
+
+    try (Solver solver = new Solver(kb, literal -> new Subgoal(literal,
+        new BPlusTreeSubgoalFacts(System.getProperty("java.io.tmpdir"), tblName, id.getAndIncrement(), facts::add),
+        true))) {
+      proofs = Lists.newArrayList(solver.proofs(query));
+    }
 
     // Verify subgoals' facts
     Assert.assertEquals(10, facts.size());
@@ -113,4 +123,160 @@ public class BPlusTreeSubgoalFactsTest {
 
     Assert.assertEquals(0, BigDecimal.valueOf(0.734375).compareTo(probability));
   }
+
+  @Test
+  public void testFactsRoundTrip() {
+
+    String tblName = "solver_subgoals_" + new RandomString().nextString();
+    Clause fact1 = parseClause("f(1, \"a b\").");
+    Clause fact2 = parseClause("0.5::f(2, \"a b\").");
+    Clause fact3 = new Clause(new Literal(new BigDecimal("0.123456789012345678901234567890"), "~g", newConst(3)));
+
+    try (BPlusTreeSubgoalFacts facts = new BPlusTreeSubgoalFacts(System.getProperty("java.io.tmpdir"), tblName, 0)) {
+
+      facts.add(fact1);
+      facts.add(fact2);
+      facts.add(fact3);
+
+      Assert.assertEquals(3, facts.size());
+      Assert.assertTrue(facts.contains(fact1));
+      Assert.assertTrue(facts.contains(fact2));
+      Assert.assertTrue(facts.contains(fact3));
+      Assert.assertFalse(facts.contains(parseClause("0.5::f(1, \"a b\").")));
+      Assert.assertEquals(Sets.newHashSet(fact1, fact2, fact3), Sets.newHashSet(facts.facts()));
+    }
+  }
+
+  @Test
+  public void testFactsRoundTripBeyondTheDictionary() {
+
+    // Past the first 1024 distinct constants, the constants are written inline
+    String tblName = "solver_subgoals_" + new RandomString().nextString();
+    Set<Clause> expected = new HashSet<>();
+
+    for (int i = 0; i < 5000; i++) {
+      expected.add(new Clause(new Literal("f", newConst("a"), newConst("b" + i), newConst(i))));
+    }
+
+    try (BPlusTreeSubgoalFacts facts = new BPlusTreeSubgoalFacts(System.getProperty("java.io.tmpdir"), tblName, 0)) {
+
+      expected.forEach(facts::add);
+
+      Assert.assertEquals(5000, facts.size());
+      Assert.assertTrue(facts.contains(new Clause(new Literal("f", newConst("a"), newConst("b4999"), newConst(4999)))));
+      Assert.assertEquals(expected, Sets.newHashSet(facts.facts()));
+    }
+  }
+
+  @Test(timeout = 60 * 1000)
+  public void testContains() {
+
+    // The filter starts with room for 16 facts and grows
+    int nbFacts = 10000;
+    String tblName = "solver_subgoals_" + new RandomString().nextString();
+    BPlusTreeSubgoalFacts facts = new BPlusTreeSubgoalFacts(System.getProperty("java.io.tmpdir"), tblName, 0, null,
+        0.01, 16);
+
+    for (int i = 0; i < nbFacts; i++) {
+      facts.add(new Clause(new Literal("f", newConst(i))));
+    }
+
+    for (int i = 0; i < 2 * nbFacts; i++) {
+      Assert.assertEquals(i < nbFacts, facts.contains(new Clause(new Literal("f", newConst(i)))));
+    }
+
+    facts.close();
+  }
+
+  @Test
+  public void testCloseSolverReleasesTables() {
+
+    // Create kb
+    InMemoryKnowledgeBase kb = new InMemoryKnowledgeBase();
+
+    // Init kb with facts
+    kb.azzert(parseClause("0.5::edge(a, b)."));
+    kb.azzert(parseClause("0.5::edge(b, c)."));
+
+    // Init kb with rules
+    kb.azzert(parseClause("path(X, Y) :- edge(X, Y)."));
+    kb.azzert(parseClause("path(X, Y) :- path(X, Z), edge(Z, Y)."));
+
+    // Query kb
+    // path(a, c)?
+    AtomicInteger id = new AtomicInteger(0);
+    String tmpDir = System.getProperty("java.io.tmpdir");
+    String tblName = "solver_subgoals_" + new RandomString().nextString();
+    Literal query = new Literal("path", newConst("a"), newConst("c"));
+
+    try (Solver solver = new Solver(kb,
+        literal -> new Subgoal(literal, new BPlusTreeSubgoalFacts(tmpDir, tblName, id.getAndIncrement()), true))) {
+
+      Assert.assertEquals(1, Iterators.size(solver.solve(query)));
+      Assert.assertTrue(id.get() > 0);
+
+      for (int i = 0; i < id.get(); i++) {
+        Assert.assertTrue(new File(tmpDir, tblName + "_" + i).exists());
+      }
+    }
+
+    for (int i = 0; i < id.get(); i++) {
+      Assert.assertFalse(new File(tmpDir, tblName + "_" + i).exists());
+    }
+  }
+
+  @Test(timeout = 60 * 1000)
+  public void testNextQueryReleasesTables() throws InterruptedException {
+
+    // Create kb
+    InMemoryKnowledgeBase kb = new InMemoryKnowledgeBase();
+
+    // Init kb with facts
+    kb.azzert(parseClause("0.5::edge(a, b)."));
+    kb.azzert(parseClause("0.5::edge(b, c)."));
+
+    // Init kb with rules
+    kb.azzert(parseClause("path(X, Y) :- edge(X, Y)."));
+    kb.azzert(parseClause("path(X, Y) :- path(X, Z), edge(Z, Y)."));
+
+    // Query kb
+    // path(a, c)?
+    AtomicInteger id = new AtomicInteger(0);
+    String tmpDir = System.getProperty("java.io.tmpdir");
+    String tblName = "solver_subgoals_" + new RandomString().nextString();
+    Literal query = new Literal("path", newConst("a"), newConst("c"));
+
+    try (Solver solver = new Solver(kb,
+        literal -> new Subgoal(literal, new BPlusTreeSubgoalFacts(tmpDir, tblName, id.getAndIncrement()), true))) {
+
+      Assert.assertEquals(1, Iterators.size(solver.solve(query)));
+
+      int nbTables = id.get();
+
+      Assert.assertTrue(nbTables > 0);
+      Assert.assertTrue(new File(tmpDir, tblName + "_0").exists());
+
+      // The tables of the first query are released when the second query starts
+      Assert.assertEquals(1, Iterators.size(solver.solve(query)));
+
+      for (int i = 0; i < nbTables; i++) {
+        Assert.assertFalse(new File(tmpDir, tblName + "_" + i).exists());
+      }
+
+      // The tables of a lazy query are released when the search ends
+      AnswerStream answers = solver.lazySolve(query);
+
+      Assert.assertEquals(1, Iterators.size(answers));
+
+      while (answers.stopReason() == null) {
+        Thread.sleep(10);
+      }
+
+      Assert.assertEquals(0, solver.nbSubgoals());
+
+      for (int i = 0; i < id.get(); i++) {
+        Assert.assertFalse(new File(tmpDir, tblName + "_" + i).exists());
+      }
+    }
+  }
 }
@@ -0,0 +1,204 @@
+package com.computablefacts.decima.problog;
+
+import static com.computablefacts.decima.problog.AbstractTerm.newConst;
+import static com.computablefacts.decima.problog.AbstractTerm.newVar;
+import static com.computablefacts.decima.problog.Parser.parseClause;
+
+import com.google.common.collect.Sets;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ColumnarKnowledgeBaseTest {
+
+  @Test
+  public void testFactsAndRules() {
+
+    InMemoryKnowledgeBase kb = new InMemoryKnowledgeBase();
+    ColumnarKnowledgeBase ckb = new ColumnarKnowledgeBase();
+
+    graph(kb);
+    graph(ckb);
+
+    Assert.assertEquals(10, ckb.nbFacts());
+    Assert.assertEquals(kb.nbRules(), ckb.nbRules());
+    Assert.assertEquals(Sets.newHashSet(kb.facts()), Sets.newHashSet(ckb.facts()));
+    Assert.assertEquals(Sets.newHashSet(kb.rules()), Sets.newHashSet(ckb.rules()));
+  }
+
+  @Test
+  public void testDuplicateFacts() {
+
+    ColumnarKnowledgeBase ckb = new ColumnarKnowledgeBase();
+    graph(ckb);
+    graph(ckb);
+
+    ckb.azzert(parseClause("0.9::edge(a, b)."));
+
+    Assert.assertEquals(11, ckb.nbFacts());
+
+    for (int i = 0; i < 1000; i++) {
+      ckb.azzert(new Clause(new Literal("node", newConst(i))));
+      ckb.azzert(new Clause(new Literal("node", newConst(i))));
+    }
+
+    Assert.assertEquals(1011, ckb.nbFacts());
+    Assert.assertEquals(1, Sets.newHashSet(ckb.facts(new Literal("node", newConst(999)))).size());
+  }
+
+  @Test
+  public void testFactsLookup() {
+
+    InMemoryKnowledgeBase kb = new InMemoryKnowledgeBase();
+    ColumnarKnowledgeBase ckb = new ColumnarKnowledgeBase();
+
+    graph(kb);
+    graph(ckb);
+
+    Literal literal1 = new Literal("edge", newConst("d"), newVar());
+    Literal literal2 = new Literal("edge", newVar(), newConst("h"));
+    Literal literal3 = new Literal("edge", newConst("d"), newConst("g"));
+    Literal literal4 = new Literal("edge", newConst("z"), newVar());
+    Literal literal5 = new Literal("edge", newVar(), newVar());
+
+    Assert.assertEquals(Sets.newHashSet(kb.facts(literal1)), Sets.newHashSet(ckb.facts(literal1)));
+    Assert.assertEquals(Sets.newHashSet(kb.facts(literal2)), Sets.newHashSet(ckb.facts(literal2)));
+    Assert.assertEquals(Sets.newHashSet(kb.facts(literal3)), Sets.newHashSet(ckb.facts(literal3)));
+    Assert.assertEquals(Sets.newHashSet(kb.facts(literal4)), Sets.newHashSet(ckb.facts(literal4)));
+    Assert.assertEquals(Sets.newHashSet(kb.facts(literal5)), Sets.newHashSet(ckb.facts(literal5)));
+
+    Assert.assertEquals(2, Sets.newHashSet(ckb.facts(literal1)).size());
+    Assert.assertEquals(1, Sets.newHashSet(ckb.facts(literal3)).size());
+    Assert.assertEquals(0, Sets.newHashSet(ckb.facts(literal4)).size());
+  }
+
+  @Test
+  public void testFactsLookupUsesTheMostSelectiveArgument() {
+
+    ColumnarKnowledgeBase ckb = new ColumnarKnowledgeBase();
+
+    for (int i = 0; i < 1000; i++) {
+      ckb.azzert(new Clause(new Literal("edge", newConst("hub"), newConst("n" + i))));
+      ckb.azzert(new Clause(new Literal("edge", newConst("n" + i), newConst("hub"))));
+    }
+
+    Assert.assertEquals(1000, Sets.newHashSet(ckb.facts(new Literal("edge", newConst("hub"), newVar()))).size());
+    Assert.assertEquals(1000, Sets.newHashSet(ckb.facts(new Literal("edge", newVar(), newConst("hub")))).size());
+    Assert.assertEquals(1,
+        Sets.newHashSet(ckb.facts(new Literal("edge", newConst("hub"), newConst("n999")))).size());
+    Assert.assertEquals(0,
+        Sets.newHashSet(ckb.facts(new Literal("edge", newConst("n1"), newConst("n2")))).size());
+  }
+
+  @Test
+  public void testConcurrentReadsAndWrites() throws Exception {
+
+    ColumnarKnowledgeBase ckb = new ColumnarKnowledgeBase();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    try {
+
+      Future<?> writer = executor.submit(() -> {
+        for (int i = 0; i < 10000; i++) {
+          ckb.azzert(new Clause(new Literal("node", newConst("n" + i), newConst(i % 10))));
+        }
+      });
+
+      List<Future<?>> readers = new ArrayList<>();
+
+      for (int k = 0; k < 3; k++) {
+        readers.add(executor.submit(() -> {
+          while (!writer.isDone()) {
+            ckb.facts(new Literal("node", newVar(), newConst(7))).forEachRemaining(fact -> Assert.assertEquals(
+                7, Integer.parseInt(fact.head().terms().get(1).toString())));
+          }
+        }));
+      }
+
+      writer.get();
+
+      for (Future<?> reader : readers) {
+        reader.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    Assert.assertEquals(10000, ckb.nbFacts());
+    Assert.assertEquals(1000, Sets.newHashSet(ckb.facts(new Literal("node", newVar(), newConst(7)))).size());
+  }
+
+  @Test
+  public void testMemoryFootprint() {
+
+    ColumnarKnowledgeBase ckb = new ColumnarKnowledgeBase();
+    graph(ckb);
+
+    Map<String, Long> footprint = ckb.memoryFootprint();
+
+    Assert.assertEquals(1, footprint.size());
+    Assert.assertTrue(footprint.get("edge/2") > 0);
+  }
+
+  @Test
+  public void testMemoryFootprintOfDistinctValues() {
+
+    ColumnarKnowledgeBase ckb = new ColumnarKnowledgeBase();
+
+    for (int i = 0; i < 100000; i++) {
+      ckb.azzert(new Clause(new Literal("edge", newConst("n" + i), newConst("m" + i))));
+    }
+
+    // Each fact has two distinct values : the index must not cost much more than the columns themselves
+    long footprint = ckb.memoryFootprint().get("edge/2");
+
+    Assert.assertTrue(footprint > 100000L * 3 * Integer.BYTES);
+    Assert.assertTrue(footprint < 100000L * 32 * Integer.BYTES);
+  }
+
+  @Test
+  public void testSolve() {
+
+    ColumnarKnowledgeBase ckb = new ColumnarKnowledgeBase();
+    graph(ckb);
+
+    // Query kb
+    // path(b, f)?
+    Solver solver = new Solver(ckb, true);
+    Literal query = new Literal("path", newConst("b"), newConst("f"));
+    Set<Clause> proofs = solver.proofs(query);
+
+    // Verify BDD answer
+    // 0.316::path(b, f).
+    ProbabilityEstimator estimator = new ProbabilityEstimator(proofs);
+    BigDecimal probability = estimator.probability(query, 3);
+
+    Assert.assertEquals(0, BigDecimal.valueOf(0.316).compareTo(probability));
+  }
+
+  private static void graph(AbstractKnowledgeBase kb) {
+
+    // Init kb with facts
+    kb.azzert(parseClause("0.4::edge(a, b)."));
+    kb.azzert(parseClause("0.55::edge(a, c)."));
+    kb.azzert(parseClause("0.8::edge(b, e)."));
+    kb.azzert(parseClause("0.2::edge(b, d)."));
+    kb.azzert(parseClause("0.4::edge(c, d)."));
+    kb.azzert(parseClause("0.3::edge(e, f)."));
+    kb.azzert(parseClause("0.5::edge(d, f)."));
+    kb.azzert(parseClause("0.6::edge(d, g)."));
+    kb.azzert(parseClause("0.7::edge(f, h)."));
+    kb.azzert(parseClause("0.7::edge(g, h)."));
+
+    // Init kb with rules
+    kb.azzert(parseClause("path(X, Y) :- edge(X, Y)."));
+    kb.azzert(parseClause("path(X, Y) :- path(X, Z), edge(Z, Y)."));
+  }
+}
@@ -0,0 +1,49 @@
+package com.computablefacts.decima.problog;
+
+import static com.computablefacts.decima.problog.Parser.parseClause;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FactFingerprintsTest {
+
+  @Test
+  public void testAdd() {
+
+    FactFingerprints fingerprints = new FactFingerprints();
+
+    Assert.assertTrue(fingerprints.add(parseClause("edge(a, b).")));
+    Assert.assertTrue(fingerprints.add(parseClause("0.5::edge(a, b).")));
+    Assert.assertFalse(fingerprints.add(parseClause("edge(a, b).")));
+    Assert.assertEquals(2, fingerprints.size());
+  }
+
+  @Test
+  public void testGrow() {
+
+    FactFingerprints fingerprints = new FactFingerprints();
+
+    Assert.assertEquals(16, fingerprints.capacity());
+
+    for (int i = 1; i <= 100000; i++) {
+      Assert.assertTrue(fingerprints.add(i));
+    }
+    for (int i = 1; i <= 100000; i++) {
+      Assert.assertFalse(fingerprints.add(i));
+    }
+
+    Assert.assertEquals(100000, fingerprints.size());
+    Assert.assertEquals(262144, fingerprints.capacity());
+  }
+
+  @Test
+  public void testNegativeFingerprints() {
+
+    FactFingerprints fingerprints = new FactFingerprints();
+
+    Assert.assertTrue(fingerprints.add(Integer.MIN_VALUE));
+    Assert.assertTrue(fingerprints.add(-1));
+    Assert.assertFalse(fingerprints.add(Integer.MIN_VALUE));
+    Assert.assertFalse(fingerprints.add(-1));
+  }
+}
@@ -0,0 +1,165 @@
+package com.computablefacts.decima.problog;
+
+import static com.computablefacts.decima.problog.AbstractTerm.newConst;
+import static com.computablefacts.decima.problog.Parser.parseClause;
+
+import com.computablefacts.asterix.RandomString;
+import com.google.common.collect.Sets;
+import java.math.BigDecimal;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HybridSubgoalFactsTest {
+
+  @Test
+  public void testSpillWhenThresholdIsReached() {
+
+    HybridSubgoalFacts facts = new HybridSubgoalFacts(InMemorySubgoalFacts::new, 2);
+
+    facts.add(parseClause("f(1)."));
+    facts.add(parseClause("f(2)."));
+
+    Assert.assertFalse(facts.isSpilled());
+
+    Iterator<Clause> iterator = facts.facts();
+    facts.add(parseClause("f(3)."));
+
+    Assert.assertTrue(facts.isSpilled());
+    Assert.assertEquals(3, facts.size());
+    Assert.assertTrue(facts.contains(parseClause("f(1).")));
+    Assert.assertTrue(facts.contains(parseClause("f(3).")));
+    Assert.assertTrue(
+        Sets.newHashSet(iterator).containsAll(Sets.newHashSet(parseClause("f(1)."), parseClause("f(2)."))));
+    Assert.assertEquals(Sets.newHashSet(parseClause("f(1)."), parseClause("f(2)."), parseClause("f(3).")),
+        Sets.newHashSet(facts.facts()));
+  }
+
+  @Test
+  public void testSpillLargestStoreWhenBudgetIsExhausted() {
+
+    SubgoalFactsBudget budget = new SubgoalFactsBudget(3);
+    HybridSubgoalFacts small = new HybridSubgoalFacts(InMemorySubgoalFacts::new, 10, budget);
+    HybridSubgoalFacts large = new HybridSubgoalFacts(InMemorySubgoalFacts::new, 10, budget);
+
+    small.add(parseClause("f(1)."));
+    large.add(parseClause("g(1)."));
+    large.add(parseClause("g(2)."));
+
+    Assert.assertEquals(3, budget.nbFactsInMemory());
+    Assert.assertFalse(small.isSpilled());
+    Assert.assertFalse(large.isSpilled());
+
+    large.add(parseClause("g(3)."));
+
+    Assert.assertEquals(1, budget.nbFactsInMemory());
+    Assert.assertEquals(1, budget.nbSpills());
+    Assert.assertFalse(small.isSpilled());
+    Assert.assertTrue(large.isSpilled());
+    Assert.assertEquals(3, large.size());
+  }
+
+  @Test
+  public void testCloseReleasesBudget() {
+
+    SubgoalFactsBudget budget = new SubgoalFactsBudget(3);
+    HybridSubgoalFacts closed = new HybridSubgoalFacts(InMemorySubgoalFacts::new, 10, budget);
+    HybridSubgoalFacts live = new HybridSubgoalFacts(InMemorySubgoalFacts::new, 10, budget);
+
+    closed.add(parseClause("f(1)."));
+    closed.add(parseClause("f(2)."));
+    closed.add(parseClause("f(3)."));
+    closed.close();
+
+    Assert.assertEquals(0, budget.nbFactsInMemory());
+
+    live.add(parseClause("g(1)."));
+    live.add(parseClause("g(2)."));
+    live.add(parseClause("g(3)."));
+
+    Assert.assertEquals(3, budget.nbFactsInMemory());
+    Assert.assertEquals(0, budget.nbSpills());
+    Assert.assertFalse(live.isSpilled());
+
+    closed.close();
+
+    Assert.assertEquals(3, budget.nbFactsInMemory());
+  }
+
+  @Test
+  public void testConcurrentAddsWithinBudget() throws InterruptedException {
+
+    SubgoalFactsBudget budget = new SubgoalFactsBudget(100);
+    HybridSubgoalFacts[] stores = new HybridSubgoalFacts[4];
+    Thread[] threads = new Thread[stores.length];
+
+    for (int i = 0; i < stores.length; i++) {
+
+      HybridSubgoalFacts store = new HybridSubgoalFacts(InMemorySubgoalFacts::new, 1000, budget);
+      int id = i;
+
+      stores[i] = store;
+      threads[i] = new Thread(() -> {
+        for (int j = 0; j < 1000; j++) {
+          store.add(parseClause("f(" + id + ", " + j + ")."));
+        }
+      });
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    for (HybridSubgoalFacts store : stores) {
+      Assert.assertEquals(1000, store.size());
+    }
+
+    Assert.assertTrue(budget.nbFactsInMemory() <= 100);
+  }
+
+  /**
+   * See https://github.com/ML-KULeuven/problog/blob/master/test/swap.pl
+   */
+  @Test
+  public void testLiteralsSwapping() {
+
+    // Create kb
+    InMemoryKnowledgeBase kb = new InMemoryKnowledgeBase();
+
+    // Init kb with facts
+    kb.azzert(parseClause("0.5::f(1,2)."));
+    kb.azzert(parseClause("0.5::f(2,1)."));
+    kb.azzert(parseClause("0.5::f(1,3)."));
+    kb.azzert(parseClause("0.5::f(2,3)."));
+    kb.azzert(parseClause("0.5::b(1)."));
+    kb.azzert(parseClause("0.5::b(2)."));
+    kb.azzert(parseClause("0.5::b(3)."));
+
+    // Init kb with rules
+    kb.azzert(parseClause("s1(X) :- b(X)."));
+    kb.azzert(parseClause("s1(X) :- f(X,Y),s1(Y)."));
+
+    // Query kb
+    // s1(1)?
+    AtomicInteger id = new AtomicInteger(0);
+    String tblName = "solver_subgoals_" + new RandomString().nextString();
+    SubgoalFactsBudget budget = new SubgoalFactsBudget(4);
+    Literal query = new Literal("s1", newConst(1));
+    Set<Clause> proofs;
+
+    try (Solver solver = new Solver(kb, literal -> new Subgoal(literal, new HybridSubgoalFacts(
+        () -> new BPlusTreeSubgoalFacts(System.getProperty("java.io.tmpdir"), tblName, id.getAndIncrement()), 2,
+        budget), true))) {
+      proofs = solver.proofs(query);
+    }
+
+    // Verify BDD answer
+    // 0.734375::s1(1).
+    ProbabilityEstimator estimator = new ProbabilityEstimator(proofs);
+    BigDecimal probability = estimator.probability(query, 6);
+
+    Assert.assertEquals(0, BigDecimal.valueOf(0.734375).compareTo(probability));
+    Assert.assertTrue(id.get() > 0);
+  }
+}
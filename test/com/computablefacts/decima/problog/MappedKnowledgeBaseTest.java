@@ -0,0 +1,131 @@
+package com.computablefacts.decima.problog;
+
+import static com.computablefacts.decima.problog.AbstractTerm.newConst;
+import static com.computablefacts.decima.problog.AbstractTerm.newVar;
+import static com.computablefacts.decima.problog.Parser.parseClause;
+
+import com.google.common.collect.Sets;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MappedKnowledgeBaseTest {
+
+  @Test
+  public void testCompileAndLoad() throws IOException {
+
+    InMemoryKnowledgeBase kb = graph();
+    MappedKnowledgeBase mkb = compileAndLoad(kb);
+
+    Assert.assertEquals(kb.nbFacts(), mkb.nbFacts());
+    Assert.assertEquals(kb.nbRules(), mkb.nbRules());
+    Assert.assertEquals(Sets.newHashSet(kb.facts()), Sets.newHashSet(mkb.facts()));
+    Assert.assertEquals(Sets.newHashSet(kb.rules()), Sets.newHashSet(mkb.rules()));
+  }
+
+  @Test
+  public void testFactsLookup() throws IOException {
+
+    InMemoryKnowledgeBase kb = graph();
+    MappedKnowledgeBase mkb = compileAndLoad(kb);
+
+    Literal literal1 = new Literal("edge", newConst("d"), newVar());
+    Literal literal2 = new Literal("edge", newVar(), newConst("h"));
+    Literal literal3 = new Literal("edge", newConst("d"), newConst("g"));
+    Literal literal4 = new Literal("edge", newConst("z"), newVar());
+    Literal literal5 = new Literal("edge", newVar(), newVar());
+
+    Assert.assertEquals(Sets.newHashSet(kb.facts(literal1)), Sets.newHashSet(mkb.facts(literal1)));
+    Assert.assertEquals(Sets.newHashSet(kb.facts(literal2)), Sets.newHashSet(mkb.facts(literal2)));
+    Assert.assertEquals(Sets.newHashSet(kb.facts(literal3)), Sets.newHashSet(mkb.facts(literal3)));
+    Assert.assertEquals(Sets.newHashSet(kb.facts(literal4)), Sets.newHashSet(mkb.facts(literal4)));
+    Assert.assertEquals(Sets.newHashSet(kb.facts(literal5)), Sets.newHashSet(mkb.facts(literal5)));
+
+    Assert.assertEquals(2, Sets.newHashSet(mkb.facts(literal1)).size());
+    Assert.assertEquals(2, Sets.newHashSet(mkb.facts(literal2)).size());
+    Assert.assertEquals(1, Sets.newHashSet(mkb.facts(literal3)).size());
+    Assert.assertEquals(0, Sets.newHashSet(mkb.facts(literal4)).size());
+    Assert.assertEquals(10, Sets.newHashSet(mkb.facts(literal5)).size());
+  }
+
+  @Test
+  public void testAssertAfterLoad() throws IOException {
+
+    MappedKnowledgeBase mkb = compileAndLoad(graph());
+    mkb.azzert(parseClause("0.1::edge(d, z)."));
+
+    Assert.assertEquals(11, mkb.nbFacts());
+    Assert.assertEquals(3, Sets.newHashSet(mkb.facts(new Literal("edge", newConst("d"), newVar()))).size());
+  }
+
+  @Test
+  public void testSolve() throws IOException {
+
+    MappedKnowledgeBase mkb = compileAndLoad(graph());
+
+    // Query kb
+    // path(b, f)?
+    Solver solver = new Solver(mkb, true);
+    Literal query = new Literal("path", newConst("b"), newConst("f"));
+    Set<Clause> proofs = solver.proofs(query);
+
+    // Verify BDD answer
+    // 0.316::path(b, f).
+    ProbabilityEstimator estimator = new ProbabilityEstimator(proofs);
+    BigDecimal probability = estimator.probability(query, 3);
+
+    Assert.assertEquals(0, BigDecimal.valueOf(0.316).compareTo(probability));
+  }
+
+  private static InMemoryKnowledgeBase graph() {
+
+    // Create kb
+    InMemoryKnowledgeBase kb = new InMemoryKnowledgeBase();
+
+    // Init kb with facts
+    kb.azzert(parseClause("0.4::edge(a, b)."));
+    kb.azzert(parseClause("0.55::edge(a, c)."));
+    kb.azzert(parseClause("0.8::edge(b, e)."));
+    kb.azzert(parseClause("0.2::edge(b, d)."));
+    kb.azzert(parseClause("0.4::edge(c, d)."));
+    kb.azzert(parseClause("0.3::edge(e, f)."));
+    kb.azzert(parseClause("0.5::edge(d, f)."));
+    kb.azzert(parseClause("0.6::edge(d, g)."));
+    kb.azzert(parseClause("0.7::edge(f, h)."));
+    kb.azzert(parseClause("0.7::edge(g, h)."));
+
+    // Init kb with rules
+    kb.azzert(parseClause("path(X, Y) :- edge(X, Y)."));
+    kb.azzert(parseClause("path(X, Y) :- path(X, Z), edge(Z, Y)."));
+
+    return kb;
+  }
+
+  @Test
+  public void testSignature() throws IOException {
+
+    File file = File.createTempFile("kb-", ".dkb");
+    file.deleteOnExit();
+
+    Assert.assertNull(MappedKnowledgeBase.signature(file));
+    Assert.assertTrue(MappedKnowledgeBase.compile(graph(), file, 42L));
+    Assert.assertEquals(Long.valueOf(42L), MappedKnowledgeBase.signature(file));
+    Assert.assertFalse(new File(file.getPath() + ".tmp").exists());
+  }
+
+  private static MappedKnowledgeBase compileAndLoad(AbstractKnowledgeBase kb) throws IOException {
+
+    File file = File.createTempFile("kb-", ".dkb");
+    file.deleteOnExit();
+
+    Assert.assertTrue(MappedKnowledgeBase.compile(kb, file));
+
+    MappedKnowledgeBase mkb = MappedKnowledgeBase.load(file);
+
+    Assert.assertNotNull(mkb);
+    return mkb;
+  }
+}
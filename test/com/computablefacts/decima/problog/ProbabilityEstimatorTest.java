@@ -8,6 +8,7 @@ import static com.computablefacts.decima.problog.TestUtils.checkAnswers;
 import static com.computablefacts.decima.problog.TestUtils.checkProofs;
 
 import com.computablefacts.asterix.trie.Trie;
+import com.computablefacts.decima.robdd.Pair;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import java.math.BigDecimal;
@@ -102,6 +103,87 @@ public class ProbabilityEstimatorTest {
     Assert.assertEquals(0, BigDecimal.valueOf(0.734375).compareTo(probability));
   }
 
+  /**
+   * See https://github.com/ML-KULeuven/problog/blob/master/test/swap.pl
+   */
+  @Test
+  public void testBoundedProbabilityConvergesToExactProbability() {
+
+    // Create kb
+    InMemoryKnowledgeBase kb = new InMemoryKnowledgeBase();
+
+    // Init kb with facts
+    kb.azzert(parseClause("0.5::f(1,2)."));
+    kb.azzert(parseClause("0.5::f(2,1)."));
+    kb.azzert(parseClause("0.5::f(1,3)."));
+    kb.azzert(parseClause("0.5::f(2,3)."));
+    kb.azzert(parseClause("0.5::b(1)."));
+    kb.azzert(parseClause("0.5::b(2)."));
+    kb.azzert(parseClause("0.5::b(3)."));
+
+    // Init kb with rules
+    kb.azzert(parseClause("s1(X) :- b(X)."));
+    kb.azzert(parseClause("s1(X) :- f(X,Y),s1(Y)."));
+
+    // Query kb
+    // s1(1)?
+    Solver solver = new Solver(kb, true);
+    Literal query = new Literal("s1", newConst(1));
+    ProbabilityEstimator estimator = new ProbabilityEstimator(solver.proofs(query).iterator());
+
+    // Verify BDD answer
+    // 0.734375::s1(1).
+    Map<Clause, Pair<BigDecimal, BigDecimal>> probabilities = estimator.probabilities(1, BigDecimal.ZERO, -1, 6);
+    Pair<BigDecimal, BigDecimal> bounds = probabilities.get(new Clause(query));
+
+    Assert.assertEquals(1, probabilities.size());
+    Assert.assertEquals(0, BigDecimal.valueOf(0.734375).compareTo(bounds.t));
+    Assert.assertEquals(0, BigDecimal.valueOf(0.734375).compareTo(bounds.u));
+  }
+
+  /**
+   * See https://github.com/ML-KULeuven/problog/blob/master/test/swap.pl
+   */
+  @Test
+  public void testBoundedProbabilityStopsEarly() {
+
+    // Create kb
+    InMemoryKnowledgeBase kb = new InMemoryKnowledgeBase();
+
+    // Init kb with facts
+    kb.azzert(parseClause("0.5::f(1,2)."));
+    kb.azzert(parseClause("0.5::f(2,1)."));
+    kb.azzert(parseClause("0.5::f(1,3)."));
+    kb.azzert(parseClause("0.5::f(2,3)."));
+    kb.azzert(parseClause("0.5::b(1)."));
+    kb.azzert(parseClause("0.5::b(2)."));
+    kb.azzert(parseClause("0.5::b(3)."));
+
+    // Init kb with rules
+    kb.azzert(parseClause("s1(X) :- b(X)."));
+    kb.azzert(parseClause("s1(X) :- f(X,Y),s1(Y)."));
+
+    // Query kb
+    // s1(1)?
+    Solver solver = new Solver(kb, true);
+    Literal query = new Literal("s1", newConst(1));
+    ProbabilityEstimator estimator = new ProbabilityEstimator(solver.proofs(query));
+
+    // Verify BDD answer
+    // 0.734375::s1(1).
+    Pair<BigDecimal, BigDecimal> bounds1 = estimator.probabilities(1, BigDecimal.ONE, -1, 6).get(new Clause(query));
+
+    Assert.assertEquals(0, BigDecimal.valueOf(0.5).compareTo(bounds1.t)); // b(1)
+    Assert.assertEquals(0, BigDecimal.ONE.compareTo(bounds1.u));
+
+    // The deadline has already passed : the first batch is compiled nonetheless
+    Pair<BigDecimal, BigDecimal> bounds2 = estimator.probabilities(2, BigDecimal.ZERO, 1, 6).get(new Clause(query));
+
+    Assert.assertTrue(bounds2.t.compareTo(BigDecimal.valueOf(0.5)) > 0);
+    Assert.assertTrue(bounds2.t.compareTo(BigDecimal.valueOf(0.734375)) <= 0);
+    Assert.assertTrue(bounds2.u.compareTo(BigDecimal.valueOf(0.734375)) >= 0);
+  }
+
   /**
    * Non-ground query
    * <p>
@@ -0,0 +1,67 @@
+package com.computablefacts.decima.problog;
+
+import com.google.errorprone.annotations.Var;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ScalableBloomFilterTest {
+
+  @Test
+  public void testGrow() {
+
+    ScalableBloomFilter<Long> filter = new ScalableBloomFilter<>(0.01, 16);
+
+    Assert.assertEquals(1, filter.nbFilters());
+
+    for (long i = 0; i < 16; i++) {
+      filter.add(i);
+    }
+
+    Assert.assertEquals(1, filter.nbFilters());
+
+    filter.add(16L);
+
+    Assert.assertEquals(2, filter.nbFilters());
+
+    // 16 + 32 + 64 + ... + 16 * 2^12 >= 100000
+    for (long i = 17; i < 100000; i++) {
+      filter.add(i);
+    }
+
+    Assert.assertEquals(13, filter.nbFilters());
+  }
+
+  @Test
+  public void testNoFalseNegatives() {
+
+    ScalableBloomFilter<Long> filter = new ScalableBloomFilter<>(0.01, 16);
+
+    for (long i = 0; i < 100000; i++) {
+      filter.add(i);
+    }
+    for (long i = 0; i < 100000; i++) {
+      Assert.assertTrue(filter.contains(i));
+    }
+  }
+
+  @Test
+  public void testFalsePositiveProbability() {
+
+    ScalableBloomFilter<Long> filter = new ScalableBloomFilter<>(0.01, 16);
+
+    for (long i = 0; i < 100000; i++) {
+      filter.add(i);
+    }
+
+    @Var int nbFalsePositives = 0;
+
+    for (long i = 100000; i < 200000; i++) {
+      if (filter.contains(i)) {
+        nbFalsePositives++;
+      }
+    }
+
+    // Leave some room for the variance
+    Assert.assertTrue(nbFalsePositives < 2 * 1000);
+  }
+}
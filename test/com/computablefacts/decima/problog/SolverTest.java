@@ -7,9 +7,17 @@ import static com.computablefacts.decima.problog.TestUtils.checkAnswers;
 import static com.computablefacts.decima.problog.TestUtils.checkProofs;
 
 import com.computablefacts.asterix.trie.Trie;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -671,4 +679,430 @@ public class SolverTest {
     Assert.assertTrue(checkAnswers(answers2, Sets.newHashSet(answer)));
     Assert.assertTrue(checkProofs(tries2, Sets.newHashSet(answer)));
   }
+
+  @Test
+  public void testLazyProofs() {
+
+    // Create kb
+    InMemoryKnowledgeBase kb = new InMemoryKnowledgeBase();
+
+    // Init kb with facts
+    kb.azzert(parseClause("0.5::edge(a, b)."));
+    kb.azzert(parseClause("0.5::edge(b, c)."));
+    kb.azzert(parseClause("0.5::edge(a, c)."));
+
+    // Init kb with rules
+    kb.azzert(parseClause("path(X, Y) :- edge(X, Y)."));
+    kb.azzert(parseClause("path(X, Y) :- path(X, Z), edge(Z, Y)."));
+
+    // Query kb
+    // path(a, c)?
+    Literal query = new Literal("path", newConst("a"), newConst("c"));
+    Set<Clause> proofs = new Solver(kb, true).proofs(query);
+    Set<Clause> lazyProofs = Sets.newHashSet(new Solver(kb, true).lazyProofs(query));
+
+    // Verify answers
+    Assert.assertEquals(2, proofs.size());
+    Assert.assertEquals(proofs, lazyProofs);
+  }
+
+  @Test
+  public void testLazyProofsEarlyTermination() {
+
+    // Create kb
+    InMemoryKnowledgeBase kb = new InMemoryKnowledgeBase();
+
+    // Init kb with facts
+    kb.azzert(parseClause("0.5::edge(a, b)."));
+    kb.azzert(parseClause("0.5::edge(b, c)."));
+    kb.azzert(parseClause("0.5::edge(a, c)."));
+
+    // Init kb with rules
+    kb.azzert(parseClause("path(X, Y) :- edge(X, Y)."));
+    kb.azzert(parseClause("path(X, Y) :- path(X, Z), edge(Z, Y)."));
+
+    // Query kb
+    // path(a, c)?
+    Literal query = new Literal("path", newConst("a"), newConst("c"));
+
+    Assert.assertEquals(1, Iterators.size(new Solver(kb, true).lazyProofs(query, 1, null)));
+    Assert.assertEquals(2, Iterators.size(new Solver(kb, true).lazyProofs(query, 5, null)));
+    Assert.assertEquals(1, Iterators.size(new Solver(kb, true).lazyProofs(query, -1, new BigDecimal("0.25"))));
+    Assert.assertEquals(2, Iterators.size(new Solver(kb, true).lazyProofs(query, -1, BigDecimal.ONE)));
+
+    // Duplicate proofs are not counted twice
+    List<Clause> proofs = Lists.newArrayList(new Solver(kb, true).lazyProofs(query, -1, BigDecimal.TEN));
+
+    Assert.assertEquals(Sets.newHashSet(proofs).size(), proofs.size());
+  }
+
+  @Test
+  public void testLazyProofsAreReturnedOnce() {
+
+    // Create kb
+    InMemoryKnowledgeBase kb = new InMemoryKnowledgeBase();
+
+    // Init kb with facts
+    kb.azzert(parseClause("0.5::edge(a, b)."));
+    kb.azzert(parseClause("0.5::edge(b, c)."));
+    kb.azzert(parseClause("0.5::edge(a, c)."));
+
+    // Init kb with rules : both recursive rules unfold to path(a, c) :- edge(a, b), edge(b, c)
+    kb.azzert(parseClause("path(X, Y) :- edge(X, Y)."));
+    kb.azzert(parseClause("path(X, Y) :- path(X, Z), edge(Z, Y)."));
+    kb.azzert(parseClause("path(X, Y) :- edge(X, Z), path(Z, Y)."));
+
+    // Query kb
+    // path(a, c)?
+    Literal query = new Literal("path", newConst("a"), newConst("c"));
+
+    Assert.assertEquals(2, Iterators.size(new Solver(kb, true).lazyProofs(query)));
+    Assert.assertEquals(2, Iterators.size(new Solver(kb, true).lazyProofs(query, 3, null)));
+    Assert.assertEquals(2, Iterators.size(new Solver(kb, true).lazyProofs(query, 3, BigDecimal.TEN)));
+  }
+
+  @Test
+  public void testSolveAllAndProofsAll() {
+
+    InMemoryKnowledgeBase kb = smokers(50);
+    List<Literal> queries = new ArrayList<>();
+
+    for (int i = 0; i < 50; i++) {
+      queries.add(new Literal("smokes", newConst("p" + i)));
+    }
+    queries.add(new Literal("smokes", newVar()));
+
+    // Answer the queries one by one
+    Map<Literal, Set<Clause>> expectedFacts = new HashMap<>();
+    Map<Literal, Set<Clause>> expectedProofs = new HashMap<>();
+
+    for (Literal query : queries) {
+      expectedFacts.put(query, Sets.newHashSet(new Solver(kb, false).solve(query)));
+      if (query.isGrounded()) {
+        expectedProofs.put(query, new Solver(kb, true).proofs(query));
+      }
+    }
+
+    // Answer the queries in a single tabling session
+    Map<Literal, Set<Clause>> facts = new Solver(kb, false).solveAll(queries);
+    Map<Literal, Set<Clause>> proofs = new Solver(kb, true).proofsAll(queries);
+
+    Assert.assertEquals(queries, Lists.newArrayList(facts.keySet()));
+    Assert.assertEquals(expectedFacts, facts);
+    Assert.assertEquals(expectedProofs, Maps.filterKeys(proofs, Literal::isGrounded));
+    Assert.assertEquals(50, facts.get(queries.get(50)).size());
+  }
+
+  @Test
+  public void testSolveAllDoesNotReuseThePartialTablesOfASampledQuery() {
+
+    InMemoryKnowledgeBase kb = chain(10);
+    Literal query = new Literal("path", newConst("n0"), newVar());
+    Solver solver = new Solver(kb, false);
+
+    Assert.assertEquals(2, Iterators.size(solver.solve(query, 2)));
+    Assert.assertEquals(9, solver.solveAll(Lists.newArrayList(query)).get(query).size());
+  }
+
+  @Test
+  public void testStopReasons() {
+
+    InMemoryKnowledgeBase kb = chain(200);
+    Literal query = new Literal("path", newVar(), newVar());
+    int nbPaths = 200 * 199 / 2;
+
+    Solver solver = new Solver(kb, false);
+    Assert.assertEquals(nbPaths, Iterators.size(solver.solve(query)));
+    Assert.assertEquals(StopReason.COMPLETED, solver.stopReason());
+
+    solver = new Solver(kb, false);
+    Assert.assertEquals(10, Iterators.size(solver.solve(query, 10)));
+    Assert.assertEquals(StopReason.MAX_SAMPLE_SIZE, solver.stopReason());
+
+    solver = new Solver(kb, false);
+    Assert.assertTrue(Iterators.size(solver.solve(query, -1, limits(0, 3, 0, 0, null))) < nbPaths);
+    Assert.assertEquals(StopReason.MAX_SUBGOALS, solver.stopReason());
+    Assert.assertEquals(3, solver.nbSubgoals());
+
+    solver = new Solver(kb, false);
+    Assert.assertTrue(Iterators.size(solver.solve(query, -1, limits(0, 0, 100, 0, null))) <= 100);
+    Assert.assertEquals(StopReason.MAX_ANSWERS_PER_SUBGOAL, solver.stopReason());
+
+    CancellationToken token = new CancellationToken();
+    token.cancel();
+
+    solver = new Solver(kb, false);
+    Assert.assertEquals(0, Iterators.size(solver.solve(query, -1, limits(0, 0, 0, 0, token))));
+    Assert.assertEquals(StopReason.CANCELLED, solver.stopReason());
+  }
+
+  @Test
+  public void testDeadlineAndHeapBudget() {
+
+    InMemoryKnowledgeBase kb = chain(400);
+    Literal query = new Literal("path", newVar(), newVar());
+    int nbPaths = 400 * 399 / 2;
+
+    Solver solver = new Solver(kb, true);
+    Assert.assertTrue(solver.proofs(query, limits(1, 0, 0, 0, null)).size() < nbPaths);
+    Assert.assertEquals(StopReason.DEADLINE, solver.stopReason());
+
+    solver = new Solver(kb, false);
+    Assert.assertTrue(Iterators.size(solver.solve(query, -1, limits(0, 0, 0, 1, null))) < nbPaths);
+    Assert.assertEquals(StopReason.HEAP_BUDGET, solver.stopReason());
+
+    // The limits apply to a single query
+    solver.close();
+
+    Assert.assertEquals(nbPaths, Iterators.size(solver.solve(query)));
+    Assert.assertEquals(StopReason.COMPLETED, solver.stopReason());
+  }
+
+  @Test
+  public void testLazySolve() {
+
+    InMemoryKnowledgeBase kb = chain(400);
+    Literal query = new Literal("path", newVar(), newVar());
+
+    Solver solver = new Solver(kb, false);
+    Set<Clause> expected = Sets.newHashSet(solver.solve(query));
+
+    try (AnswerStream answers = new Solver(kb, false).lazySolve(query)) {
+
+      Assert.assertTrue(answers.hasNext());
+      Assert.assertTrue(answers.timeToFirstAnswerMillis() >= 0);
+      Assert.assertEquals(expected, Sets.newHashSet(answers));
+      Assert.assertEquals(StopReason.COMPLETED, answers.stopReason());
+    }
+  }
+
+  @Test
+  public void testUnreachableLazySolveIsCancelled() throws InterruptedException {
+
+    InMemoryKnowledgeBase kb = chain(400);
+    Literal query = new Literal("path", newVar(), newVar());
+    Thread thread = dropLazySolve(new Solver(kb, false), query);
+
+    for (int i = 0; i < 100 && thread.isAlive(); i++) {
+      System.gc();
+      thread.join(50);
+    }
+
+    Assert.assertFalse(thread.isAlive());
+  }
+
+  @Test(expected = StackOverflowError.class)
+  public void testLazySolveRethrowsErrors() {
+
+    InMemoryKnowledgeBase kb = chain(10);
+    Solver solver = new Solver(kb, literal -> {
+      throw new StackOverflowError();
+    });
+
+    try (AnswerStream answers = solver.lazySolve(new Literal("path", newVar(), newVar()))) {
+      boolean hasNext = answers.hasNext();
+    }
+  }
+
+  @Test
+  public void testCloseLazySolve() throws InterruptedException {
+
+    InMemoryKnowledgeBase kb = chain(400);
+    Literal query = new Literal("path", newVar(), newVar());
+    AnswerStream answers = new Solver(kb, false).lazySolve(query);
+
+    Assert.assertEquals(10, Iterators.size(Iterators.limit(answers, 10)));
+
+    answers.close();
+
+    for (int i = 0; i < 100 && answers.stopReason() == null; i++) {
+      Thread.sleep(50);
+    }
+
+    Assert.assertFalse(answers.hasNext());
+    Assert.assertEquals(StopReason.CANCELLED, answers.stopReason());
+  }
+
+  @Test
+  public void testFingerprints() {
+
+    InMemoryKnowledgeBase kb = chain(100);
+    kb.azzert(parseClause("path(X, Y) :- path(X, Z), path(Z, Y)."));
+
+    Solver solver = new Solver(kb, false);
+    Assert.assertEquals(100 * 99 / 2, Iterators.size(solver.solve(new Literal("path", newVar(), newVar()))));
+    Assert.assertTrue(solver.metrics().nbFingerprintHits() > 0);
+    Assert.assertTrue(solver.metrics().nbFingerprintFalsePositives() <= solver.metrics().nbFingerprintHits());
+  }
+
+  @Test
+  @SuppressWarnings("deprecation")
+  public void testBloomFilterSizingIsIgnored() {
+
+    InMemoryKnowledgeBase kb = chain(10);
+    Solver solver = new Solver(kb, literal -> new Subgoal(literal, new InMemorySubgoalFacts(), false), 0.05,
+        10000000);
+
+    Assert.assertEquals(10 * 9 / 2, Iterators.size(solver.solve(new Literal("path", newVar(), newVar()))));
+  }
+
+  @Test
+  public void testMetrics() {
+
+    InMemoryKnowledgeBase kb = chain(10);
+    kb.azzert(parseClause("long_path(X, Y) :- path(X, Y), fn_is_true(true)."));
+
+    Solver solver = new Solver(kb, true);
+    Set<Clause> proofs = solver.proofs(new Literal("long_path", newConst("n0"), newVar()));
+    SolverMetrics metrics = solver.metrics();
+
+    Assert.assertEquals(9, proofs.size());
+    Assert.assertEquals(solver.nbSubgoals(), metrics.nbSubgoals());
+    Assert.assertTrue(metrics.nbFactsScanned() >= metrics.nbFactsUnified());
+    Assert.assertEquals(9, metrics.nbFactsUnified());
+    Assert.assertTrue(metrics.nbRulesScanned() >= metrics.nbRulesUnified());
+    Assert.assertTrue(metrics.nbWaiters() > 0);
+    Assert.assertTrue(metrics.nbGroundCalls() > 0);
+    Assert.assertEquals(metrics.nbGroundCalls(), metrics.nbProofPushes());
+    Assert.assertTrue(metrics.nbPrimitiveExecutions() > 0);
+    Assert.assertTrue(metrics.elapsedNanos() > 0);
+    Assert.assertTrue(metrics.timeToFirstAnswerNanos() > 0);
+    Assert.assertTrue(metrics.timeToFirstAnswerNanos() <= metrics.elapsedNanos());
+
+    List<String> predicates = Lists.transform(metrics.predicates(), m -> m.predicate().id());
+
+    Assert.assertEquals(Sets.newHashSet("long_path/2", "path/2", "edge/2"), Sets.newHashSet(predicates));
+    Assert.assertEquals(metrics.nbSubgoals(),
+        metrics.predicates().stream().mapToLong(PredicateMetrics::nbSearches).sum());
+    Assert.assertEquals(metrics.nbFactsScanned(),
+        metrics.predicates().stream().mapToLong(PredicateMetrics::nbFactsScanned).sum());
+    Assert.assertTrue(metrics.elapsedNanos() >= metrics.predicates().stream()
+        .mapToLong(PredicateMetrics::selfTimeNanos).sum());
+
+    Map<String, Object> map = metrics.toMap();
+
+    Assert.assertEquals(metrics.nbSubgoals(), map.get("nb_subgoals"));
+    Assert.assertEquals(3, ((List<?>) map.get("predicates")).size());
+
+    // The metrics are reset for each query
+    Assert.assertEquals(1, Iterators.size(solver.solve(new Literal("edge", newConst("n0"), newVar()))));
+    Assert.assertEquals(1, solver.metrics().nbSubgoals());
+    Assert.assertEquals(1, solver.metrics().nbFactsUnified());
+  }
+
+  @Test
+  public void testProfile() {
+
+    InMemoryKnowledgeBase kb = chain(4);
+    Literal query = new Literal("path", newConst("n0"), newVar());
+
+    Solver solver = new Solver(kb, true);
+    Assert.assertEquals(3, solver.proofs(query).size());
+    Assert.assertTrue(solver.profile() == null);
+
+    solver = new Solver(kb, true);
+    solver.enableProfiling(true);
+
+    Assert.assertEquals(3, solver.proofs(query).size());
+
+    QueryProfile profile = solver.profile();
+    QueryProfile.Node root = profile.subgoals().get(0);
+
+    Assert.assertEquals(StopReason.COMPLETED, profile.stopReason());
+    Assert.assertEquals(1, profile.subgoals().size());
+    Assert.assertEquals(QueryProfile.Node.Kind.SUBGOAL, root.kind());
+    Assert.assertEquals(3, root.nbAnswers());
+    Assert.assertEquals(2, root.children().size());
+    Assert.assertEquals(QueryProfile.Node.Kind.RULE, root.children().get(0).kind());
+    Assert.assertTrue(root.totalNanos() >= root.children().get(0).totalNanos());
+
+    QueryProfile.Node edge = root.children().get(0).children().get(0);
+
+    Assert.assertTrue(edge.label().startsWith("edge(\"n0\", "));
+    Assert.assertEquals(1, edge.nbFactsScanned());
+    Assert.assertEquals(1, edge.nbFactsUnified());
+    Assert.assertEquals(1, edge.nbAnswers());
+    Assert.assertTrue(edge.nbWaitersNotified() > 0);
+
+    Assert.assertTrue(profile.toString().startsWith("stop reason : COMPLETED, elapsed : "));
+    Assert.assertTrue(profile.toString().contains(" : tabled, 1 answers"));
+    Assert.assertTrue(profile.toString().contains("predicates :\n  "));
+    Assert.assertTrue(
+        profile.toJson().startsWith("{\"stop_reason\":\"COMPLETED\",\"subgoals\":[{\"kind\":\"subgoal\""));
+  }
+
+  @Test
+  public void testProfileAggregatesTableHits() {
+
+    InMemoryKnowledgeBase kb = new InMemoryKnowledgeBase();
+
+    for (int i = 0; i < 100; i++) {
+      kb.azzert(parseClause("node(n" + i + ")."));
+    }
+
+    kb.azzert(parseClause("pair(X, Y) :- node(X), node(Y)."));
+
+    Solver solver = new Solver(kb, false);
+    solver.enableProfiling(true);
+
+    Assert.assertEquals(100 * 100, Iterators.size(solver.solve(new Literal("pair", newVar(), newVar()))));
+
+    // The node(Y) table is reused once per grounding of node(X) but reported once
+    QueryProfile.Node rule = solver.profile().subgoals().get(0).children().get(0);
+    List<QueryProfile.Node> tabled = rule.children().stream()
+        .filter(node -> node.kind() == QueryProfile.Node.Kind.TABLED).collect(Collectors.toList());
+
+    Assert.assertEquals(1, tabled.size());
+    Assert.assertEquals(100, tabled.get(0).nbAnswers());
+    Assert.assertTrue(tabled.get(0).nbHits() >= 100);
+  }
+
+  /**
+   * Start a lazy query and drop the stream without closing it, once the buffer of answers is full.
+   *
+   * @return the thread running the search.
+   */
+  private static Thread dropLazySolve(Solver solver, Literal query) {
+
+    AnswerStream answers = solver.lazySolve(query);
+
+    Assert.assertEquals(10, Iterators.size(Iterators.limit(answers, 10)));
+
+    return answers.thread();
+  }
+
+  private SolverLimits limits(long timeoutMillis, int maxSubgoals, int maxAnswersPerSubgoal, long maxHeapBytes,
+      CancellationToken token) {
+    return new SolverLimits(timeoutMillis, maxSubgoals, maxAnswersPerSubgoal, maxHeapBytes, token);
+  }
+
+  private InMemoryKnowledgeBase chain(int nbNodes) {
+
+    InMemoryKnowledgeBase kb = new InMemoryKnowledgeBase();
+
+    for (int i = 1; i < nbNodes; i++) {
+      kb.azzert(parseClause("edge(n" + (i - 1) + ", n" + i + ")."));
+    }
+
+    kb.azzert(parseClause("path(X, Y) :- edge(X, Y)."));
+    kb.azzert(parseClause("path(X, Y) :- edge(X, Z), path(Z, Y)."));
+    return kb;
+  }
+
+  private InMemoryKnowledgeBase smokers(int nbPeople) {
+
+    InMemoryKnowledgeBase kb = new InMemoryKnowledgeBase();
+
+    for (int i = 0; i < nbPeople; i++) {
+      kb.azzert(parseClause("person(p" + i + ")."));
+      kb.azzert(parseClause("0.3::stress(p" + i + ")."));
+    }
+    for (int i = 1; i < nbPeople; i++) {
+      kb.azzert(parseClause("0.2::friend(p" + (i - 1) + ", p" + i + ")."));
+    }
+
+    kb.azzert(parseClause("0.4::smokes(X) :- person(X), stress(X)."));
+    kb.azzert(parseClause("smokes(X) :- friend(X, Y), smokes(Y)."));
+    return kb;
+  }
 }
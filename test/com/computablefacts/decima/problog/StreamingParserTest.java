@@ -0,0 +1,100 @@
+package com.computablefacts.decima.problog;
+
+import static com.computablefacts.decima.problog.AbstractTerm.newConst;
+import static com.computablefacts.decima.problog.Parser.parseClause;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StreamingParserTest {
+
+  @Test
+  public void testParseFact() {
+
+    List<String> facts = Lists.newArrayList("edge(a, b).", "  0.3::edge(a, b) .  ", "0.25 :: edge(\"a\", 'b').",
+        "value(x, 12.5).", "value(x, 12).", "empty().", "name(\"John Doe\", \"b64_(Sm9obiBEb2U=)\").",
+        "Edge(a, b).", "été(àé, _x).");
+
+    for (String fact : facts) {
+      Assert.assertEquals(fact, parseClause(fact), StreamingParser.parseFact(fact, 0, fact.length()));
+    }
+
+    Assert.assertEquals(new Clause(new Literal(BigDecimal.valueOf(0.3), "edge", newConst("a"), newConst("b"))),
+        StreamingParser.parseFact("0.3::edge(a, b).", 0, 16));
+  }
+
+  @Test
+  public void testParseFactGivesUpOnEverythingElse() {
+
+    List<String> clauses = Lists.newArrayList("path(X, Y) :- edge(X, Y).", "edge(X, b).", "edge(_, b).",
+        "edge(a, b)?", "~edge(a, b).", "\\+edge(a, b).", "fn_is_true(a).", "edge(a, b). % comment",
+        "edge(a, \"b\\\"c\").", "edge(a, 12 .5).", "edge(a, 12.b).", "edge(a, b)", "% edge(a, b).", "edge(a, b");
+
+    for (String clause : clauses) {
+      Assert.assertTrue(clause, StreamingParser.parseFact(clause, 0, clause.length()) == null);
+    }
+  }
+
+  @Test
+  public void testParseBuffer() {
+
+    String clauses =
+        "edge(a, b).\n\n0.3::edge(b, c).\r\n% a comment\npath(X, Y) :- edge(X, Y).\nedge(c, d). % trailing";
+
+    Set<Clause> expected = Parser.parseClauses(clauses);
+    Set<Clause> actual = Sets.newHashSet(StreamingParser.parse(CharBuffer.wrap(clauses)));
+
+    Assert.assertEquals(4, actual.size());
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void testParseFile() throws IOException {
+
+    List<String> lines = new ArrayList<>();
+
+    for (int i = 0; i < 200000; i++) {
+      lines.add("0.5::json_path(\"ns\", \"uuid_" + (i / 10) + "\", \"key_" + (i % 10) + "\", " + i + ").");
+    }
+    lines.add("path(X, Y) :- json_path(_, X, _, Y).");
+
+    File file = Files.createTempFile("clauses-", ".txt").toFile();
+    file.deleteOnExit();
+    Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+
+    // The file spans several chunks : the clauses must come back in file order
+    List<Clause> expected = lines.stream().map(Parser::parseClause).collect(Collectors.toList());
+    List<Clause> actual = StreamingParser.parse(file).collect(Collectors.toList());
+
+    Assert.assertTrue(file.length() > 8 * 1024 * 1024);
+    Assert.assertEquals(200001, actual.size());
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void testParseNonAsciiFile() throws IOException {
+
+    List<String> lines = Lists.newArrayList("été(àé, b).", "0.5::edge(\"é\", 'b').", "path(X, Y) :- été(X, Y).");
+
+    File file = Files.createTempFile("clauses-", ".txt").toFile();
+    file.deleteOnExit();
+    Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+
+    List<Clause> expected = lines.stream().map(Parser::parseClause).collect(Collectors.toList());
+    List<Clause> actual = StreamingParser.parse(file).collect(Collectors.toList());
+
+    Assert.assertEquals(expected, actual);
+  }
+}
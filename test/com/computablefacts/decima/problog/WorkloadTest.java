@@ -0,0 +1,101 @@
+package com.computablefacts.decima.problog;
+
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class WorkloadTest {
+
+  @Test
+  public void testSameSeedSameFacts() {
+
+    List<Clause> facts1 = Lists.newArrayList(Workload.randomGraph(100, 1000, 42).facts());
+    List<Clause> facts2 = Lists.newArrayList(Workload.randomGraph(100, 1000, 42).facts());
+    List<Clause> facts3 = Lists.newArrayList(Workload.randomGraph(100, 1000, 43).facts());
+
+    Assert.assertEquals(1000, facts1.size());
+    Assert.assertEquals(facts1, facts2);
+    Assert.assertNotEquals(facts1, facts3);
+  }
+
+  @Test
+  public void testNbFacts() {
+
+    List<Workload> workloads = Lists.newArrayList(Workload.randomGraph(100, 1000, 42),
+        Workload.powerLawGraph(100, 1000, 2.5, 42), Workload.chain(1000, 42), Workload.socialNetwork(100, 8, 42),
+        Workload.join(4, 250, 42));
+
+    for (Workload workload : workloads) {
+      Assert.assertEquals(workload.name(), 1000, workload.nbFacts());
+      Assert.assertEquals(workload.name(), 1000, Iterators.size(workload.facts()));
+      Assert.assertEquals(workload.name(), 1000 + workload.rules().size(), workload.clauses().count());
+    }
+  }
+
+  @Test
+  public void testPowerLawGraphHasHubs() {
+
+    long nbEdgesFromN0 = Iterators.size(Iterators.filter(Workload.powerLawGraph(1000, 10000, 2.0, 42).facts(),
+        fact -> fact.head().terms().get(0).equals(AbstractTerm.newConst("n0"))));
+
+    // About 10 edges per node with a uniform distribution
+    Assert.assertTrue(nbEdgesFromN0 > 1000);
+  }
+
+  @Test
+  public void testWriteToThenParse() throws IOException {
+
+    Workload workload = Workload.socialNetwork(1000, 4, 42);
+    File file = Files.createTempFile("workload-", ".txt").toFile();
+    file.deleteOnExit();
+
+    try (OutputStream stream = new FileOutputStream(file)) {
+      workload.writeTo(stream, false);
+    }
+
+    Set<Clause> expected = Lists.newArrayList(workload.facts()).stream().collect(Collectors.toSet());
+    Set<Clause> actual = StreamingParser.parse(file).collect(Collectors.toSet());
+
+    Assert.assertEquals(expected.size() + workload.rules().size(), actual.size());
+    Assert.assertTrue(actual.containsAll(expected));
+  }
+
+  @Test
+  public void testLoadChainThenSolve() {
+
+    Workload workload = Workload.chain(100, 42);
+    InMemoryKnowledgeBase kb = new InMemoryKnowledgeBase();
+    BulkLoadResult result = workload.loadInto(kb);
+
+    Assert.assertEquals(102, result.nbClauses());
+
+    Solver solver = new Solver(kb, true);
+    Set<Clause> proofs = solver.proofs(workload.query());
+
+    Assert.assertEquals(1, proofs.size());
+    Assert.assertEquals(100, proofs.iterator().next().body().size());
+  }
+
+  @Test
+  public void testLoadSocialNetworkThenSolve() {
+
+    Workload workload = Workload.socialNetwork(100, 2, 42);
+    InMemoryKnowledgeBase kb = new InMemoryKnowledgeBase();
+    BulkLoadResult result = workload.loadInto(kb);
+
+    Assert.assertEquals(402, result.nbClauses());
+
+    Solver solver = new Solver(kb, false);
+
+    Assert.assertEquals(1, Iterators.size(solver.solve(workload.query())));
+  }
+}
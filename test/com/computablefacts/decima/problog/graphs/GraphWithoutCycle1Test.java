@@ -115,4 +115,40 @@ public class GraphWithoutCycle1Test {
         + "[rule] depth=1, path(\"b\", \"d\") :- 0.2::edge(\"b\", \"d\")\n"
         + "[rule] depth=1, path(\"b\", \"e\") :- 0.8::edge(\"b\", \"e\")", Joiner.on("\n").join(table));
   }
+
+  @Test
+  public void testDisjointCopiesOfTheGraph() {
+
+    // Create kb
+    InMemoryKnowledgeBase kb = new InMemoryKnowledgeBase();
+
+    // Init kb with facts
+    for (int i = 0; i < 3; i++) {
+      kb.azzert(parseClause("0.4::edge(a" + i + ", b" + i + ")."));
+      kb.azzert(parseClause("0.55::edge(a" + i + ", c" + i + ")."));
+      kb.azzert(parseClause("0.8::edge(b" + i + ", e" + i + ")."));
+      kb.azzert(parseClause("0.2::edge(b" + i + ", d" + i + ")."));
+      kb.azzert(parseClause("0.4::edge(c" + i + ", d" + i + ")."));
+      kb.azzert(parseClause("0.3::edge(e" + i + ", f" + i + ")."));
+      kb.azzert(parseClause("0.5::edge(d" + i + ", f" + i + ")."));
+      kb.azzert(parseClause("0.6::edge(d" + i + ", g" + i + ")."));
+      kb.azzert(parseClause("0.7::edge(f" + i + ", h" + i + ")."));
+      kb.azzert(parseClause("0.7::edge(g" + i + ", h" + i + ")."));
+    }
+
+    // Init kb with rules
+    kb.azzert(parseClause("path(X, Y) :- edge(X, Y)."));
+    kb.azzert(parseClause("path(X, Y) :- path(X, Z), edge(Z, Y)."));
+
+    // Query kb
+    // path(a2, h2)?
+    Solver solver = new Solver(kb, true);
+    Literal query = new Literal("path", newConst("a2"), newConst("h2"));
+    Set<Clause> proofs = solver.proofs(query);
+
+    // Verify answers
+    // Removed proofs must not leak into the unfolded proofs
+    Assert.assertEquals(5, proofs.size());
+    Assert.assertTrue(proofs.stream().allMatch(proof -> proof.body().size() == 4));
+  }
 }
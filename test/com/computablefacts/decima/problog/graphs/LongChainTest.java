@@ -0,0 +1,68 @@
+package com.computablefacts.decima.problog.graphs;
+
+import static com.computablefacts.decima.problog.AbstractTerm.newConst;
+import static com.computablefacts.decima.problog.Parser.parseClause;
+
+import com.computablefacts.decima.problog.Clause;
+import com.computablefacts.decima.problog.InMemoryKnowledgeBase;
+import com.computablefacts.decima.problog.Literal;
+import com.computablefacts.decima.problog.ProbabilityEstimator;
+import com.computablefacts.decima.problog.Solver;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * A deep derivation : the only proof of {@code path(n0, nN)} goes through every edge of the chain.
+ */
+public class LongChainTest {
+
+  private static final int LENGTH = 300;
+
+  @Test(timeout = 60 * 1000)
+  public void testLongChain() {
+
+    // Create kb
+    InMemoryKnowledgeBase kb = new InMemoryKnowledgeBase();
+
+    // Init kb with facts
+    for (int i = 0; i < LENGTH; i++) {
+      kb.azzert(parseClause("edge(n" + i + ", n" + (i + 1) + ")."));
+    }
+    kb.azzert(parseClause("0.5::edge(n" + LENGTH + ", n" + (LENGTH + 1) + ")."));
+
+    // Init kb with rules
+    kb.azzert(parseClause("path(X, Y) :- edge(X, Y)."));
+    kb.azzert(parseClause("path(X, Y) :- path(X, Z), edge(Z, Y)."));
+
+    // Query kb
+    // path(n0, nN)?
+    Solver solver = new Solver(kb, true);
+    Literal query = new Literal("path", newConst("n0"), newConst("n" + (LENGTH + 1)));
+    Set<Clause> proofs = solver.proofs(query);
+
+    // Verify subgoals
+    Assert.assertEquals(2 * LENGTH + 6, solver.nbSubgoals());
+
+    // Verify proofs
+    Assert.assertEquals(1, proofs.size());
+    Assert.assertEquals(LENGTH + 1, proofs.iterator().next().body().size());
+
+    // Verify depth
+    List<String> table = solver.tableOfProofs(query);
+    int maxDepth = table.stream().mapToInt(row -> Integer.parseInt(row.replaceAll("^\\[\\w+] depth=(\\d+),.*$", "$1")))
+        .max().getAsInt();
+
+    Assert.assertEquals(2 * LENGTH + 2, table.size());
+    Assert.assertEquals(LENGTH, maxDepth);
+
+    // Verify BDD answer
+    // 0.5::path(n0, nN).
+    ProbabilityEstimator estimator = new ProbabilityEstimator(proofs);
+    BigDecimal probability = estimator.probability(query, 1);
+
+    Assert.assertTrue(BigDecimal.valueOf(0.5).compareTo(probability) == 0);
+  }
+}